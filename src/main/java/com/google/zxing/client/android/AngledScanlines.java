@@ -0,0 +1,252 @@
+package com.google.zxing.client.android;
+
+import android.graphics.Rect;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.oned.OneDReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads 1D codes which lie skewed in the frame, by sampling scanlines at 30, 60, 90, 120 and 150
+ * degrees straight from the frame and handing them to the row decoders, both ways round, instead of
+ * rotating the image. Rows, at 0 degrees, are left to the usual decode. For each angle a few parallel
+ * lines cross the region; the offsets of their samples in the frame are worked out once per region
+ * size and frame orientation and only shifted when the region moves. Each line is binarized on its own, sharpened and cut at the valley
+ * between the two peaks of its histogram, as {@code GlobalHistogramBinarizer} does for rows.
+ * <p>
+ * Used on the decode thread only.
+ * 多角度一维码扫描线：按预先计算的采样偏移直接从亮度数据中取出倾斜的扫描线交给一维解码器
+ */
+final class AngledScanlines {
+
+  private static final int[] ANGLES = {30, 60, 90, 120, 150};
+  private static final int LINES_PER_ANGLE = 5;
+  private static final int MIN_SAMPLES = 32;
+  private static final int LUMINANCE_BITS = 5;
+  private static final int LUMINANCE_SHIFT = 8 - LUMINANCE_BITS;
+  private static final int LUMINANCE_BUCKETS = 1 << LUMINANCE_BITS;
+
+  private final List<Result> reads = new ArrayList<>();
+  private final int[] buckets = new int[LUMINANCE_BUCKETS];
+  /**
+   * Per line, offsets of its samples in the frame from the region's top left corner.
+   */
+  private int[][] lineOffsets;
+  /**
+   * Per line, positions of its samples in the region, as y * width + x.
+   */
+  private int[][] linePositions;
+  /**
+   * Per line, its binarized samples.
+   */
+  private BitArray[] lineRows;
+  private int stepX;
+  private int stepY;
+  private int width;
+  private int height;
+  private int[] samples;
+
+  /**
+   * @param frame the whole frame, in any orientation
+   * @param region where to look, within the frame
+   * @return every line which decoded, with result points relative to the region; reused by the next call
+   */
+  List<Result> decode(OrientedLuminanceSource frame,
+                      Rect region,
+                      OneDReader reader,
+                      Map<DecodeHintType,?> hints) {
+    reads.clear();
+    if (frame.getStepX() != stepX || frame.getStepY() != stepY ||
+        region.width() != width || region.height() != height) {
+      buildLines(frame.getStepX(), frame.getStepY(), region.width(), region.height());
+    }
+    byte[] luminance = frame.getData();
+    int base = frame.index(region.left, region.top);
+    for (int line = 0; line < lineOffsets.length; line++) {
+      int[] offsets = lineOffsets[line];
+      int count = offsets.length;
+      if (count < MIN_SAMPLES) {
+        continue;
+      }
+      for (int i = 0; i < count; i++) {
+        samples[i] = luminance[base + offsets[i]] & 0xFF;
+      }
+      BitArray row = lineRows[line];
+      if (!binarize(count, row)) {
+        continue;
+      }
+      Result result = decodeLine(reader, hints, row, linePositions[line], false);
+      if (result == null) {
+        row.reverse();
+        result = decodeLine(reader, hints, row, linePositions[line], true);
+      }
+      if (result != null) {
+        reads.add(result);
+      }
+    }
+    return reads;
+  }
+
+  private Result decodeLine(OneDReader reader,
+                            Map<DecodeHintType,?> hints,
+                            BitArray row,
+                            int[] positions,
+                            boolean reversed) {
+    try {
+      Result result = reader.decodeRow(0, row, hints);
+      ResultPoint[] points = result.getResultPoints();
+      if (points != null) {
+        // Points come back as positions along the line
+        ResultPoint[] mapped = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+          if (points[i] != null) {
+            int index = Math.min(positions.length - 1, Math.max(0, (int) points[i].getX()));
+            int position = positions[reversed ? positions.length - 1 - index : index];
+            mapped[i] = new ResultPoint(position % width, position / width);
+          }
+        }
+        result = new Result(result.getText(), result.getRawBytes(), result.getNumBits(), mapped,
+            result.getBarcodeFormat(), result.getTimestamp());
+      }
+      return result;
+    } catch (ReaderException re) {
+      return null;
+    } finally {
+      reader.reset();
+    }
+  }
+
+  private void buildLines(int newStepX, int newStepY, int newWidth, int newHeight) {
+    stepX = newStepX;
+    stepY = newStepY;
+    width = newWidth;
+    height = newHeight;
+    lineOffsets = new int[ANGLES.length * LINES_PER_ANGLE][];
+    linePositions = new int[lineOffsets.length][];
+    lineRows = new BitArray[lineOffsets.length];
+    float centerX = (newWidth - 1) / 2.0f;
+    float centerY = (newHeight - 1) / 2.0f;
+    float spacing = Math.min(newWidth, newHeight) / (2.0f * LINES_PER_ANGLE);
+    int reach = (int) Math.ceil(Math.sqrt((double) newWidth * newWidth + (double) newHeight * newHeight) / 2.0);
+    int[] buffer = new int[2 * reach + 1];
+    int maxCount = 0;
+    int line = 0;
+    for (int angle : ANGLES) {
+      double radians = Math.toRadians(angle);
+      float dx = (float) Math.cos(radians);
+      float dy = (float) Math.sin(radians);
+      for (int k = 0; k < LINES_PER_ANGLE; k++) {
+        float shift = (k - LINES_PER_ANGLE / 2) * spacing;
+        float startX = centerX - dy * shift;
+        float startY = centerY + dx * shift;
+        int count = 0;
+        for (int t = -reach; t <= reach; t++) {
+          int x = Math.round(startX + dx * t);
+          int y = Math.round(startY + dy * t);
+          if (x >= 0 && x < newWidth && y >= 0 && y < newHeight) {
+            buffer[count++] = y * newWidth + x;
+          }
+        }
+        int[] positions = new int[count];
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+          positions[i] = buffer[i];
+          offsets[i] = (buffer[i] / newWidth) * newStepY + (buffer[i] % newWidth) * newStepX;
+        }
+        linePositions[line] = positions;
+        lineOffsets[line] = offsets;
+        lineRows[line] = new BitArray(Math.max(1, count));
+        line++;
+        maxCount = Math.max(maxCount, count);
+      }
+    }
+    samples = new int[maxCount];
+  }
+
+  /**
+   * Fills the row from the samples.
+   *
+   * @return false if the line is too flat to hold bars
+   */
+  private boolean binarize(int count, BitArray row) {
+    int[] buckets = this.buckets;
+    for (int i = 0; i < LUMINANCE_BUCKETS; i++) {
+      buckets[i] = 0;
+    }
+    for (int i = 0; i < count; i++) {
+      buckets[samples[i] >> LUMINANCE_SHIFT]++;
+    }
+    int blackPoint = estimateBlackPoint(buckets);
+    if (blackPoint < 0) {
+      return false;
+    }
+    row.clear();
+    int left = samples[0];
+    int center = samples[1];
+    for (int i = 1; i < count - 1; i++) {
+      int right = samples[i + 1];
+      // A simple -1 4 -1 box filter with a weight of 2.
+      if (((center * 4) - left - right) / 2 < blackPoint) {
+        row.set(i);
+      }
+      left = center;
+      center = right;
+    }
+    return true;
+  }
+
+  /**
+   * @return the level between the dark and the light peak, or -1 if there aren't two distinct peaks
+   */
+  private static int estimateBlackPoint(int[] buckets) {
+    int maxBucketCount = 0;
+    int firstPeak = 0;
+    int firstPeakSize = 0;
+    for (int x = 0; x < buckets.length; x++) {
+      if (buckets[x] > firstPeakSize) {
+        firstPeak = x;
+        firstPeakSize = buckets[x];
+      }
+      if (buckets[x] > maxBucketCount) {
+        maxBucketCount = buckets[x];
+      }
+    }
+    int secondPeak = 0;
+    int secondPeakScore = 0;
+    for (int x = 0; x < buckets.length; x++) {
+      int distanceToBiggest = x - firstPeak;
+      int score = buckets[x] * distanceToBiggest * distanceToBiggest;
+      if (score > secondPeakScore) {
+        secondPeak = x;
+        secondPeakScore = score;
+      }
+    }
+    if (firstPeak > secondPeak) {
+      int temp = firstPeak;
+      firstPeak = secondPeak;
+      secondPeak = temp;
+    }
+    if (secondPeak - firstPeak <= buckets.length / 16) {
+      return -1;
+    }
+    int bestValley = secondPeak - 1;
+    int bestValleyScore = -1;
+    for (int x = secondPeak - 1; x > firstPeak; x--) {
+      int fromFirst = x - firstPeak;
+      int score = fromFirst * fromFirst * (secondPeak - x) * (maxBucketCount - buckets[x]);
+      if (score > bestValleyScore) {
+        bestValley = x;
+        bestValleyScore = score;
+      }
+    }
+    return bestValley << LUMINANCE_SHIFT;
+  }
+
+}
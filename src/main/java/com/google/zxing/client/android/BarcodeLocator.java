@@ -0,0 +1,272 @@
+package com.google.zxing.client.android;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds regions of a frame which look like barcodes, so a whole frame can be scanned by decoding a few
+ * small crops instead of all of it. The luminance is halved in each direction, then judged in cells
+ * of 16 by 16 frame pixels: a barcode is full of strong edges, and in a 1D code they all run the same
+ * way, so a cell counts when its gradients are strong and either coherent in direction or very
+ * strong. Touching cells are joined into blobs, and the strongest blobs come back as rectangles with
+ * a margin for the quiet zone, wider across the bars of a 1D code.
+ * <p>
+ * Buffers are allocated once per frame size. Used on the decode thread only.
+ * 全画面条码定位：在降采样的亮度图上依据梯度强度和方向一致性找出可能的条码区域
+ */
+final class BarcodeLocator {
+
+  private static final int SCALE = 2;
+  /**
+   * Cell side in decimated pixels.
+   */
+  private static final int CELL = 8;
+  private static final int CELL_AREA = CELL * CELL;
+  /**
+   * Mean of |gx| + |gy| over a cell, in decimated luminance levels.
+   */
+  private static final int MIN_ENERGY = 20;
+  private static final int MIN_ENERGY_INCOHERENT = 36;
+  private static final float MIN_COHERENCE = 0.6f;
+  private static final int MIN_CELLS = 4;
+  private static final int MAX_CANDIDATES = 3;
+  /**
+   * Larger blobs are mostly texture, and cost as much to decode as the frame.
+   */
+  private static final float MAX_AREA_FRACTION = 0.5f;
+  private static final int MARGIN_CELLS = 1;
+  private static final int QUIET_ZONE_CELLS = 2;
+
+  private final List<Rect> candidates = new ArrayList<>(MAX_CANDIDATES);
+  private final Rect[] rectPool = new Rect[MAX_CANDIDATES];
+  private final long[] candidateScores = new long[MAX_CANDIDATES];
+  private int frameWidth;
+  private int frameHeight;
+  private int smallWidth;
+  private int smallHeight;
+  private int cellsX;
+  private int cellsY;
+  private byte[] small;
+  private int[] cellEnergy;
+  private long[] cellXX;
+  private long[] cellYY;
+  private long[] cellXY;
+  private int[] labels;
+  private int[] stack;
+
+  BarcodeLocator() {
+    for (int i = 0; i < MAX_CANDIDATES; i++) {
+      rectPool[i] = new Rect();
+    }
+  }
+
+  /**
+   * @param frame the whole frame, in any orientation
+   * @return regions in frame pixels, strongest first; the list and its rectangles are reused by the
+   *         next call
+   */
+  List<Rect> locate(OrientedLuminanceSource frame) {
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    if (width != frameWidth || height != frameHeight) {
+      allocate(width, height);
+    }
+    candidates.clear();
+    if (cellsX < 1 || cellsY < 1) {
+      return candidates;
+    }
+    decimate(frame);
+    measureCells();
+    findBlobs();
+    return candidates;
+  }
+
+  private void allocate(int width, int height) {
+    frameWidth = width;
+    frameHeight = height;
+    smallWidth = width / SCALE;
+    smallHeight = height / SCALE;
+    cellsX = smallWidth / CELL;
+    cellsY = smallHeight / CELL;
+    int cells = cellsX * cellsY;
+    small = new byte[smallWidth * smallHeight];
+    cellEnergy = new int[cells];
+    cellXX = new long[cells];
+    cellYY = new long[cells];
+    cellXY = new long[cells];
+    labels = new int[cells];
+    stack = new int[cells];
+  }
+
+  /**
+   * Averages each 2 by 2 block, which also takes out some of the sensor noise. Reads the frame
+   * through the view's steps, so it costs the same in any orientation.
+   */
+  private void decimate(OrientedLuminanceSource frame) {
+    byte[] luminance = frame.getData();
+    int stepX = frame.getStepX();
+    int stepY = frame.getStepY();
+    int stepXY = stepX + stepY;
+    int blockStep = SCALE * stepX;
+    for (int y = 0; y < smallHeight; y++) {
+      int in = frame.index(0, y * SCALE);
+      int out = y * smallWidth;
+      for (int x = 0; x < smallWidth; x++) {
+        int sum = (luminance[in] & 0xFF) + (luminance[in + stepX] & 0xFF) +
+            (luminance[in + stepY] & 0xFF) + (luminance[in + stepXY] & 0xFF);
+        small[out + x] = (byte) (sum >> 2);
+        in += blockStep;
+      }
+    }
+  }
+
+  /**
+   * Sums gradient magnitude and the structure tensor per cell.
+   */
+  private void measureCells() {
+    int cells = cellsX * cellsY;
+    for (int i = 0; i < cells; i++) {
+      cellEnergy[i] = 0;
+      cellXX[i] = 0L;
+      cellYY[i] = 0L;
+      cellXY[i] = 0L;
+    }
+    int width = smallWidth;
+    int maxY = Math.min(smallHeight - 1, cellsY * CELL);
+    int maxX = Math.min(width - 1, cellsX * CELL);
+    for (int y = 1; y < maxY; y++) {
+      int row = y * width;
+      int cellRow = (y / CELL) * cellsX;
+      for (int x = 1; x < maxX; x++) {
+        int i = row + x;
+        int gx = (small[i + 1] & 0xFF) - (small[i - 1] & 0xFF);
+        int gy = (small[i + width] & 0xFF) - (small[i - width] & 0xFF);
+        int cell = cellRow + x / CELL;
+        cellEnergy[cell] += Math.abs(gx) + Math.abs(gy);
+        cellXX[cell] += gx * gx;
+        cellYY[cell] += gy * gy;
+        cellXY[cell] += gx * gy;
+      }
+    }
+    for (int i = 0; i < cells; i++) {
+      int energy = cellEnergy[i] / CELL_AREA;
+      boolean marked = energy >= MIN_ENERGY_INCOHERENT ||
+          (energy >= MIN_ENERGY && coherence(cellXX[i], cellYY[i], cellXY[i]) >= MIN_COHERENCE);
+      labels[i] = marked ? -1 : 0;
+    }
+  }
+
+  /**
+   * @return 0 for gradients in all directions up to 1 for gradients all along one line
+   */
+  private static float coherence(long xx, long yy, long xy) {
+    long trace = xx + yy;
+    if (trace == 0L) {
+      return 0.0f;
+    }
+    double difference = xx - yy;
+    return (float) (Math.sqrt(difference * difference + 4.0 * xy * xy) / trace);
+  }
+
+  private void findBlobs() {
+    int cells = cellsX * cellsY;
+    int maxCells = (int) (cells * MAX_AREA_FRACTION);
+    int label = 0;
+    for (int seed = 0; seed < cells; seed++) {
+      if (labels[seed] != -1) {
+        continue;
+      }
+      label++;
+      int minX = cellsX;
+      int minY = cellsY;
+      int maxX = -1;
+      int maxY = -1;
+      int count = 0;
+      long energy = 0L;
+      long xx = 0L;
+      long yy = 0L;
+      long xy = 0L;
+      int top = 0;
+      stack[top++] = seed;
+      labels[seed] = label;
+      while (top > 0) {
+        int cell = stack[--top];
+        int cx = cell % cellsX;
+        int cy = cell / cellsX;
+        minX = Math.min(minX, cx);
+        maxX = Math.max(maxX, cx);
+        minY = Math.min(minY, cy);
+        maxY = Math.max(maxY, cy);
+        count++;
+        energy += cellEnergy[cell];
+        xx += cellXX[cell];
+        yy += cellYY[cell];
+        xy += cellXY[cell];
+        if (cx > 0 && labels[cell - 1] == -1) {
+          labels[cell - 1] = label;
+          stack[top++] = cell - 1;
+        }
+        if (cx < cellsX - 1 && labels[cell + 1] == -1) {
+          labels[cell + 1] = label;
+          stack[top++] = cell + 1;
+        }
+        if (cy > 0 && labels[cell - cellsX] == -1) {
+          labels[cell - cellsX] = label;
+          stack[top++] = cell - cellsX;
+        }
+        if (cy < cellsY - 1 && labels[cell + cellsX] == -1) {
+          labels[cell + cellsX] = label;
+          stack[top++] = cell + cellsX;
+        }
+      }
+      if (count < MIN_CELLS || count > maxCells) {
+        continue;
+      }
+      int marginX = MARGIN_CELLS;
+      int marginY = MARGIN_CELLS;
+      if (coherence(xx, yy, xy) >= MIN_COHERENCE) {
+        // Bars run across the stronger gradient; leave room for the quiet zones along it
+        if (xx >= yy) {
+          marginX += QUIET_ZONE_CELLS;
+        } else {
+          marginY += QUIET_ZONE_CELLS;
+        }
+      }
+      offer(energy, minX - marginX, minY - marginY, maxX + 1 + marginX, maxY + 1 + marginY);
+    }
+  }
+
+  /**
+   * Keeps the blob if it is among the strongest so far, converting cells to frame pixels.
+   */
+  private void offer(long score, int left, int top, int right, int bottom) {
+    int size = candidates.size();
+    int position = size;
+    while (position > 0 && candidateScores[position - 1] < score) {
+      position--;
+    }
+    if (position >= MAX_CANDIDATES) {
+      return;
+    }
+    Rect rect;
+    if (size < MAX_CANDIDATES) {
+      rect = rectPool[size];
+    } else {
+      rect = candidates.remove(size - 1);
+      size--;
+    }
+    int unit = CELL * SCALE;
+    rect.set(Math.max(0, left * unit),
+             Math.max(0, top * unit),
+             Math.min(frameWidth, right * unit),
+             Math.min(frameHeight, bottom * unit));
+    for (int i = size; i > position; i--) {
+      candidateScores[i] = candidateScores[i - 1];
+    }
+    candidateScores[position] = score;
+    candidates.add(position, rect);
+  }
+
+}
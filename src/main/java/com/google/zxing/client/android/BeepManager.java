@@ -18,12 +18,10 @@ package com.google.zxing.client.android;
 
 import android.app.Activity;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.res.AssetFileDescriptor;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.os.Vibrator;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import java.io.Closeable;
 import java.io.IOException;
@@ -39,20 +37,36 @@ final class BeepManager implements MediaPlayer.OnErrorListener, Closeable {
   private static final long VIBRATE_DURATION = 200L;
 
   private final Activity activity;
+  private final ScannerConfigStore.Callback configCallback;
   private MediaPlayer mediaPlayer;
   private boolean playBeep;
   private boolean vibrate;
     public static final String PRE_KEY_VIBRATE = "need_vibrate";
     public static final String PRE_KEY_SHOUD_BEEP = "shoud_beep";
+  /**
+   * Reads nothing yet; beeping starts with {@link #updatePrefs()} or {@link #applyConfig(ScannerConfig)}.
+   */
   BeepManager(Activity activity) {
     this.activity = activity;
     this.mediaPlayer = null;
-    updatePrefs();
+    configCallback = new ScannerConfigStore.Callback() {
+      @Override
+      public void onScannerConfig(ScannerConfig config) {
+        applyConfig(config);
+      }
+    };
+  }
+
+  /**
+   * Applies the config from the preferences once it has been read.
+   */
+  void updatePrefs() {
+    ScannerConfigStore.get(activity).current(configCallback);
   }
-  synchronized void updatePrefs() {
-    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(activity);
-    playBeep = shouldBeep(prefs, activity);
-    vibrate = prefs.getBoolean(PRE_KEY_VIBRATE, false);
+
+  synchronized void applyConfig(ScannerConfig config) {
+    playBeep = shouldBeep(config, activity);
+    vibrate = config.isVibrate();
     if (playBeep && mediaPlayer == null) {
       // The volume on STREAM_SYSTEM is not adjustable, and users found it too loud,
       // so we now play on the music stream.
@@ -71,8 +85,8 @@ final class BeepManager implements MediaPlayer.OnErrorListener, Closeable {
     }
   }
 
-  private static boolean shouldBeep(SharedPreferences prefs, Context activity) {
-    boolean shouldPlayBeep = prefs.getBoolean(PRE_KEY_SHOUD_BEEP, true);
+  private static boolean shouldBeep(ScannerConfig config, Context activity) {
+    boolean shouldPlayBeep = config.isPlayBeep();
     if (shouldPlayBeep) {
       // See if sound settings overrides this
       AudioManager audioService = (AudioManager) activity.getSystemService(Context.AUDIO_SERVICE);
@@ -120,6 +134,7 @@ final class BeepManager implements MediaPlayer.OnErrorListener, Closeable {
 
   @Override
   public synchronized void close() {
+    ScannerConfigStore.get(activity).cancel(configCallback);
     if (mediaPlayer != null) {
       mediaPlayer.release();
       mediaPlayer = null;
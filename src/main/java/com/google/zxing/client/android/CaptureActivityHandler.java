@@ -31,9 +31,9 @@ import android.provider.Browser;
 import android.util.Log;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.Result;
 import com.google.zxing.client.android.camera.CameraManager;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -45,14 +45,29 @@ public final class CaptureActivityHandler extends Handler {
 
   private static final String TAG = CaptureActivityHandler.class.getSimpleName();
 
+  /**
+   * Decode pace while {@link IdleMonitor.State#DROWSY}, about 4 frames per second.
+   */
+  private static final long DROWSY_FRAME_INTERVAL_MS = 250L;
+  /**
+   * Pace of the scene change checks while {@link IdleMonitor.State#PAUSED}, which also bounds the wake up time.
+   */
+  private static final long PAUSED_FRAME_INTERVAL_MS = 500L;
+
   private final IScanActivity activity;
   private final DecodeThread decodeThread;
   private State state;
   private final CameraManager cameraManager;
+  private IdleMonitor.State idleState = IdleMonitor.State.ACTIVE;
+  /**
+   * Whether a frame has been asked for and its decode_succeeded or decode_failed is still to come.
+   */
+  private boolean frameOutstanding;
 
   private enum State {
     PREVIEW,
     SUCCESS,
+    PAUSED,
     DONE
   }
 
@@ -61,14 +76,45 @@ public final class CaptureActivityHandler extends Handler {
                          Map<DecodeHintType,?> baseHints,
                          String characterSet,
                          CameraManager cameraManager) {
+    this(activity, decodeFormats, baseHints, characterSet, cameraManager, null);
+  }
+
+  /**
+   * @param idleMonitor told about candidate result points and fed preview frames to detect scene
+   *                    changes, may be null
+   */
+  CaptureActivityHandler(IScanActivity activity,
+                         Collection<BarcodeFormat> decodeFormats,
+                         Map<DecodeHintType,?> baseHints,
+                         String characterSet,
+                         CameraManager cameraManager,
+                         IdleMonitor idleMonitor) {
+    this(activity, decodeFormats, baseHints, characterSet, cameraManager, idleMonitor, null);
+  }
+
+  /**
+   * @param idleMonitor told about candidate result points and fed preview frames to detect scene
+   *                    changes, may be null
+   * @param scannerConfig gives the formats to decode if none are passed; null to take the one from
+   *                      the preferences
+   */
+  CaptureActivityHandler(IScanActivity activity,
+                         Collection<BarcodeFormat> decodeFormats,
+                         Map<DecodeHintType,?> baseHints,
+                         String characterSet,
+                         CameraManager cameraManager,
+                         IdleMonitor idleMonitor,
+                         ScannerConfig scannerConfig) {
     this.activity = activity;
     decodeThread = new DecodeThread(activity, decodeFormats, baseHints, characterSet,
-        new ViewfinderResultPointCallback(activity.getViewfinderView()));
+        new ViewfinderResultPointCallback(activity.getViewfinderView(), idleMonitor, cameraManager), idleMonitor,
+        scannerConfig);
     decodeThread.start();
     state = State.SUCCESS;
 
     // Start ourselves capturing previews and decoding.
     this.cameraManager = cameraManager;
+    cameraManager.setZoomHandler(this, R.id.auto_zoomed);
     //开启预览
     cameraManager.startPreview();
     //给Camera设置预览回调接口
@@ -77,10 +123,23 @@ public final class CaptureActivityHandler extends Handler {
 
   @Override
   public void handleMessage(Message message) {
+    ScanTrace.begin("CaptureActivityHandler.handleMessage");
+    try {
+      handleScanMessage(message);
+    } finally {
+      ScanTrace.end();
+    }
+  }
+
+  private void handleScanMessage(Message message) {
     if (message.what == R.id.restart_preview) {
       restartPreviewAndDecode();
     }
-    else if (message.what == R.id.decode_succeeded) {
+    else if (message.what == R.id.decode_succeeded || message.what == R.id.decode_succeeded_all) {
+      frameOutstanding = false;
+      if (state == State.PAUSED) {
+        return; // Decoded before the pause, but nobody wants results now
+      }
       state = State.SUCCESS;
       Bundle bundle = message.getData();
       Bitmap barcode = null;
@@ -94,12 +153,54 @@ public final class CaptureActivityHandler extends Handler {
         }
         scaleFactor = bundle.getFloat(DecodeThread.BARCODE_SCALED_FACTOR);
       }
-      activity.handleDecode((Result) message.obj, barcode, scaleFactor);
+      ScanResult scanResult;
+      if (message.what == R.id.decode_succeeded_all) {
+        @SuppressWarnings("unchecked")
+        List<ScanResult> scanResults = (List<ScanResult>) message.obj;
+        if (activity instanceof IMultiScanResultReceiver) {
+          ((IMultiScanResultReceiver) activity).handleScanResults(scanResults, barcode, scaleFactor);
+          return;
+        }
+        scanResult = scanResults.get(0);
+      } else {
+        scanResult = (ScanResult) message.obj;
+      }
+      if (activity instanceof IScanResultReceiver) {
+        ((IScanResultReceiver) activity).handleScanResult(scanResult, barcode, scaleFactor);
+      } else {
+        activity.handleDecode(scanResult.getRawResult(), barcode, scaleFactor);
+      }
+
+    } else if (message.what == R.id.decode_partial) {
+      frameOutstanding = false;
+      if (state == State.PAUSED) {
+        return;
+      }
+      if (activity instanceof IScanProgressReceiver) {
+        ((IScanProgressReceiver) activity).handleScanProgress((ScanResult) message.obj, message.arg1, message.arg2);
+      }
+      // Keep going for the other parts
+      state = State.PREVIEW;
+      requestNextFrame();
 
     } else if (message.what == R.id.decode_failed) {// We're decoding as fast as possible, so when one decode fails, start another.
+      frameOutstanding = false;
+      if (state == State.PAUSED) {
+        return;
+      }
       state = State.PREVIEW;
-      cameraManager.requestPreviewFrame(decodeThread.getHandler(), R.id.decode);
+      requestNextFrame();
 
+    } else if (message.what == R.id.auto_zoomed) {
+      ViewfinderView viewfinderView = activity.getViewfinderView();
+      if (viewfinderView != null) {
+        viewfinderView.showZoom(message.arg1);
+      }
+
+    } else if (message.what == R.id.request_frame) {
+      if (state == State.PREVIEW) {
+        requestFrame(idleState == IdleMonitor.State.PAUSED ? R.id.idle_frame : R.id.decode);
+      }
     }
     else if (message.what == R.id.return_scan_result) {
       Activity activity = this.activity.getActivity();
@@ -144,7 +245,9 @@ public final class CaptureActivityHandler extends Handler {
 
   public void quitSynchronously() {
     state = State.DONE;
+    cameraManager.setZoomHandler(null, 0);
     cameraManager.stopPreview();
+    decodeThread.cancelDecode();
     Message quit = Message.obtain(decodeThread.getHandler(), R.id.quit);
     quit.sendToTarget();
     try {
@@ -156,7 +259,70 @@ public final class CaptureActivityHandler extends Handler {
 
     // Be absolutely sure we don't send any queued up messages
     removeMessages(R.id.decode_succeeded);
+    removeMessages(R.id.decode_succeeded_all);
     removeMessages(R.id.decode_failed);
+    removeMessages(R.id.decode_partial);
+    removeMessages(R.id.request_frame);
+    removeMessages(R.id.auto_zoomed);
+  }
+
+  /**
+   * Stops decoding while leaving the preview and the decode thread running, so
+   * {@link #resumeDecoding()} gets the next frame decoded right away. A frame being decoded at the
+   * time is dropped. Call on the main thread.
+   * 暂停解码，摄像头预览和解码线程保持运行
+   */
+  void pauseDecoding() {
+    if (state != State.DONE) {
+      state = State.PAUSED;
+      decodeThread.cancelDecode();
+      removeMessages(R.id.request_frame);
+      removeMessages(R.id.restart_preview);
+    }
+  }
+
+  /**
+   * Starts decoding again after {@link #pauseDecoding()} or a result. Call on the main thread.
+   * 恢复解码
+   */
+  void resumeDecoding() {
+    if (state == State.PAUSED && frameOutstanding) {
+      // The frame asked for before the pause keeps the loop going once it's decoded
+      state = State.PREVIEW;
+    } else if (state == State.PAUSED || state == State.SUCCESS) {
+      state = State.SUCCESS;
+      restartPreviewAndDecode();
+    }
+  }
+
+  private void requestFrame(int message) {
+    frameOutstanding = true;
+    cameraManager.requestPreviewFrame(decodeThread.getHandler(), message);
+  }
+
+  /**
+   * Slows down or pauses decoding while the scanner is idle, and picks up full pace again when it
+   * wakes up. Call on the main thread.
+   * 依据空闲状态调整请求预览帧的节奏
+   */
+  void setIdleState(IdleMonitor.State newState) {
+    idleState = newState;
+    if (newState == IdleMonitor.State.ACTIVE && hasMessages(R.id.request_frame)) {
+      // Don't wait out the slow pace; no frame is outstanding while a request is pending
+      removeMessages(R.id.request_frame);
+      if (state == State.PREVIEW) {
+        requestFrame(R.id.decode);
+      }
+    }
+  }
+
+  private void requestNextFrame() {
+    if (idleState == IdleMonitor.State.ACTIVE) {
+      requestFrame(R.id.decode);
+    } else {
+      sendEmptyMessageDelayed(R.id.request_frame,
+          idleState == IdleMonitor.State.DROWSY ? DROWSY_FRAME_INTERVAL_MS : PAUSED_FRAME_INTERVAL_MS);
+    }
   }
 
     /**
@@ -165,7 +331,7 @@ public final class CaptureActivityHandler extends Handler {
     private void restartPreviewAndDecode() {
         if (state == State.SUCCESS) {
             state = State.PREVIEW;
-            cameraManager.requestPreviewFrame(decodeThread.getHandler(), R.id.decode);
+            requestFrame(R.id.decode);
             activity.drawViewfinder();
         }
     }
@@ -0,0 +1,147 @@
+package com.google.zxing.client.android;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records sections in memory and writes them as Chrome trace event JSON, for chrome://tracing or the
+ * Perfetto UI. Needs nothing from Android, so frames replayed through the pipeline on a plain JVM can
+ * be traced as well as a device. Timestamps are microseconds from when the writer was created, and
+ * each thread shows under its name. Events past the limit are dropped, and sections still open when
+ * written are left for the viewer to close.
+ * 以Chrome trace event JSON格式记录追踪区间，不依赖Android，可在JVM上使用
+ */
+public final class ChromeTraceWriter implements TraceBackend {
+
+  public static final int DEFAULT_MAX_EVENTS = 100000;
+
+  private final int maxEvents;
+  private final long originNanos = System.nanoTime();
+  private final String[] names;
+  private final long[] times;
+  private final long[] threads;
+  private final Map<Long,String> threadNames = new LinkedHashMap<>();
+  private int count;
+  private int dropped;
+
+  public ChromeTraceWriter() {
+    this(DEFAULT_MAX_EVENTS);
+  }
+
+  /**
+   * @param maxEvents most begin and end events to keep
+   */
+  public ChromeTraceWriter(int maxEvents) {
+    if (maxEvents <= 0) {
+      throw new IllegalArgumentException("Bad event limit: " + maxEvents);
+    }
+    this.maxEvents = maxEvents;
+    names = new String[maxEvents];
+    times = new long[maxEvents];
+    threads = new long[maxEvents];
+  }
+
+  @Override
+  public void beginSection(String name) {
+    record(name);
+  }
+
+  @Override
+  public void endSection() {
+    record(null);
+  }
+
+  /**
+   * @param name the section begun, or null for an end
+   */
+  private synchronized void record(String name) {
+    if (count == maxEvents) {
+      dropped++;
+      return;
+    }
+    Thread thread = Thread.currentThread();
+    long tid = thread.getId();
+    if (!threadNames.containsKey(tid)) {
+      threadNames.put(tid, thread.getName());
+    }
+    names[count] = name;
+    times[count] = System.nanoTime();
+    threads[count] = tid;
+    count++;
+  }
+
+  /**
+   * @return events dropped since the last {@link #clear()} for going past the limit
+   */
+  public synchronized int getDropped() {
+    return dropped;
+  }
+
+  public synchronized void clear() {
+    for (int i = 0; i < count; i++) {
+      names[i] = null;
+    }
+    count = 0;
+    dropped = 0;
+    threadNames.clear();
+  }
+
+  /**
+   * Writes the events so far as a JSON object with a {@code traceEvents} array. Doesn't close the writer.
+   */
+  public synchronized void writeTo(Writer out) throws IOException {
+    out.write("{\"traceEvents\":[");
+    boolean first = true;
+    for (Map.Entry<Long,String> thread : threadNames.entrySet()) {
+      if (!first) {
+        out.write(',');
+      }
+      first = false;
+      out.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":");
+      out.write(Long.toString(thread.getKey()));
+      out.write(",\"args\":{\"name\":");
+      writeString(out, thread.getValue());
+      out.write("}}");
+    }
+    for (int i = 0; i < count; i++) {
+      if (!first) {
+        out.write(',');
+      }
+      first = false;
+      out.write("\n{");
+      if (names[i] != null) {
+        out.write("\"name\":");
+        writeString(out, names[i]);
+        out.write(",\"ph\":\"B\"");
+      } else {
+        out.write("\"ph\":\"E\"");
+      }
+      out.write(",\"pid\":0,\"tid\":");
+      out.write(Long.toString(threads[i]));
+      out.write(",\"ts\":");
+      out.write(Long.toString((times[i] - originNanos) / 1000L));
+      out.write('}');
+    }
+    out.write("\n]}\n");
+    out.flush();
+  }
+
+  private static void writeString(Writer out, String value) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < 0x20) {
+        out.write(String.format("\\u%04x", (int) c));
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+
+}
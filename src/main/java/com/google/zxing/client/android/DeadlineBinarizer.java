@@ -0,0 +1,48 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Checks a {@link DecodeDeadline} whenever a reader asks for a row or the matrix, and reports nothing
+ * found once it has expired. 1D readers ask row by row, so even a try harder scan of every row stops
+ * within a row of the deadline; the others ask for the matrix once, before they start. Readers take
+ * the exception as an empty row or image and move on, each of them stopping at its first request.
+ * 在每次取行或取矩阵时检查解码期限的二值化器包装
+ */
+final class DeadlineBinarizer extends Binarizer {
+
+  private final Binarizer delegate;
+  private final DecodeDeadline deadline;
+
+  DeadlineBinarizer(Binarizer delegate, DecodeDeadline deadline) {
+    super(delegate.getLuminanceSource());
+    this.delegate = delegate;
+    this.deadline = deadline;
+  }
+
+  @Override
+  public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+    if (deadline.isExpired()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    return delegate.getBlackRow(y, row);
+  }
+
+  @Override
+  public BitMatrix getBlackMatrix() throws NotFoundException {
+    if (deadline.isExpired()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    return delegate.getBlackMatrix();
+  }
+
+  @Override
+  public Binarizer createBinarizer(LuminanceSource source) {
+    return new DeadlineBinarizer(delegate.createBinarizer(source), deadline);
+  }
+
+}
@@ -0,0 +1,77 @@
+package com.google.zxing.client.android;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Time budget and cancellation for one frame's decode. The decode thread starts it for each frame and
+ * checks it between reader calls, and {@link DeadlineBinarizer} checks it between rows and before the
+ * black matrix is built; once it has been cancelled, or has run out with a newer frame queued behind
+ * it, the rest of the frame is skipped, so a slow frame can't hold up the fresher ones. With nothing
+ * queued there is nothing fresher to turn to, so a decode past its budget goes on to the end. Any
+ * thread may cancel.
+ * <p>
+ * A cancel bumps a generation instead of setting a flag that the next start would clear. A frame takes
+ * a {@link #token()} when it is queued for decoding and counts as cancelled once the generation has
+ * moved past it, so a cancel that comes while the frame still waits in the queue isn't lost.
+ * 单帧解码的时间预算与取消标记：被取消，或超时且后面已有新帧排队时放弃该帧
+ */
+final class DecodeDeadline {
+
+  private final AtomicInteger generation = new AtomicInteger();
+  private final AtomicInteger queuedFrames = new AtomicInteger();
+  private volatile int frameToken;
+  private volatile int frameQueued;
+  private volatile long deadline = Long.MAX_VALUE;
+
+  /**
+   * Notes a frame being queued for decoding. May be called on any thread.
+   *
+   * @return the current generation, to pass to {@link #start(long, int)} for that frame
+   */
+  int token() {
+    queuedFrames.incrementAndGet();
+    return generation.get();
+  }
+
+  /**
+   * Starts a frame's decode. Called on the decode thread.
+   *
+   * @param deadline {@code SystemClock.uptimeMillis()} to give up at once a newer frame is queued,
+   *     {@link Long#MAX_VALUE} for never
+   * @param token what {@link #token()} returned when the frame was queued
+   */
+  void start(long deadline, int token) {
+    this.deadline = deadline;
+    frameToken = token;
+    frameQueued = queuedFrames.get();
+  }
+
+  /**
+   * Abandons the decode going on, at its next check, and any frame queued before now.
+   */
+  void cancel() {
+    generation.incrementAndGet();
+  }
+
+  boolean isCancelled() {
+    return generation.get() != frameToken;
+  }
+
+  /**
+   * @return whether a frame has been queued since this one started
+   */
+  boolean isSuperseded() {
+    return queuedFrames.get() != frameQueued;
+  }
+
+  /**
+   * @return whether the decode should be given up
+   */
+  boolean isExpired() {
+    return isCancelled() ||
+        (deadline != Long.MAX_VALUE && isSuperseded() && SystemClock.uptimeMillis() >= deadline);
+  }
+
+}
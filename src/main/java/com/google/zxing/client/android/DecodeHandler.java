@@ -17,28 +17,78 @@
 package com.google.zxing.client.android;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
 import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
 import com.google.zxing.MultiFormatReader;
-import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
+import com.google.zxing.client.android.camera.CameraManager;
+import com.google.zxing.client.android.camera.ScanOperatingPoint;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.GlobalHistogramBinarizer;
 import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.MultiFormatOneDReader;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 final class DecodeHandler extends Handler {
 
   private static final String TAG = DecodeHandler.class.getSimpleName();
 
+  /**
+   * Rows read across the middle of the frame once a 1D code has been found in it.
+   */
+  private static final int CONSENSUS_ROWS = 9;
+  private static final int CONSENSUS_MIN_VOTES = 3;
+  private static final float CONSENSUS_MIN_AGREEMENT = 0.75f;
+  private static final long CONSENSUS_WINDOW_MS = 1000L;
+  /**
+   * Failed frames in a row before averaged frames are tried too.
+   */
+  private static final int FUSION_MIN_FAILURES = 3;
+  private static final int THUMBNAIL_SCALE_FACTOR = 2;
+
 //  private final CaptureActivity activity;
   private final IScanActivity activity;
   private final MultiFormatReader multiFormatReader;
+  private MultiFormatOneDReader oneDReader;
+  private final Map<DecodeHintType,Object> hints;
+  private final OneDConsensus oneDConsensus =
+      new OneDConsensus(CONSENSUS_MIN_VOTES, CONSENSUS_MIN_AGREEMENT, CONSENSUS_WINDOW_MS);
+  private StructuredAppendAssembler structuredAppend;
+  private final IdleMonitor idleMonitor;
+  private FrameFusion frameFusion;
+  private LuminancePreprocessor preprocessor;
+  private BarcodeLocator barcodeLocator;
+  private TiledDecoder tiledDecoder;
+  private AngledScanlines angledScanlines;
+  private final DecodeDeadline deadline = new DecodeDeadline();
+  /**
+   * {@link DecodeDeadline#token()} taken when the frame to decode was queued; one is asked for at a time.
+   */
+  private volatile int queuedFrameToken;
+  private long decodeBudgetMs;
+  private BitArray rowBuffer;
+  /**
+   * Matrix of the view being binarized, reused so each crop of a turned frame isn't copied into a new array.
+   */
+  private byte[] matrixBuffer;
+  private int failures;
+  private int deadlineMisses;
   private boolean running = true;
 
 //  DecodeHandler(CaptureActivity activity, Map<DecodeHintType,Object> hints) {
@@ -47,10 +97,72 @@ final class DecodeHandler extends Handler {
 //    this.activity = activity;
 //  }
   DecodeHandler(IScanActivity activity, Map<DecodeHintType,Object> hints) {
+    this(activity, hints, null, null);
+  }
+
+  /**
+   * Makes a handler which must be given its config with {@link #configure(ScannerConfig)} before its
+   * looper runs, for a decode thread which hands out the handler before it has read the config.
+   */
+  DecodeHandler(IScanActivity activity, Map<DecodeHintType,Object> hints, IdleMonitor idleMonitor) {
     multiFormatReader = new MultiFormatReader();
-    multiFormatReader.setHints(hints);
+    this.hints = hints;
     this.activity = activity;
+    this.idleMonitor = idleMonitor;
+  }
+
+  /**
+   * @param scannerConfig turns on frame fusion, preprocessing and full frame scanning; null for none
+   */
+  DecodeHandler(IScanActivity activity,
+                Map<DecodeHintType,Object> hints,
+                IdleMonitor idleMonitor,
+                ScannerConfig scannerConfig) {
+    this(activity, hints, idleMonitor);
+    configure(scannerConfig);
+  }
+
+  /**
+   * Sets up the readers from the hints as they are now and the stages the config turns on. Called on
+   * the decode thread before its looper runs.
+   *
+   * @param scannerConfig turns on frame fusion, preprocessing and full frame scanning; null for none
+   */
+  void configure(ScannerConfig scannerConfig) {
+    multiFormatReader.setHints(hints);
+    oneDReader = new MultiFormatOneDReader(hints);
+    structuredAppend = new StructuredAppendAssembler(hints);
+    LuminancePipeline preprocessing = scannerConfig == null ? null : scannerConfig.getPreprocessing();
+    frameFusion = scannerConfig != null && scannerConfig.isLowLightFusion() ? new FrameFusion() : null;
+    preprocessor = preprocessing == null ? null : new LuminancePreprocessor(preprocessing);
+    barcodeLocator = scannerConfig != null && scannerConfig.isFullFrameScan() ? new BarcodeLocator() : null;
+    tiledDecoder = scannerConfig != null && scannerConfig.getTiledCodeFraction() > 0.0f ?
+        new TiledDecoder(hints, scannerConfig.getTiledCodeFraction()) : null;
+    angledScanlines = scannerConfig != null && scannerConfig.isAngledScan() && decodesOneD(hints) ?
+        new AngledScanlines() : null;
+    decodeBudgetMs = scannerConfig == null ? 0L : scannerConfig.getDecodeBudgetMs();
+  }
+
+  /**
+   * Gives up the frame being decoded, if any, at its next check; it is reported as failed. May be
+   * called on any thread.
+   */
+  void cancelDecode() {
+    deadline.cancel();
+  }
+
+  /**
+   * Every send ends up here, on the thread delivering the frame, so a frame's token is taken as it
+   * joins the queue rather than when the decode thread gets to it.
+   */
+  @Override
+  public boolean sendMessageAtTime(Message message, long uptimeMillis) {
+    if (message.what == R.id.decode) {
+      queuedFrameToken = deadline.token();
+    }
+    return super.sendMessageAtTime(message, uptimeMillis);
   }
+
   @Override
   public void handleMessage(Message message) {
     if (!running) {
@@ -58,7 +170,28 @@ final class DecodeHandler extends Handler {
     }
     int msgWhat = message.what;
     if (msgWhat == R.id.decode) {
-      decode((byte[]) message.obj, message.arg1, message.arg2);
+      ScanTrace.begin("DecodeHandler.decode");
+      try {
+        if (idleMonitor != null) {
+          ScanTrace.begin("idleMonitor");
+          try {
+            idleMonitor.onFrame((byte[]) message.obj, message.arg1, message.arg2);
+          } finally {
+            ScanTrace.end();
+          }
+        }
+        decode((byte[]) message.obj, message.arg1, message.arg2, message.getWhen());
+      } finally {
+        ScanTrace.end();
+      }
+    }
+    else if (msgWhat == R.id.idle_frame) {
+      //暂停解码时只检测画面是否变化，再让CaptureActivityHandler按空闲节奏请求下一帧
+      idleMonitor.onFrame((byte[]) message.obj, message.arg1, message.arg2);
+      Handler handler = activity.getHandler();
+      if (handler != null) {
+        Message.obtain(handler, R.id.decode_failed).sendToTarget();
+      }
     }
     else if (msgWhat == R.id.quit) {
       running = false;
@@ -73,42 +206,192 @@ final class DecodeHandler extends Handler {
    * @param data   The YUV preview frame.
    * @param width  The width of the preview frame.
    * @param height The height of the preview frame.
+   * @param frameTime {@code SystemClock.uptimeMillis()} when the frame was handed over
    */
-  private void decode(byte[] data, int width, int height) {
-    long start = System.currentTimeMillis();
+  private void decode(byte[] data, int width, int height, long frameTime) {
+    long start = SystemClock.uptimeMillis();
+    //被取消，或超过时间预算(从拿到帧时算起)且已有更新的帧在排队时，放弃本帧剩余的解码
+    deadline.start(decodeBudgetMs > 0L ? frameTime + decodeBudgetMs : Long.MAX_VALUE, queuedFrameToken);
     Result rawResult = null;
-    //modify here start // 这里需要将获取的data翻转一下，因为相机默认拿的的横屏的数据
-    byte[] rotatedData = new byte[data.length];
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++)
-        rotatedData[x * height + height - y - 1] = data[x + y * width];
+    //相机默认拿的是横屏的数据，这里不再转置整帧，而是按摄像头需要的旋转角度构建视图，读取时换算坐标
+    OrientedLuminanceSource frame = activity.getCameraManager().buildFrame(data, width, height);
+    long rotated = SystemClock.uptimeMillis();
+    //YUV：abbr. 亮度和色差信号（Luma and Chroma，一种颜色编码方法）
+    ScanOperatingPoint operatingPoint = activity.getCameraManager().getOperatingPoint();
+    if (tiledDecoder != null) {
+      decodeTiles(frame, width, height, operatingPoint, frameTime, start, rotated);
+      return;
     }
-    int tmp = width; // Here we are swapping, that's the difference to #11
-    width = height;
-    height = tmp;
-    //modify end YUV：abbr. 亮度和色差信号（Luma and Chroma，一种颜色编码方法）
-    //buildLuminanceSource()会根据当前的取景框的范围来构建，取景框内的图像的Luminance 信号
-    PlanarYUVLuminanceSource source = activity.getCameraManager().buildLuminanceSource(rotatedData, width, height);
-    if (source != null) {
-      BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+    //降档时使用开销更小的全局阈值二值化
+    boolean cheapBinarizer = operatingPoint != null && operatingPoint.isCheapBinarizer();
+    LuminanceSource source = null;
+    BinaryBitmap bitmap = null;
+    //全画面扫描：只解码定位出的候选区域，结果点相对于该区域
+    Rect region = null;
+    List<Rect> candidates = null;
+    if (barcodeLocator != null) {
+      ScanTrace.begin("locate");
       try {
-        rawResult = multiFormatReader.decodeWithState(bitmap);
-      } catch (ReaderException re) {
-        // continue
+        candidates = barcodeLocator.locate(frame);
       } finally {
-        multiFormatReader.reset();
+        ScanTrace.end();
+      }
+      ScanTrace.begin("decodeCandidates");
+      try {
+        for (Rect candidate : candidates) {
+          if (deadline.isExpired()) {
+            break;
+          }
+          source = preprocess(frame.cropView(candidate.left, candidate.top, candidate.width(), candidate.height()));
+          bitmap = binarize(source, cheapBinarizer);
+          rawResult = decodeBitmap(bitmap);
+          if (rawResult != null) {
+            region = candidate;
+            break;
+          }
+        }
+      } finally {
+        ScanTrace.end();
+      }
+    }
+    //buildLuminanceSource()会根据当前的取景框的范围来构建，取景框内的图像的Luminance 信号
+    //候选区域都解不出(或没有候选区域)时，仍按取景框解一次
+    LuminanceSource crop = null;
+    if (rawResult == null && !deadline.isExpired()) {
+      crop = activity.getCameraManager().buildLuminanceSource(frame);
+      if (crop != null) {
+        ScanTrace.begin("decodeCrop");
+        try {
+          source = preprocess(crop);
+          bitmap = binarize(source, cheapBinarizer);
+          rawResult = decodeBitmap(bitmap);
+        } finally {
+          ScanTrace.end();
+        }
+      }
+    }
+    if (source != null) {
+      //弱光下连续失败后，对静止画面的最近几帧求平均再解一次
+      if (frameFusion != null && crop != null) {
+        if (rawResult != null) {
+          failures = 0;
+          frameFusion.reset();
+        } else {
+          failures++;
+          // Averaged before preprocessing, which may map each frame differently
+          frameFusion.add(crop);
+          if (failures >= FUSION_MIN_FAILURES && frameFusion.isReady() && !deadline.isExpired()) {
+            ScanTrace.begin("frameFusion");
+            try {
+              LuminanceSource fused = preprocess(frameFusion.fuse());
+              BinaryBitmap fusedBitmap = binarize(fused, false);
+              rawResult = decodeBitmap(fusedBitmap);
+              if (rawResult != null) {
+                Log.d(TAG, "Found barcode in averaged frames");
+                source = fused;
+                bitmap = fusedBitmap;
+                failures = 0;
+                frameFusion.reset();
+              }
+            } finally {
+              ScanTrace.end();
+            }
+          }
+        }
+      }
+      //按行解不出时，再沿几个角度的扫描线找倾斜的一维码，各条线的结果一起投票
+      boolean voted = false;
+      if (rawResult == null && angledScanlines != null && !deadline.isExpired()) {
+        Rect scanRect = candidates == null || candidates.isEmpty() ?
+            activity.getCameraManager().getDecodeRegion() : candidates.get(0);
+        if (scanRect != null) {
+          List<Result> reads;
+          ScanTrace.begin("angledScanlines");
+          try {
+            reads = angledScanlines.decode(frame, scanRect, oneDReader, hints);
+          } finally {
+            ScanTrace.end();
+          }
+          if (!reads.isEmpty()) {
+            for (Result read : reads) {
+              oneDConsensus.addCandidate(read, start);
+            }
+            rawResult = oneDConsensus.vote(start);
+            voted = true;
+            if (rawResult != null && candidates != null && !candidates.isEmpty()) {
+              region = scanRect;
+            }
+          }
+        }
+      }
+      //一维码不直接输出，先和本帧其他行及前几帧的结果一起投票
+      if (!voted && rawResult != null && DecodeFormatManager.ONE_D_FORMATS.contains(rawResult.getBarcodeFormat())) {
+        ScanTrace.begin("oneDConsensus");
+        try {
+          rawResult = voteOnOneD(rawResult, bitmap, start);
+        } finally {
+          ScanTrace.end();
+        }
+      } else if (!voted && rawResult != null) {
+        oneDConsensus.clear();
+      }
+    }
+    //Structured Append的分片先收集，齐全后才作为结果输出；已收集过的分片直接跳过
+    boolean partial = false;
+    if (rawResult != null && StructuredAppendAssembler.isPart(rawResult)) {
+      int status = structuredAppend.offer(rawResult, start);
+      if (status == StructuredAppendAssembler.COMPLETE) {
+        rawResult = structuredAppend.assemble();
+      } else if (status == StructuredAppendAssembler.ADDED) {
+        partial = true;
+      } else {
+        rawResult = null;
       }
     }
 
-    Handler handler = activity.getHandler();
+    long end = SystemClock.uptimeMillis();
+    if (rawResult == null && deadline.isExpired()) {
+      logAbandoned(end - frameTime);
+    }
+    ScanResult scanResult = null;
     if (rawResult != null) {
+      //结果点需在onFrameDecoded()可能移动解码区域之前换算
+      CameraManager cameraManager = activity.getCameraManager();
+      float[] previewPoints = region == null ? cameraManager.mapToPreview(rawResult.getResultPoints()) :
+          cameraManager.mapToPreview(rawResult.getResultPoints(), region.left, region.top);
+      scanResult = new ScanResult(rawResult, previewPoints, cameraManager.mapPreviewToScreen(previewPoints), frameTime,
+          start - frameTime, rotated - start, end - rotated, end - frameTime);
+    }
+    ViewfinderView viewfinderView = activity.getViewfinderView();
+    if (viewfinderView != null) {
+      viewfinderView.publishPossibleResultPoints();
+    }
+    ScanTrace.begin("onFrameDecoded");
+    try {
+      activity.getCameraManager().onFrameDecoded(data, width, height, end - start, rawResult != null);
+    } finally {
+      ScanTrace.end();
+    }
+
+    Handler handler = activity.getHandler();
+    if (partial) {
+      Log.d(TAG, "Collected part " + structuredAppend.getCollected() + " of " + structuredAppend.getTotal());
+      if (handler != null) {
+        Message.obtain(handler, R.id.decode_partial, structuredAppend.getCollected(), structuredAppend.getTotal(),
+            scanResult).sendToTarget();
+      }
+    } else if (rawResult != null) {
       // Don't log the barcode contents for security.
-      long end = System.currentTimeMillis();
       Log.d(TAG, "Found barcode in " + (end - start) + " ms");
       if (handler != null) {
-        Message message = Message.obtain(handler, R.id.decode_succeeded, rawResult);
+        Message message = Message.obtain(handler, R.id.decode_succeeded, scanResult);
         Bundle bundle = new Bundle();
-        bundleThumbnail(source, bundle);        
+        ScanTrace.begin("bundleThumbnail");
+        try {
+          bundleThumbnail(source, bundle);
+        } finally {
+          ScanTrace.end();
+        }
         message.setData(bundle);
         message.sendToTarget();
       }
@@ -120,10 +403,168 @@ final class DecodeHandler extends Handler {
     }
   }
 
-  private static void bundleThumbnail(PlanarYUVLuminanceSource source, Bundle bundle) {
-    int[] pixels = source.renderThumbnail();
-    int width = source.getThumbnailWidth();
-    int height = source.getThumbnailHeight();
+  /**
+   * Decodes every code in the frame, tile by tile, and sends all of them at once.
+   */
+  private void decodeTiles(OrientedLuminanceSource frame,
+                           int width,
+                           int height,
+                           ScanOperatingPoint operatingPoint,
+                           long frameTime,
+                           long start,
+                           long rotated) {
+    // Use every core, unless the governor has stepped down to save heat and battery
+    int maxWorkers = operatingPoint == null || operatingPoint == ScanOperatingPoint.FULL ?
+        Integer.MAX_VALUE : operatingPoint.getDecodeWorkers();
+    List<Result> results;
+    ScanTrace.begin("decodeTiles");
+    try {
+      results = tiledDecoder.decode(frame, maxWorkers, deadline);
+    } finally {
+      ScanTrace.end();
+    }
+    long end = SystemClock.uptimeMillis();
+    if (deadline.isExpired()) {
+      logAbandoned(end - frameTime);
+    }
+    CameraManager cameraManager = activity.getCameraManager();
+    ArrayList<ScanResult> scanResults = new ArrayList<>(results.size());
+    for (Result result : results) {
+      float[] previewPoints = cameraManager.mapToPreview(result.getResultPoints(), 0, 0);
+      scanResults.add(new ScanResult(result, previewPoints, cameraManager.mapPreviewToScreen(previewPoints), frameTime,
+          start - frameTime, rotated - start, end - rotated, end - frameTime));
+    }
+    ViewfinderView viewfinderView = activity.getViewfinderView();
+    if (viewfinderView != null) {
+      viewfinderView.publishPossibleResultPoints();
+    }
+    ScanTrace.begin("onFrameDecoded");
+    try {
+      cameraManager.onFrameDecoded(frame.getData(), width, height, end - start, !results.isEmpty());
+    } finally {
+      ScanTrace.end();
+    }
+
+    Handler handler = activity.getHandler();
+    if (handler == null) {
+      return;
+    }
+    if (scanResults.isEmpty()) {
+      Message.obtain(handler, R.id.decode_failed).sendToTarget();
+    } else {
+      Log.d(TAG, "Found " + scanResults.size() + " barcodes in " + (end - start) + " ms");
+      Message message = Message.obtain(handler, R.id.decode_succeeded_all, scanResults);
+      Bundle bundle = new Bundle();
+      ScanTrace.begin("bundleThumbnail");
+      try {
+        bundleThumbnail(frame, bundle);
+      } finally {
+        ScanTrace.end();
+      }
+      message.setData(bundle);
+      message.sendToTarget();
+    }
+  }
+
+  private static boolean decodesOneD(Map<DecodeHintType,Object> hints) {
+    @SuppressWarnings("unchecked")
+    Collection<BarcodeFormat> formats = hints == null ? null :
+        (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+    return formats == null || !Collections.disjoint(formats, DecodeFormatManager.ONE_D_FORMATS);
+  }
+
+  private LuminanceSource preprocess(LuminanceSource source) {
+    return preprocessor == null ? source : preprocessor.process(source);
+  }
+
+  private BinaryBitmap binarize(LuminanceSource source, boolean cheapBinarizer) {
+    if (source instanceof OrientedLuminanceSource) {
+      // The bitmap keeps its black matrix, so the next view may overwrite the luminance it came from
+      int area = source.getWidth() * source.getHeight();
+      if (matrixBuffer == null || matrixBuffer.length < area) {
+        matrixBuffer = new byte[area];
+      }
+      ((OrientedLuminanceSource) source).setMatrixBuffer(matrixBuffer);
+    }
+    Binarizer binarizer = cheapBinarizer ? new GlobalHistogramBinarizer(source) : new HybridBinarizer(source);
+    return new BinaryBitmap(new DeadlineBinarizer(binarizer, deadline));
+  }
+
+  /**
+   * Counts a frame given up on for running out of time or being cancelled.
+   */
+  private void logAbandoned(long ageMs) {
+    if (deadline.isCancelled()) {
+      Log.d(TAG, "Decode cancelled after " + ageMs + " ms");
+    } else {
+      deadlineMisses++;
+      Log.d(TAG, "Gave up on frame after " + ageMs + " ms, " + deadlineMisses + " deadline misses so far");
+    }
+  }
+
+  /**
+   * @return the result, or null if there is none
+   */
+  private Result decodeBitmap(BinaryBitmap bitmap) {
+    try {
+      return multiFormatReader.decodeWithState(bitmap);
+    } catch (ReaderException re) {
+      return null;
+    } finally {
+      multiFormatReader.reset();
+    }
+  }
+
+  /**
+   * Adds the frame's 1D read and reads of more rows of the frame to the consensus, and votes.
+   *
+   * @return the agreed result, which may come from an earlier frame, or null if there is none yet
+   */
+  private Result voteOnOneD(Result rawResult, BinaryBitmap bitmap, long now) {
+    oneDConsensus.addCandidate(rawResult, now);
+    int width = bitmap.getWidth();
+    int height = bitmap.getHeight();
+    // Spread over the middle half, where the reader itself starts looking
+    int step = Math.max(1, height / (2 * (CONSENSUS_ROWS + 1)));
+    int firstRow = height / 4 + step;
+    for (int i = 0; i < CONSENSUS_ROWS; i++) {
+      int rowNumber = firstRow + i * step;
+      if (rowNumber >= height || deadline.isExpired()) {
+        break;
+      }
+      if (rowBuffer == null || rowBuffer.getSize() < width) {
+        rowBuffer = new BitArray(width);
+      }
+      try {
+        rowBuffer = bitmap.getBlackRow(rowNumber, rowBuffer);
+        // A damaged row adds nothing; the others vote
+        oneDConsensus.addRow(oneDReader, rowNumber, rowBuffer, hints, now);
+      } catch (ReaderException re) {
+        // Row given up on with the frame
+      } finally {
+        oneDReader.reset();
+      }
+    }
+    return oneDConsensus.vote(now);
+  }
+
+  /**
+   * Renders every other pixel of every other row as grey, as {@code PlanarYUVLuminanceSource} does,
+   * for a source in any orientation.
+   */
+  private static void bundleThumbnail(LuminanceSource source, Bundle bundle) {
+    int width = source.getWidth() / THUMBNAIL_SCALE_FACTOR;
+    int height = source.getHeight() / THUMBNAIL_SCALE_FACTOR;
+    int[] pixels = new int[width * height];
+    byte[] row = null;
+    for (int y = 0; y < height; y++) {
+      row = source.getRow(y * THUMBNAIL_SCALE_FACTOR, row);
+      int outputOffset = y * width;
+      for (int x = 0; x < width; x++) {
+        int grey = row[x * THUMBNAIL_SCALE_FACTOR] & 0xff;
+        pixels[outputOffset + x] = 0xFF000000 | (grey * 0x00010101);
+      }
+    }
     Bitmap bitmap = Bitmap.createBitmap(pixels, 0, width, width, height, Bitmap.Config.ARGB_8888);
     ByteArrayOutputStream out = new ByteArrayOutputStream();    
     bitmap.compress(Bitmap.CompressFormat.JPEG, 50, out);
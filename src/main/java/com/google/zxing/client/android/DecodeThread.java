@@ -16,10 +16,8 @@
 
 package com.google.zxing.client.android;
 
-import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
-import android.preference.PreferenceManager;
 import android.util.Log;
 
 import com.google.zxing.BarcodeFormat;
@@ -28,7 +26,6 @@ import com.google.zxing.ResultPointCallback;
 
 import java.util.Collection;
 import java.util.EnumMap;
-import java.util.EnumSet;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
@@ -44,6 +41,9 @@ final class DecodeThread extends Thread {
 
   private final IScanActivity activity;
   private final Map<DecodeHintType,Object> hints;
+  private final IdleMonitor idleMonitor;
+  private final Collection<BarcodeFormat> decodeFormats;
+  private ScannerConfig scannerConfig;
   private Handler handler;
   private final CountDownLatch handlerInitLatch;
 
@@ -52,8 +52,22 @@ final class DecodeThread extends Thread {
                Map<DecodeHintType,?> baseHints,
                String characterSet,
                ResultPointCallback resultPointCallback) {
+    this(activity, decodeFormats, baseHints, characterSet, resultPointCallback, null, null);
+  }
+
+  /**
+   * @param scannerConfig gives the formats to decode if none are passed and how to decode; null to take the one from the preferences
+   */
+  DecodeThread(IScanActivity activity,
+               Collection<BarcodeFormat> decodeFormats,
+               Map<DecodeHintType,?> baseHints,
+               String characterSet,
+               ResultPointCallback resultPointCallback,
+               IdleMonitor idleMonitor,
+               ScannerConfig scannerConfig) {
 
     this.activity = activity;
+    this.idleMonitor = idleMonitor;
     handlerInitLatch = new CountDownLatch(1);
 
     hints = new EnumMap<>(DecodeHintType.class);
@@ -61,36 +75,13 @@ final class DecodeThread extends Thread {
       hints.putAll(baseHints);
     }
 
-    // The prefs can't change while the thread is running, so pick them up once here.
-    if (decodeFormats == null || decodeFormats.isEmpty()) {
-      SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(activity.getActivity());
-      decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
-      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_1D_PRODUCT, true)) {
-        decodeFormats.addAll(DecodeFormatManager.PRODUCT_FORMATS);
-      }
-      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_1D_INDUSTRIAL, true)) {
-        decodeFormats.addAll(DecodeFormatManager.INDUSTRIAL_FORMATS);
-      }
-      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_QR, true)) {
-        decodeFormats.addAll(DecodeFormatManager.QR_CODE_FORMATS);
-      }
-      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_DATA_MATRIX, true)) {
-        decodeFormats.addAll(DecodeFormatManager.DATA_MATRIX_FORMATS);
-      }
-      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_AZTEC, false)) {
-        decodeFormats.addAll(DecodeFormatManager.AZTEC_FORMATS);
-      }
-      if (prefs.getBoolean(PreferencesActivity.KEY_DECODE_PDF417, false)) {
-        decodeFormats.addAll(DecodeFormatManager.PDF417_FORMATS);
-      }
-    }
-    hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+    this.scannerConfig = scannerConfig;
+    this.decodeFormats = decodeFormats;
 
     if (characterSet != null) {
       hints.put(DecodeHintType.CHARACTER_SET, characterSet);
     }
     hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, resultPointCallback);
-    Log.i("DecodeThread", "Hints: " + hints);
   }
 
   Handler getHandler() {
@@ -102,11 +93,36 @@ final class DecodeThread extends Thread {
     return handler;
   }
 
+  /**
+   * Gives up the frame being decoded, if any, so a pause or quit doesn't wait for it. May be called on
+   * any thread.
+   */
+  void cancelDecode() {
+    DecodeHandler decodeHandler = (DecodeHandler) getHandler();
+    if (decodeHandler != null) {
+      decodeHandler.cancelDecode();
+    }
+  }
+
   @Override
   public void run() {
     Looper.prepare();
-    handler = new DecodeHandler(activity, hints);
+    DecodeHandler decodeHandler = new DecodeHandler(activity, hints, idleMonitor);
+    handler = decodeHandler;
+    // getHandler() on the main thread needn't wait for the preferences to be read: messages sent
+    // meanwhile are only handled once the looper runs, after the handler has been configured.
     handlerInitLatch.countDown();
+    // The config can't change while the thread is running, so pick it up once here, off the main thread.
+    if (scannerConfig == null) {
+      scannerConfig = ScannerConfigStore.get(activity.getActivity()).awaitCurrent();
+    }
+    Collection<BarcodeFormat> formats = decodeFormats;
+    if (formats == null || formats.isEmpty()) {
+      formats = scannerConfig.getDecodeFormats();
+    }
+    hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+    Log.i("DecodeThread", "Hints: " + hints);
+    decodeHandler.configure(scannerConfig);
     Looper.loop();
   }
 
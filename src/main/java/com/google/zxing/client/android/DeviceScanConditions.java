@@ -0,0 +1,88 @@
+package com.google.zxing.client.android;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.google.zxing.client.android.camera.ScanConditions;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Reads thermal status and battery state from the system for the
+ * {@link com.google.zxing.client.android.camera.ScanGovernor}. Thermal status needs API 29, which this
+ * build doesn't compile against, so it is looked up by reflection there; older devices report
+ * {@link #UNKNOWN} and are governed by battery and decode latency alone. Both readings go to system
+ * services, so call them from the decode thread and never under a lock the UI waits on.
+ * 从系统读取设备温度状态及电量
+ */
+public final class DeviceScanConditions implements ScanConditions {
+
+  private static final String TAG = DeviceScanConditions.class.getSimpleName();
+
+  /**
+   * {@code Build.VERSION_CODES.Q}, where {@code PowerManager.getCurrentThermalStatus()} appeared.
+   */
+  private static final int THERMAL_STATUS_API = 29;
+
+  private final Context context;
+  private final PowerManager powerManager;
+  private Method getCurrentThermalStatus;
+  private boolean thermalStatusUnavailable;
+  private final IntentFilter batteryFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+  private Intent lastBatteryStatus;
+
+  public DeviceScanConditions(Context context) {
+    this.context = context.getApplicationContext();
+    powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+  }
+
+  @Override
+  public int getThermalStatus() {
+    if (Build.VERSION.SDK_INT < THERMAL_STATUS_API || powerManager == null || thermalStatusUnavailable) {
+      return UNKNOWN;
+    }
+    try {
+      if (getCurrentThermalStatus == null) {
+        getCurrentThermalStatus = PowerManager.class.getMethod("getCurrentThermalStatus");
+      }
+      return (Integer) getCurrentThermalStatus.invoke(powerManager);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      Log.w(TAG, "No thermal status on this device", e);
+      thermalStatusUnavailable = true;
+      return UNKNOWN;
+    }
+  }
+
+  @Override
+  public int getBatteryPercent() {
+    // ACTION_BATTERY_CHANGED is sticky, so no receiver needs to stay registered
+    Intent status = context.registerReceiver(null, batteryFilter);
+    lastBatteryStatus = status;
+    if (status == null) {
+      return UNKNOWN;
+    }
+    int level = status.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+    int scale = status.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+    return level < 0 || scale <= 0 ? UNKNOWN : level * 100 / scale;
+  }
+
+  /**
+   * Answers from the status fetched by the preceding {@link #getBatteryPercent()}, as the governor asks
+   * for both at once.
+   */
+  @Override
+  public boolean isCharging() {
+    Intent status = lastBatteryStatus;
+    if (status == null) {
+      status = context.registerReceiver(null, batteryFilter);
+    }
+    return status != null && status.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+  }
+
+}
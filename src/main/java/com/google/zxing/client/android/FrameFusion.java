@@ -0,0 +1,160 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import java.util.Arrays;
+
+/**
+ * Averages the luminance of the last few frames of a still scene, for light so dim that single frames
+ * are too noisy to binarize. Sensor noise is independent from frame to frame while the code is not,
+ * so the average of {@code n} frames has about {@code 1/sqrt(n)} of the noise. A frame which differs
+ * too much from the oldest one kept means the camera or the code moved; averaging then would only
+ * blur, so the frames before it are dropped. Frames are compared by the means of small cells rather
+ * than pixel by pixel: averaging a cell cancels most of the noise, which in the dim light fusion is
+ * for would otherwise look like motion on every frame, while a moving edge still shifts the means.
+ * <p>
+ * The crops, their running sum and the averaged frame are allocated once per crop size and reused.
+ * Used on the decode thread only.
+ * 弱光多帧融合：画面静止时对最近几帧取景框内的亮度求平均以降噪
+ */
+final class FrameFusion {
+
+  private static final int MAX_FRAMES = 4;
+  private static final int MIN_FRAMES = 3;
+  /**
+   * Side of the cells whose means are compared; their 64 pixels cut the noise of the mean by 8.
+   */
+  private static final int CELL = 8;
+  /**
+   * Mean absolute difference of the cell means above which the scene counts as moved.
+   */
+  private static final int MAX_MEAN_DIFFERENCE = 6;
+
+  private final byte[][] frames = new byte[MAX_FRAMES][];
+  /**
+   * Luminance sums of the full cells of each kept frame, row by row.
+   */
+  private final int[][] cellSums = new int[MAX_FRAMES][];
+  private int[] sum;
+  private byte[] fused;
+  private byte[] row;
+  private int width;
+  private int height;
+  private int oldest;
+  private int count;
+
+  /**
+   * Adds a frame which did not decode, dropping the oldest kept or, if the scene moved, all of them.
+   */
+  void add(LuminanceSource source) {
+    int sourceWidth = source.getWidth();
+    int sourceHeight = source.getHeight();
+    if (sourceWidth != width || sourceHeight != height) {
+      allocate(sourceWidth, sourceHeight);
+    }
+    int newest = (oldest + count) % MAX_FRAMES;
+    if (count == MAX_FRAMES) {
+      subtract(frames[oldest]);
+      oldest = (oldest + 1) % MAX_FRAMES;
+      count--;
+    }
+    byte[] frame = frames[newest];
+    for (int y = 0; y < height; y++) {
+      row = source.getRow(y, row);
+      System.arraycopy(row, 0, frame, y * width, width);
+    }
+    sumCells(frame, cellSums[newest]);
+    if (count > 0 && moved(cellSums[oldest], cellSums[newest])) {
+      reset();
+      oldest = newest;
+    }
+    int[] sum = this.sum;
+    for (int i = 0; i < sum.length; i++) {
+      sum[i] += frame[i] & 0xFF;
+    }
+    count++;
+  }
+
+  /**
+   * @return whether enough frames of a still scene are kept to average
+   */
+  boolean isReady() {
+    return count >= MIN_FRAMES;
+  }
+
+  /**
+   * @return the average of the kept frames; its buffer is overwritten by the next call
+   */
+  PlanarYUVLuminanceSource fuse() {
+    int[] sum = this.sum;
+    byte[] fused = this.fused;
+    int n = count;
+    int half = n / 2;
+    for (int i = 0; i < sum.length; i++) {
+      fused[i] = (byte) ((sum[i] + half) / n);
+    }
+    return new PlanarYUVLuminanceSource(fused, width, height, 0, 0, width, height, false);
+  }
+
+  /**
+   * Forgets the kept frames, e.g. after a decode succeeded.
+   */
+  void reset() {
+    if (sum != null) {
+      Arrays.fill(sum, 0);
+    }
+    oldest = 0;
+    count = 0;
+  }
+
+  private void allocate(int newWidth, int newHeight) {
+    width = newWidth;
+    height = newHeight;
+    int area = newWidth * newHeight;
+    int cells = (newWidth / CELL) * (newHeight / CELL);
+    for (int i = 0; i < MAX_FRAMES; i++) {
+      frames[i] = new byte[area];
+      cellSums[i] = new int[cells];
+    }
+    sum = new int[area];
+    fused = new byte[area];
+    row = new byte[newWidth];
+    oldest = 0;
+    count = 0;
+  }
+
+  private void subtract(byte[] frame) {
+    int[] sum = this.sum;
+    for (int i = 0; i < sum.length; i++) {
+      sum[i] -= frame[i] & 0xFF;
+    }
+  }
+
+  private void sumCells(byte[] frame, int[] cells) {
+    Arrays.fill(cells, 0);
+    int columns = width / CELL;
+    int rows = height / CELL;
+    for (int y = 0; y < rows * CELL; y++) {
+      int cell = (y / CELL) * columns;
+      int offset = y * width;
+      for (int column = 0; column < columns; column++) {
+        int cellSum = 0;
+        for (int end = offset + CELL; offset < end; offset++) {
+          cellSum += frame[offset] & 0xFF;
+        }
+        cells[cell + column] += cellSum;
+      }
+    }
+  }
+
+  private static boolean moved(int[] a, int[] b) {
+    long difference = 0L;
+    for (int i = 0; i < a.length; i++) {
+      difference += Math.abs(a[i] - b[i]);
+    }
+    // The sums are of CELL * CELL pixels each
+    return a.length > 0 && difference > (long) MAX_MEAN_DIFFERENCE * CELL * CELL * a.length;
+  }
+
+}
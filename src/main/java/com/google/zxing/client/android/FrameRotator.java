@@ -0,0 +1,156 @@
+package com.google.zxing.client.android;
+
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies a turned or mirrored view of a frame into a plain row by row buffer, for where one is really
+ * needed, e.g. {@code HybridBinarizer} asking for the whole matrix. A turned row runs down a column
+ * of the frame, so copying row by row touches a new cache line for every pixel and has lost them all
+ * by the next row. The copy is done in square blocks instead, small enough for the lines a block
+ * reads to stay cached until the block's next row uses them. Large frames are split into bands of
+ * blocks copied on {@link ScannerExecutors#decoder()} as well as on the calling thread.
+ * 分块转置：按缓存友好的小方块旋转/镜像复制亮度数据，大帧分条带多线程复制
+ */
+public final class FrameRotator {
+
+  private static final String TAG = FrameRotator.class.getSimpleName();
+
+  /**
+   * Block side; a block's 64 source lines and 4 KB of output fit in the smallest L1 caches.
+   */
+  private static final int BLOCK = 64;
+  /**
+   * Below this many pixels handing bands to other threads costs more than it saves.
+   */
+  private static final int PARALLEL_MIN_PIXELS = 1 << 20;
+
+  private FrameRotator() {
+  }
+
+  /**
+   * Copies the view with pixel (x, y) at {@code origin + x * stepX + y * stepY} in {@code data} into
+   * {@code out}, row by row.
+   */
+  static void copy(byte[] data, int origin, int stepX, int stepY, int width, int height, byte[] out) {
+    int cores = Runtime.getRuntime().availableProcessors();
+    if (cores > 1 && stepX != 1 && width * height >= PARALLEL_MIN_PIXELS) {
+      new ParallelCopy(data, origin, stepX, stepY, width, height, out).run(cores);
+    } else {
+      copyRows(data, origin, stepX, stepY, width, 0, height, out);
+    }
+  }
+
+  /**
+   * Copies rows {@code top} to {@code bottom}, block by block.
+   */
+  private static void copyRows(byte[] data,
+                               int origin,
+                               int stepX,
+                               int stepY,
+                               int width,
+                               int top,
+                               int bottom,
+                               byte[] out) {
+    if (stepX == 1) {
+      // Rows run along the frame already
+      for (int y = top; y < bottom; y++) {
+        System.arraycopy(data, origin + y * stepY, out, y * width, width);
+      }
+      return;
+    }
+    for (int blockTop = top; blockTop < bottom; blockTop += BLOCK) {
+      int blockBottom = Math.min(blockTop + BLOCK, bottom);
+      for (int blockLeft = 0; blockLeft < width; blockLeft += BLOCK) {
+        int blockRight = Math.min(blockLeft + BLOCK, width);
+        for (int y = blockTop; y < blockBottom; y++) {
+          int in = origin + blockLeft * stepX + y * stepY;
+          int outOffset = y * width;
+          for (int x = blockLeft; x < blockRight; x++) {
+            out[outOffset + x] = data[in];
+            in += stepX;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Bands of block rows, taken in turn by the calling thread and decoder pool threads. The caller
+   * waits for bands being copied, never for helpers to start, so a busy pool only means it copies
+   * more bands itself.
+   */
+  private static final class ParallelCopy implements Runnable {
+
+    private final byte[] data;
+    private final int origin;
+    private final int stepX;
+    private final int stepY;
+    private final int width;
+    private final int height;
+    private final byte[] out;
+    private final int bandHeight;
+    private final int bandCount;
+    private final AtomicInteger nextBand = new AtomicInteger();
+    private final CountDownLatch done;
+
+    ParallelCopy(byte[] data, int origin, int stepX, int stepY, int width, int height, byte[] out) {
+      this.data = data;
+      this.origin = origin;
+      this.stepX = stepX;
+      this.stepY = stepY;
+      this.width = width;
+      this.height = height;
+      this.out = out;
+      int blockRows = (height + BLOCK - 1) / BLOCK;
+      int cores = Runtime.getRuntime().availableProcessors();
+      // A few bands per thread, so one slow to start doesn't hold up the rest
+      bandHeight = BLOCK * Math.max(1, blockRows / (2 * cores));
+      bandCount = (height + bandHeight - 1) / bandHeight;
+      done = new CountDownLatch(bandCount);
+    }
+
+    void run(int threads) {
+      int helpers = Math.min(threads, bandCount) - 1;
+      for (int i = 0; i < helpers; i++) {
+        try {
+          ScannerExecutors.decoder().execute(this);
+        } catch (RejectedExecutionException ree) {
+          Log.w(TAG, "Copying on fewer threads", ree);
+          break;
+        }
+      }
+      run();
+      boolean interrupted = false;
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException ie) {
+          // The buffer must be complete before it is handed back
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void run() {
+      int band;
+      while ((band = nextBand.getAndIncrement()) < bandCount) {
+        int top = band * bandHeight;
+        try {
+          copyRows(data, origin, stepX, stepY, width, top, Math.min(top + bandHeight, height), out);
+        } finally {
+          done.countDown();
+        }
+      }
+    }
+  }
+
+}
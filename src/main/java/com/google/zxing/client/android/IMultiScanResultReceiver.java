@@ -0,0 +1,23 @@
+package com.google.zxing.client.android;
+
+import android.graphics.Bitmap;
+
+import java.util.List;
+
+/**
+ * Implemented next to {@link IScanActivity} by scanners which want all the codes found in a frame when
+ * tiled scanning is on, see {@link ScannerConfig#getTiledCodeFraction()}. Scanners without it get the
+ * first code as a single result.
+ * 分块解码时需要一帧中全部扫描结果的扫描界面实现此接口
+ */
+public interface IMultiScanResultReceiver {
+
+    /**
+     * Valid barcodes have been found. Called on the main thread.
+     *
+     * @param results the barcodes, at least one, with points in the whole frame
+     * @param barcode a greyscale bitmap of the whole frame, may be null
+     * @param scaleFactor amount by which the bitmap was scaled
+     */
+    void handleScanResults(List<ScanResult> results, Bitmap barcode, float scaleFactor);
+}
@@ -0,0 +1,19 @@
+package com.google.zxing.client.android;
+
+/**
+ * Implemented next to {@link IScanActivity} by scanners which want to hear about the parts of a
+ * Structured Append QR code as they are collected. Scanning goes on after each part; the joined
+ * result arrives as usual once the last one is in.
+ * 需要得知Structured Append二维码分片收集进度的扫描界面实现此接口
+ */
+public interface IScanProgressReceiver {
+
+    /**
+     * A part not seen before has been collected. Called on the main thread.
+     *
+     * @param part the part just collected
+     * @param collected parts collected so far
+     * @param total parts in the set
+     */
+    void handleScanProgress(ScanResult part, int collected, int total);
+}
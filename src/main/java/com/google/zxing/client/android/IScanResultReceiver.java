@@ -0,0 +1,20 @@
+package com.google.zxing.client.android;
+
+import android.graphics.Bitmap;
+
+/**
+ * Implemented next to {@link IScanActivity} by scanners which want the whole {@link ScanResult}
+ * rather than just the ZXing {@code Result}; {@link IScanActivity#handleDecode} is not called then.
+ * 需要完整扫描结果(含坐标、耗时)的扫描界面实现此接口
+ */
+public interface IScanResultReceiver {
+
+    /**
+     * A valid barcode has been found. Called on the main thread.
+     *
+     * @param result the barcode and how it was found
+     * @param barcode a greyscale bitmap of the camera data which was decoded, may be null
+     * @param scaleFactor amount by which the bitmap was scaled
+     */
+    void handleScanResult(ScanResult result, Bitmap barcode, float scaleFactor);
+}
@@ -0,0 +1,204 @@
+package com.google.zxing.client.android;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Winds the scanner down in steps while nothing happens in front of the camera, instead of running
+ * camera and decoder at full rate until a timeout finishes the activity. Anything that looks like a
+ * scan attempt counts as activity: a decode, a candidate result point, a visible change of the scene
+ * or a touch. Without it the monitor goes
+ * <ol>
+ *   <li>{@link State#DROWSY}: low preview FPS, frames decoded at a slow pace by the one decode thread,</li>
+ *   <li>{@link State#PAUSED}: nothing is decoded, a few frames per second are only compared for scene changes,</li>
+ *   <li>{@link State#RELEASED}: the camera is closed, only a touch wakes the scanner up again.</li>
+ * </ol>
+ * Waking up from the first two takes at most one paused frame interval, from the last one the time
+ * to reopen the camera.
+ * 无操作时逐级降低扫描开销：降帧率 -> 暂停解码 -> 释放摄像头；画面变化或触摸时恢复
+ */
+final class IdleMonitor {
+
+  private static final String TAG = IdleMonitor.class.getSimpleName();
+
+  static final long DROWSY_AFTER_MS = 15 * 1000L;
+  static final long PAUSE_AFTER_MS = 60 * 1000L;
+  static final long RELEASE_AFTER_MS = 5 * 60 * 1000L;
+  /**
+   * Preview frame rate cap while drowsy or paused.
+   */
+  static final int IDLE_PREVIEW_FPS = 10;
+
+  /**
+   * Frames are compared on a coarse grid of cells, each the mean of a few samples, so sensor noise
+   * averages out while a hand or a code entering the frame still moves many cells.
+   */
+  private static final int GRID_SIZE = 16;
+  private static final int SAMPLES_PER_CELL_SIDE = 4;
+  private static final int SCENE_CHANGE_THRESHOLD = 12;
+
+  enum State {
+    ACTIVE,
+    DROWSY,
+    PAUSED,
+    RELEASED
+  }
+
+  /**
+   * Called on the main thread whenever the state changes.
+   */
+  interface Listener {
+    void onIdleStateChanged(State state);
+  }
+
+  private final Listener listener;
+  private final Handler mainHandler;
+  private final Runnable checkTask;
+  private final Runnable wakeTask;
+  private volatile State state = State.ACTIVE;
+  private volatile long lastActivityTime;
+  private boolean started;
+
+  // Written on the decode thread
+  private final int[] cellMeans = new int[GRID_SIZE * GRID_SIZE];
+  private volatile boolean hasReference;
+
+  IdleMonitor(Listener listener) {
+    this.listener = listener;
+    mainHandler = new Handler(Looper.getMainLooper());
+    checkTask = new Runnable() {
+      @Override
+      public void run() {
+        check();
+      }
+    };
+    wakeTask = new Runnable() {
+      @Override
+      public void run() {
+        changeState(State.ACTIVE);
+        check();
+      }
+    };
+  }
+
+  /**
+   * Starts watching, in {@link State#ACTIVE}. Call on the main thread.
+   */
+  void start() {
+    started = true;
+    state = State.ACTIVE;
+    hasReference = false;
+    lastActivityTime = SystemClock.uptimeMillis();
+    mainHandler.removeCallbacks(checkTask);
+    mainHandler.postDelayed(checkTask, DROWSY_AFTER_MS);
+  }
+
+  /**
+   * Stops watching. Call on the main thread.
+   */
+  void stop() {
+    started = false;
+    mainHandler.removeCallbacks(checkTask);
+    mainHandler.removeCallbacks(wakeTask);
+  }
+
+  State getState() {
+    return state;
+  }
+
+  /**
+   * Reports activity; safe to call from any thread and cheap while already active.
+   */
+  void onActivity() {
+    lastActivityTime = SystemClock.uptimeMillis();
+    if (state != State.ACTIVE) {
+      mainHandler.removeCallbacks(wakeTask);
+      mainHandler.post(wakeTask);
+    }
+  }
+
+  /**
+   * Compares a preview frame with the previous one and reports activity if the scene changed. Called
+   * on the decode thread.
+   *
+   * @param yuvData preview frame, only the leading Y plane is read
+   * @param width width of the frame
+   * @param height height of the frame
+   */
+  void onFrame(byte[] yuvData, int width, int height) {
+    int cellWidth = width / GRID_SIZE;
+    int cellHeight = height / GRID_SIZE;
+    if (cellWidth < SAMPLES_PER_CELL_SIDE || cellHeight < SAMPLES_PER_CELL_SIDE) {
+      return;
+    }
+    int stepX = cellWidth / SAMPLES_PER_CELL_SIDE;
+    int stepY = cellHeight / SAMPLES_PER_CELL_SIDE;
+    int samples = SAMPLES_PER_CELL_SIDE * SAMPLES_PER_CELL_SIDE;
+    int[] cellMeans = this.cellMeans;
+    long totalDifference = 0L;
+    int cell = 0;
+    for (int cellY = 0; cellY < GRID_SIZE; cellY++) {
+      for (int cellX = 0; cellX < GRID_SIZE; cellX++) {
+        int sum = 0;
+        int top = cellY * cellHeight + stepY / 2;
+        int left = cellX * cellWidth + stepX / 2;
+        for (int sy = 0; sy < SAMPLES_PER_CELL_SIDE; sy++) {
+          int offset = (top + sy * stepY) * width + left;
+          for (int sx = 0; sx < SAMPLES_PER_CELL_SIDE; sx++) {
+            sum += yuvData[offset + sx * stepX] & 0xff;
+          }
+        }
+        int mean = sum / samples;
+        int difference = mean - cellMeans[cell];
+        totalDifference += difference < 0 ? -difference : difference;
+        cellMeans[cell++] = mean;
+      }
+    }
+    if (hasReference && totalDifference > (long) SCENE_CHANGE_THRESHOLD * cellMeans.length) {
+      onActivity();
+    }
+    hasReference = true;
+  }
+
+  private void check() {
+    if (!started) {
+      return;
+    }
+    long idle = SystemClock.uptimeMillis() - lastActivityTime;
+    State target;
+    long nextCheck;
+    if (idle >= RELEASE_AFTER_MS) {
+      target = State.RELEASED;
+      nextCheck = -1L;
+    } else if (idle >= PAUSE_AFTER_MS) {
+      target = State.PAUSED;
+      nextCheck = RELEASE_AFTER_MS - idle;
+    } else if (idle >= DROWSY_AFTER_MS) {
+      target = State.DROWSY;
+      nextCheck = PAUSE_AFTER_MS - idle;
+    } else {
+      target = State.ACTIVE;
+      nextCheck = DROWSY_AFTER_MS - idle;
+    }
+    // Only ever go deeper here; waking up is left to onActivity()
+    if (target.ordinal() > state.ordinal()) {
+      changeState(target);
+    }
+    mainHandler.removeCallbacks(checkTask);
+    if (nextCheck >= 0L) {
+      mainHandler.postDelayed(checkTask, nextCheck);
+    }
+  }
+
+  private void changeState(State newState) {
+    if (!started || newState == state) {
+      return;
+    }
+    Log.i(TAG, "Idle state " + state + " -> " + newState);
+    state = newState;
+    listener.onIdleStateChanged(newState);
+  }
+
+}
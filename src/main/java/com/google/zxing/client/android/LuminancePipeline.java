@@ -0,0 +1,197 @@
+package com.google.zxing.client.android;
+
+import java.util.Arrays;
+
+/**
+ * A chain of {@link LuminanceStage}s applied to the cropped luminance before it is binarized, to make
+ * up for glare, low contrast or a dark exposure. The stages are folded into one 256 entry lookup
+ * table per frame, then the crop is mapped through it in a single pass. Immutable; set one per scan
+ * mode with {@link ScannerConfig.Builder#setPreprocessing(String, LuminancePipeline)}.
+ * 取景框内亮度的预处理链：各步骤合并为一张256项查找表后一次映射完成
+ */
+public final class LuminancePipeline {
+
+  private final LuminanceStage[] stages;
+
+  private LuminancePipeline(LuminanceStage[] stages) {
+    this.stages = stages;
+  }
+
+  /**
+   * @param stages applied in the given order
+   */
+  public static LuminancePipeline of(LuminanceStage... stages) {
+    if (stages == null || stages.length == 0) {
+      throw new IllegalArgumentException("A pipeline needs at least one stage");
+    }
+    for (LuminanceStage stage : stages) {
+      if (stage == null) {
+        throw new IllegalArgumentException("Stages must not be null");
+      }
+    }
+    return new LuminancePipeline(stages.clone());
+  }
+
+  /**
+   * Spreads the values between two percentiles of the frame over the whole range.
+   *
+   * @param lowFraction share of darkest pixels to turn black, e.g. 0.01
+   * @param highFraction share of pixels darker than the level turned white, e.g. 0.99
+   */
+  public static LuminanceStage contrastStretch(float lowFraction, float highFraction) {
+    if (lowFraction < 0.0f || highFraction > 1.0f || lowFraction >= highFraction) {
+      throw new IllegalArgumentException("Bad stretch fractions: " + lowFraction + ", " + highFraction);
+    }
+    return new ContrastStretch(lowFraction, highFraction);
+  }
+
+  /**
+   * @param gamma above 1 brightens shadows, below 1 darkens highlights
+   */
+  public static LuminanceStage gamma(float gamma) {
+    if (!(gamma > 0.0f) || Float.isInfinite(gamma)) {
+      throw new IllegalArgumentException("Bad gamma: " + gamma);
+    }
+    return new Gamma(gamma);
+  }
+
+  /**
+   * Clamps values to a range, e.g. to flatten glare before stretching what is left.
+   */
+  public static LuminanceStage clip(int low, int high) {
+    if (low < 0 || high > 255 || low >= high) {
+      throw new IllegalArgumentException("Bad clip range: " + low + ", " + high);
+    }
+    return new Clip(low, high);
+  }
+
+  /**
+   * Builds the lookup table for a frame.
+   *
+   * @param histogram sampled counts of each luminance in the frame
+   * @param lut filled with the folded table
+   * @param scratch 256 entries to hold the histogram as seen by each stage
+   */
+  void buildLut(int[] histogram, int[] lut, int[] scratch) {
+    for (int i = 0; i < 256; i++) {
+      lut[i] = i;
+    }
+    for (LuminanceStage stage : stages) {
+      Arrays.fill(scratch, 0);
+      for (int i = 0; i < 256; i++) {
+        scratch[lut[i]] += histogram[i];
+      }
+      stage.adjust(lut, scratch);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(stages);
+  }
+
+  private static final class ContrastStretch implements LuminanceStage {
+
+    /**
+     * Narrower ranges are mostly noise, e.g. a blank wall; stretching them helps nobody.
+     */
+    private static final int MIN_RANGE = 16;
+
+    private final float lowFraction;
+    private final float highFraction;
+
+    ContrastStretch(float lowFraction, float highFraction) {
+      this.lowFraction = lowFraction;
+      this.highFraction = highFraction;
+    }
+
+    @Override
+    public void adjust(int[] lut, int[] histogram) {
+      int total = 0;
+      for (int count : histogram) {
+        total += count;
+      }
+      if (total == 0) {
+        return;
+      }
+      int lowCount = (int) (total * lowFraction);
+      int highCount = (int) (total * highFraction);
+      int low = -1;
+      int high = 255;
+      int seen = 0;
+      for (int i = 0; i < 256; i++) {
+        seen += histogram[i];
+        if (low < 0 && seen > lowCount) {
+          low = i;
+        }
+        if (seen >= highCount) {
+          high = i;
+          break;
+        }
+      }
+      if (low < 0 || high - low < MIN_RANGE) {
+        return;
+      }
+      int range = high - low;
+      for (int i = 0; i < 256; i++) {
+        int value = (lut[i] - low) * 255 / range;
+        lut[i] = value < 0 ? 0 : value > 255 ? 255 : value;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "stretch(" + lowFraction + ", " + highFraction + ')';
+    }
+  }
+
+  private static final class Gamma implements LuminanceStage {
+
+    private final float gamma;
+    private final int[] curve = new int[256];
+
+    Gamma(float gamma) {
+      this.gamma = gamma;
+      for (int i = 0; i < 256; i++) {
+        curve[i] = Math.round(255.0f * (float) Math.pow(i / 255.0, 1.0 / gamma));
+      }
+    }
+
+    @Override
+    public void adjust(int[] lut, int[] histogram) {
+      for (int i = 0; i < 256; i++) {
+        lut[i] = curve[lut[i]];
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "gamma(" + gamma + ')';
+    }
+  }
+
+  private static final class Clip implements LuminanceStage {
+
+    private final int low;
+    private final int high;
+
+    Clip(int low, int high) {
+      this.low = low;
+      this.high = high;
+    }
+
+    @Override
+    public void adjust(int[] lut, int[] histogram) {
+      for (int i = 0; i < 256; i++) {
+        int value = lut[i];
+        lut[i] = value < low ? low : value > high ? high : value;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "clip(" + low + ", " + high + ')';
+    }
+  }
+
+}
@@ -0,0 +1,65 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import java.util.Arrays;
+
+/**
+ * Runs a {@link LuminancePipeline} over cropped frames: samples a histogram, folds the stages into a
+ * lookup table and maps the crop through it into a buffer kept from frame to frame. The result has
+ * the crop's size and no offset, so result points stay relative to the crop.
+ * <p>
+ * Used on the decode thread only.
+ * 在解码线程上执行亮度预处理链，复用缓冲区
+ */
+final class LuminancePreprocessor {
+
+  /**
+   * The histogram is taken from every 4th pixel of every 4th row.
+   */
+  private static final int SAMPLE_STEP = 4;
+
+  private final LuminancePipeline pipeline;
+  private final int[] histogram = new int[256];
+  private final int[] lut = new int[256];
+  private final int[] scratch = new int[256];
+  private byte[] row;
+  private byte[] mapped;
+
+  LuminancePreprocessor(LuminancePipeline pipeline) {
+    this.pipeline = pipeline;
+  }
+
+  /**
+   * @return the mapped crop; its buffer is overwritten by the next call
+   */
+  PlanarYUVLuminanceSource process(LuminanceSource source) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    if (mapped == null || mapped.length != width * height) {
+      mapped = new byte[width * height];
+    }
+    int[] histogram = this.histogram;
+    Arrays.fill(histogram, 0);
+    for (int y = 0; y < height; y += SAMPLE_STEP) {
+      row = source.getRow(y, row);
+      for (int x = 0; x < width; x += SAMPLE_STEP) {
+        histogram[row[x] & 0xFF]++;
+      }
+    }
+    pipeline.buildLut(histogram, lut, scratch);
+
+    int[] lut = this.lut;
+    byte[] mapped = this.mapped;
+    for (int y = 0; y < height; y++) {
+      row = source.getRow(y, row);
+      int offset = y * width;
+      for (int x = 0; x < width; x++) {
+        mapped[offset + x] = (byte) lut[row[x] & 0xFF];
+      }
+    }
+    return new PlanarYUVLuminanceSource(mapped, width, height, 0, 0, width, height, false);
+  }
+
+}
@@ -0,0 +1,19 @@
+package com.google.zxing.client.android;
+
+/**
+ * One step of a {@link LuminancePipeline}. A stage doesn't touch pixels: it reshapes the lookup table
+ * built by the stages before it, so any chain of stages still costs one table lookup per pixel.
+ * 亮度预处理的一个步骤，只修改查找表而不直接处理像素
+ */
+public interface LuminanceStage {
+
+    /**
+     * Called on the decode thread, once per frame.
+     *
+     * @param lut maps each luminance of the frame, 0 to 255, to its value after the stages so far;
+     *            to be updated in place, keeping values within 0 to 255
+     * @param histogram sampled counts of the values in {@code lut}'s range, as the frame looks after the
+     *                  stages so far; not to be changed
+     */
+    void adjust(int[] lut, int[] histogram);
+}
@@ -0,0 +1,178 @@
+package com.google.zxing.client.android;
+
+import android.util.Log;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.oned.OneDReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lets 1D reads vote before one is reported. A worn label can pass the check digit with a misread, and
+ * different rows and frames of it go wrong in different places; so the row reads of recent frames
+ * are collected, grouped by format and length, and voted on character by character. A result is
+ * reported once enough reads agree on every position, and only if one of the reads, which passed
+ * their format's checks, spells out exactly the voted text.
+ * <p>
+ * Used on the decode thread only.
+ * 一维码多帧投票：累积最近几帧各扫描行的识别结果，逐字符投票达到阈值后才输出
+ */
+final class OneDConsensus {
+
+  private static final String TAG = OneDConsensus.class.getSimpleName();
+
+  private static final int MAX_CANDIDATES = 48;
+
+  private final int minVotes;
+  private final float minAgreement;
+  private final long windowMs;
+  private final List<Result> candidates = new ArrayList<>(MAX_CANDIDATES);
+  private final List<Long> candidateTimes = new ArrayList<>(MAX_CANDIDATES);
+
+  /**
+   * @param minVotes reads needed in a group before it is voted on
+   * @param minAgreement share of the group which must agree on each position
+   * @param windowMs how long a read takes part in votes
+   */
+  OneDConsensus(int minVotes, float minAgreement, long windowMs) {
+    if (minVotes < 1 || minAgreement <= 0.5f || minAgreement > 1.0f || windowMs <= 0L) {
+      throw new IllegalArgumentException("Bad consensus settings: " + minVotes + " votes, agreement " +
+          minAgreement + ", window " + windowMs + " ms");
+    }
+    this.minVotes = minVotes;
+    this.minAgreement = minAgreement;
+    this.windowMs = windowMs;
+  }
+
+  void addCandidate(Result result, long now) {
+    if (candidates.size() == MAX_CANDIDATES) {
+      candidates.remove(0);
+      candidateTimes.remove(0);
+    }
+    candidates.add(result);
+    candidateTimes.add(now);
+  }
+
+  /**
+   * Reads a row and adds the read, if there is one. Like {@code OneDReader} the row is read backwards as
+   * well, so an upside down code votes from every row.
+   *
+   * @param row the black row, which is left reversed if the forward read failed
+   * @return the read added, or null if the row can't be read either way
+   */
+  Result addRow(OneDReader reader, int rowNumber, BitArray row, Map<DecodeHintType,?> hints, long now) {
+    Result result;
+    try {
+      result = reader.decodeRow(rowNumber, row, hints);
+    } catch (ReaderException re) {
+      row.reverse();
+      try {
+        result = reader.decodeRow(rowNumber, row, hints);
+      } catch (ReaderException re2) {
+        return null;
+      }
+      // Put the points back where they are in the unreversed row, as OneDReader does
+      int width = row.getSize();
+      ResultPoint[] points = result.getResultPoints();
+      if (points != null) {
+        for (int i = 0; i < points.length; i++) {
+          points[i] = new ResultPoint(width - points[i].getX() - 1, points[i].getY());
+        }
+      }
+      result.putMetadata(ResultMetadataType.ORIENTATION, 180);
+    }
+    addCandidate(result, now);
+    return result;
+  }
+
+  void clear() {
+    candidates.clear();
+    candidateTimes.clear();
+  }
+
+  /**
+   * @return the agreed result, after which the collected reads are dropped, or null if there is none yet
+   */
+  Result vote(long now) {
+    while (!candidateTimes.isEmpty() && now - candidateTimes.get(0) > windowMs) {
+      candidates.remove(0);
+      candidateTimes.remove(0);
+    }
+    int count = candidates.size();
+    boolean[] grouped = new boolean[count];
+    for (int i = 0; i < count; i++) {
+      if (grouped[i]) {
+        continue;
+      }
+      Result first = candidates.get(i);
+      BarcodeFormat format = first.getBarcodeFormat();
+      int length = first.getText().length();
+      List<String> group = new ArrayList<>();
+      for (int j = i; j < count; j++) {
+        Result other = candidates.get(j);
+        if (!grouped[j] && other.getBarcodeFormat() == format && other.getText().length() == length) {
+          grouped[j] = true;
+          group.add(other.getText());
+        }
+      }
+      if (group.size() < minVotes) {
+        continue;
+      }
+      String agreed = voteOnCharacters(group, length);
+      if (agreed == null) {
+        continue;
+      }
+      for (int j = count - 1; j >= 0; j--) {
+        Result candidate = candidates.get(j);
+        if (candidate.getBarcodeFormat() == format && agreed.equals(candidate.getText())) {
+          Log.d(TAG, format + " agreed by " + group.size() + " reads");
+          clear();
+          return candidate;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the text with the winning character at each position, or null if some position lacks agreement
+   */
+  private String voteOnCharacters(List<String> group, int length) {
+    int needed = (int) Math.ceil(group.size() * minAgreement);
+    char[] agreed = new char[length];
+    for (int position = 0; position < length; position++) {
+      char best = 0;
+      int bestVotes = 0;
+      for (int i = 0; i < group.size() && bestVotes < needed; i++) {
+        char c = group.get(i).charAt(position);
+        if (c == best) {
+          continue;
+        }
+        int votes = 0;
+        for (String text : group) {
+          if (text.charAt(position) == c) {
+            votes++;
+          }
+        }
+        if (votes > bestVotes) {
+          best = c;
+          bestVotes = votes;
+        }
+      }
+      if (bestVotes < needed) {
+        return null;
+      }
+      agreed[position] = best;
+    }
+    return new String(agreed);
+  }
+
+}
@@ -0,0 +1,236 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * A view of the Y plane of a camera frame turned clockwise by 0, 90, 180 or 270 degrees and optionally
+ * mirrored left to right, without copying it. Pixel (x, y) of the view is read from
+ * {@code origin + x * stepX + y * stepY} in the frame, so every orientation costs the same as the
+ * sensor's own one and crops and further rotations just make new views of the same data. Rows come
+ * straight out of the frame where they run along it, otherwise they are gathered pixel by pixel;
+ * whole matrices of turned views are copied in cache sized blocks.
+ * 旋转/镜像的亮度视图：读取时换算坐标，不再对整帧做转置
+ */
+public final class OrientedLuminanceSource extends LuminanceSource {
+
+  private final byte[] data;
+  private final int dataWidth;
+  private final int dataHeight;
+  private final int origin;
+  private final int stepX;
+  private final int stepY;
+  /**
+   * Where {@link #getMatrix()} copies to if it is large enough, null for a new array each time.
+   */
+  private byte[] matrixBuffer;
+
+  /**
+   * @param data the frame, its Y plane first
+   * @param dataWidth width of the frame as the sensor delivers it
+   * @param dataHeight height of the frame as the sensor delivers it
+   * @param cwRotation clockwise rotation to apply: 0, 90, 180 or 270
+   * @param mirror whether to mirror the rotated frame left to right
+   */
+  public OrientedLuminanceSource(byte[] data, int dataWidth, int dataHeight, int cwRotation, boolean mirror) {
+    this(data, dataWidth, dataHeight, cwRotation, mirror, orientedWidth(dataWidth, dataHeight, cwRotation));
+  }
+
+  private OrientedLuminanceSource(byte[] data,
+                                  int dataWidth,
+                                  int dataHeight,
+                                  int cwRotation,
+                                  boolean mirror,
+                                  int width) {
+    super(width, width == dataWidth ? dataHeight : dataWidth);
+    if (dataWidth * dataHeight > data.length) {
+      throw new IllegalArgumentException("Image data does not match the size");
+    }
+    this.data = data;
+    this.dataWidth = dataWidth;
+    this.dataHeight = dataHeight;
+    int start;
+    int dx;
+    int dy;
+    switch (cwRotation) {
+      case 0:
+        start = 0;
+        dx = 1;
+        dy = dataWidth;
+        break;
+      case 90:
+        // Rows of the view run up the frame's columns, starting at the bottom left
+        start = (dataHeight - 1) * dataWidth;
+        dx = -dataWidth;
+        dy = 1;
+        break;
+      case 180:
+        start = dataHeight * dataWidth - 1;
+        dx = -1;
+        dy = -dataWidth;
+        break;
+      default:
+        // 270, checked by orientedWidth()
+        start = dataWidth - 1;
+        dx = dataWidth;
+        dy = -1;
+        break;
+    }
+    if (mirror) {
+      start += (width - 1) * dx;
+      dx = -dx;
+    }
+    origin = start;
+    stepX = dx;
+    stepY = dy;
+  }
+
+  private OrientedLuminanceSource(OrientedLuminanceSource parent,
+                                  int origin,
+                                  int stepX,
+                                  int stepY,
+                                  int width,
+                                  int height) {
+    super(width, height);
+    data = parent.data;
+    dataWidth = parent.dataWidth;
+    dataHeight = parent.dataHeight;
+    this.origin = origin;
+    this.stepX = stepX;
+    this.stepY = stepY;
+  }
+
+  private static int orientedWidth(int dataWidth, int dataHeight, int cwRotation) {
+    switch (cwRotation) {
+      case 0:
+      case 180:
+        return dataWidth;
+      case 90:
+      case 270:
+        return dataHeight;
+      default:
+        throw new IllegalArgumentException("Bad rotation: " + cwRotation);
+    }
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    int offset = origin + y * stepY;
+    if (stepX == 1) {
+      System.arraycopy(data, offset, row, 0, width);
+    } else {
+      int step = stepX;
+      for (int x = 0; x < width; x++) {
+        row[x] = data[offset];
+        offset += step;
+      }
+    }
+    return row;
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+    // If the caller asks for the entire unturned frame, hand it the data as it is
+    if (stepX == 1 && stepY == dataWidth && origin == 0 && width == dataWidth && height == dataHeight) {
+      return data;
+    }
+    return getMatrix(matrixBuffer);
+  }
+
+  /**
+   * Has {@link #getMatrix()} copy into the given buffer instead of a new array, for a caller binarizing
+   * one view after another. Nothing else may use the buffer while the matrix is in use; it may be
+   * longer than the matrix, as {@code LuminanceSource} allows.
+   *
+   * @param matrixBuffer buffer to reuse, null to allocate
+   */
+  void setMatrixBuffer(byte[] matrixBuffer) {
+    this.matrixBuffer = matrixBuffer;
+  }
+
+  /**
+   * Like {@link #getMatrix()}, but always copies, into the given buffer if it is large enough. Turned
+   * views are copied block by block, see {@link FrameRotator}.
+   *
+   * @param matrix buffer to reuse, may be null
+   * @return the view row by row
+   */
+  public byte[] getMatrix(byte[] matrix) {
+    int width = getWidth();
+    int height = getHeight();
+    if (matrix == null || matrix.length < width * height) {
+      matrix = new byte[width * height];
+    }
+    FrameRotator.copy(data, origin, stepX, stepY, width, height, matrix);
+    return matrix;
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    return cropView(left, top, width, height);
+  }
+
+  /**
+   * Like {@link #crop(int, int, int, int)}, typed.
+   */
+  public OrientedLuminanceSource cropView(int left, int top, int width, int height) {
+    if (left < 0 || top < 0 || width < 1 || height < 1 || left + width > getWidth() || top + height > getHeight()) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+    }
+    return new OrientedLuminanceSource(this, index(left, top), stepX, stepY, width, height);
+  }
+
+  @Override
+  public boolean isRotateSupported() {
+    return true;
+  }
+
+  @Override
+  public LuminanceSource rotateCounterClockwise() {
+    // The new row y is the old column width - 1 - y, read from the top down
+    return new OrientedLuminanceSource(this, index(getWidth() - 1, 0), stepY, -stepX, getHeight(), getWidth());
+  }
+
+  /**
+   * @return where pixel (x, y) of this view lies in the frame
+   */
+  int index(int x, int y) {
+    return origin + x * stepX + y * stepY;
+  }
+
+  byte[] getData() {
+    return data;
+  }
+
+  int getDataWidth() {
+    return dataWidth;
+  }
+
+  /**
+   * @return offset in the frame from one pixel of the view to the next on its right
+   */
+  int getStepX() {
+    return stepX;
+  }
+
+  /**
+   * @return offset in the frame from one pixel of the view to the next below it
+   */
+  int getStepY() {
+    return stepY;
+  }
+
+}
@@ -55,6 +55,10 @@ public final class PreferencesActivity extends Activity {
   public static final String KEY_DISABLE_METERING = "preferences_disable_metering";
   public static final String KEY_DISABLE_BARCODE_SCENE_MODE = "preferences_disable_barcode_scene_mode";
   public static final String KEY_AUTO_OPEN_WEB = "preferences_auto_open_web";
+  public static final String KEY_LOW_LIGHT_FUSION = "preferences_low_light_fusion";
+  public static final String KEY_FULL_FRAME_SCAN = "preferences_full_frame_scan";
+  public static final String KEY_TILED_SCAN = "preferences_tiled_scan";
+  public static final String KEY_ANGLED_SCAN = "preferences_angled_scan";
 
   @SuppressLint("NewApi")
   @Override
@@ -0,0 +1,75 @@
+package com.google.zxing.client.android;
+
+/**
+ * Hands candidate result points from the decode thread to the UI thread without locks or garbage.
+ * The decode thread collects the points of one frame as float pairs into the next slot of a small
+ * ring and publishes the slot when the frame is done; the UI thread copies out the newest published
+ * slot into arrays of its own. A reader which gets lapped by the writer while copying notices it from
+ * the sequence number and just keeps what it had.
+ * <p>
+ * There must be one writer at a time, normally the decode thread.
+ * 解码线程与UI线程之间传递可能的结果点的无锁环形缓冲
+ */
+final class ResultPointRing {
+
+  static final int MAX_POINTS_PER_FRAME = 20;
+  private static final int SLOTS = 4;
+
+  private final float[][] slots = new float[SLOTS][MAX_POINTS_PER_FRAME * 2];
+  private final int[] counts = new int[SLOTS];
+  /**
+   * Sequence number of the newest published frame, which lives in slot {@code sequence % SLOTS}.
+   */
+  private volatile long publishedSequence;
+
+  // Writer side
+  private int pendingCount;
+
+  /**
+   * Adds a point to the frame being collected; points beyond {@link #MAX_POINTS_PER_FRAME} are dropped.
+   */
+  void add(float x, float y) {
+    int count = pendingCount;
+    if (count >= MAX_POINTS_PER_FRAME) {
+      return;
+    }
+    float[] slot = slots[(int) ((publishedSequence + 1) % SLOTS)];
+    slot[count * 2] = x;
+    slot[count * 2 + 1] = y;
+    pendingCount = count + 1;
+  }
+
+  /**
+   * Publishes the points collected since the last call as one frame, even if there were none.
+   *
+   * @return number of points in the frame
+   */
+  int publish() {
+    long next = publishedSequence + 1;
+    int count = pendingCount;
+    counts[(int) (next % SLOTS)] = count;
+    pendingCount = 0;
+    publishedSequence = next;
+    return count;
+  }
+
+  long getPublishedSequence() {
+    return publishedSequence;
+  }
+
+  /**
+   * Copies the newest published frame.
+   *
+   * @param target receives x, y pairs; needs room for {@link #MAX_POINTS_PER_FRAME} points
+   * @return number of points copied, or -1 if the writer overwrote the frame while it was copied
+   */
+  int copyLatest(float[] target) {
+    long sequence = publishedSequence;
+    int index = (int) (sequence % SLOTS);
+    int count = counts[index];
+    System.arraycopy(slots[index], 0, target, 0, count * 2);
+    // The slot is only rewritten once the writer is SLOTS - 1 frames further
+    return publishedSequence - sequence < SLOTS - 1 ? count : -1;
+  }
+
+}
@@ -0,0 +1,128 @@
+package com.google.zxing.client.android;
+
+import android.animation.ObjectAnimator;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * Lightweight layer holding just the scan line, the only child of {@link ViewfinderView}. Its content
+ * is drawn once; the sweep is a property animation of its translation, which the animation framework
+ * steps on the UI thread's animation timeline without redrawing this or any other view, so each step
+ * costs a property change instead of a draw pass. The turn at the end of each sweep is posted to the
+ * same timeline rather than hung on the animator. Needs API 11.
+ * 扫描线图层：通过属性动画移动，不再每帧重绘取景框
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public final class ScanLineView extends View {
+
+  private final Drawable line;
+  private final Runnable reverseTask;
+  private TimeInterpolator interpolator;
+  private float fromY;
+  private float toY;
+  private long sweepDurationMs;
+  private boolean sweeping;
+  private boolean towardsEnd;
+  private ObjectAnimator legacyAnimator;
+
+  public ScanLineView(Context context, Drawable line) {
+    super(context);
+    this.line = line;
+    reverseTask = new Runnable() {
+      @Override
+      public void run() {
+        if (sweeping) {
+          towardsEnd = !towardsEnd;
+          animateTo(towardsEnd ? toY : fromY);
+        }
+      }
+    };
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    line.setBounds(0, 0, getWidth(), getHeight());
+    line.draw(canvas);
+  }
+
+  /**
+   * Sweeps the line back and forth until {@link #stopSweep()}.
+   *
+   * @param fromY top translation
+   * @param toY bottom translation
+   * @param durationMs time for one sweep in either direction
+   * @param fps how often per second the line may move; 0 to move it on every display frame
+   */
+  void startSweep(float fromY, float toY, long durationMs, int fps) {
+    stopSweep();
+    this.fromY = fromY;
+    this.toY = toY;
+    sweepDurationMs = Math.max(1L, durationMs);
+    int steps = fps > 0 ? (int) Math.max(1L, sweepDurationMs * fps / 1000L) : 0;
+    interpolator = new FrameRateInterpolator(steps);
+    sweeping = true;
+    towardsEnd = true;
+    setTranslationY(fromY);
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      animateTo(toY);
+    } else {
+      ObjectAnimator animator = ObjectAnimator.ofFloat(this, "translationY", fromY, toY);
+      animator.setDuration(sweepDurationMs);
+      animator.setInterpolator(interpolator);
+      animator.setRepeatCount(ValueAnimator.INFINITE);
+      animator.setRepeatMode(ValueAnimator.REVERSE);
+      animator.start();
+      legacyAnimator = animator;
+    }
+  }
+
+  void stopSweep() {
+    sweeping = false;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      removeCallbacks(reverseTask);
+      animate().cancel();
+    }
+    if (legacyAnimator != null) {
+      legacyAnimator.cancel();
+      legacyAnimator = null;
+    }
+  }
+
+  boolean isSweeping() {
+    return sweeping;
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private void animateTo(float y) {
+    animate().translationY(y).setDuration(sweepDurationMs).setInterpolator(interpolator);
+    postOnAnimationDelayed(reverseTask, sweepDurationMs);
+  }
+
+  /**
+   * Linear, but quantized to a number of steps per sweep so the line moves at a chosen frame rate
+   * rather than on every display frame.
+   */
+  private static final class FrameRateInterpolator implements TimeInterpolator {
+
+    private final int steps;
+
+    FrameRateInterpolator(int steps) {
+      this.steps = steps;
+    }
+
+    @Override
+    public float getInterpolation(float input) {
+      if (steps <= 0) {
+        return input;
+      }
+      return Math.min(1.0f, (float) Math.floor(input * steps) / steps);
+    }
+  }
+
+}
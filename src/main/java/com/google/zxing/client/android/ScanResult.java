@@ -0,0 +1,253 @@
+package com.google.zxing.client.android;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.util.Log;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A decoded barcode with everything known about it: format, text, raw bytes, metadata, where its
+ * points lie in the preview frame and on the screen, and how long each stage took. Within the process
+ * it is handed over as is, the ZXing {@link Result} included. As a {@link Parcelable} it keeps to
+ * plain values and leaves out raw bytes which would make the parcel too large for a Binder
+ * transaction, so it can travel in an Intent even for big PDF417 payloads.
+ * 结构化的扫描结果：格式、文本、原始数据、结果点坐标及各阶段耗时，可序列化后通过Intent传递
+ */
+public final class ScanResult implements Parcelable {
+
+  private static final String TAG = ScanResult.class.getSimpleName();
+
+  /**
+   * Parcels are kept well below the 1MB Binder buffer, which is shared by all transactions in flight.
+   */
+  private static final int MAX_PARCELED_BYTES = 256 * 1024;
+
+  private static final int METADATA_STRING = 0;
+  private static final int METADATA_INTEGER = 1;
+
+  /**
+   * Gets scan results within the process.
+   */
+  public interface Callback {
+    void onScanResult(ScanResult result);
+  }
+
+  /**
+   * Gets all the codes found in one frame at once, when tiled scanning finds several. A plain
+   * {@link Callback} gets them one call after another instead.
+   */
+  public interface ListCallback extends Callback {
+    void onScanResults(List<ScanResult> results);
+  }
+
+  private final BarcodeFormat format;
+  private final String text;
+  private final byte[] rawBytes;
+  private final Map<ResultMetadataType,Object> metadata;
+  private final float[] previewPoints;
+  private final float[] screenPoints;
+  private final long frameTimestamp;
+  private final long queueMs;
+  private final long rotateMs;
+  private final long decodeMs;
+  private final long totalMs;
+  private final Result rawResult;
+
+  /**
+   * @param rawResult what the decoder returned
+   * @param previewPoints result points as x, y pairs in the rotated preview frame
+   * @param screenPoints the same points on the screen
+   * @param frameTimestamp {@code SystemClock.uptimeMillis()} when the frame arrived
+   * @param queueMs time the frame waited for the decode thread
+   * @param rotateMs time spent setting up the rotated view of the frame
+   * @param decodeMs time spent in the decoder, binarizing included
+   * @param totalMs time from the arrival of the frame to the result
+   */
+  public ScanResult(Result rawResult,
+                    float[] previewPoints,
+                    float[] screenPoints,
+                    long frameTimestamp,
+                    long queueMs,
+                    long rotateMs,
+                    long decodeMs,
+                    long totalMs) {
+    this.rawResult = rawResult;
+    format = rawResult.getBarcodeFormat();
+    text = rawResult.getText();
+    rawBytes = rawResult.getRawBytes();
+    Map<ResultMetadataType,Object> resultMetadata = rawResult.getResultMetadata();
+    metadata = resultMetadata == null ? Collections.<ResultMetadataType,Object>emptyMap() :
+        Collections.unmodifiableMap(resultMetadata);
+    this.previewPoints = previewPoints;
+    this.screenPoints = screenPoints;
+    this.frameTimestamp = frameTimestamp;
+    this.queueMs = queueMs;
+    this.rotateMs = rotateMs;
+    this.decodeMs = decodeMs;
+    this.totalMs = totalMs;
+  }
+
+  private ScanResult(Parcel in) {
+    rawResult = null;
+    String formatName = in.readString();
+    format = formatName == null ? null : BarcodeFormat.valueOf(formatName);
+    text = in.readString();
+    rawBytes = in.createByteArray();
+    int metadataCount = in.readInt();
+    Map<ResultMetadataType,Object> readMetadata = new EnumMap<>(ResultMetadataType.class);
+    for (int i = 0; i < metadataCount; i++) {
+      ResultMetadataType type = ResultMetadataType.valueOf(in.readString());
+      if (in.readInt() == METADATA_INTEGER) {
+        readMetadata.put(type, in.readInt());
+      } else {
+        readMetadata.put(type, in.readString());
+      }
+    }
+    metadata = Collections.unmodifiableMap(readMetadata);
+    previewPoints = in.createFloatArray();
+    screenPoints = in.createFloatArray();
+    frameTimestamp = in.readLong();
+    queueMs = in.readLong();
+    rotateMs = in.readLong();
+    decodeMs = in.readLong();
+    totalMs = in.readLong();
+  }
+
+  public BarcodeFormat getFormat() {
+    return format;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * @return raw bytes as encoded in the barcode, if the format has them; may be dropped from a parcel
+   */
+  public byte[] getRawBytes() {
+    return rawBytes;
+  }
+
+  /**
+   * @return metadata of the result; after a trip through a parcel only the string and integer values
+   */
+  public Map<ResultMetadataType,Object> getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * @return result points as x, y pairs in the rotated preview frame the decoder saw
+   */
+  public float[] getPreviewPoints() {
+    return previewPoints;
+  }
+
+  /**
+   * @return result points as x, y pairs in screen pixels
+   */
+  public float[] getScreenPoints() {
+    return screenPoints;
+  }
+
+  /**
+   * @return {@code SystemClock.uptimeMillis()} when the decoded frame arrived from the camera
+   */
+  public long getFrameTimestamp() {
+    return frameTimestamp;
+  }
+
+  public long getQueueMs() {
+    return queueMs;
+  }
+
+  public long getRotateMs() {
+    return rotateMs;
+  }
+
+  public long getDecodeMs() {
+    return decodeMs;
+  }
+
+  public long getTotalMs() {
+    return totalMs;
+  }
+
+  /**
+   * @return the decoder's own result, or null if this one came out of a parcel
+   */
+  public Result getRawResult() {
+    return rawResult;
+  }
+
+  @Override
+  public int describeContents() {
+    return 0;
+  }
+
+  @Override
+  public void writeToParcel(Parcel dest, int flags) {
+    dest.writeString(format == null ? null : format.name());
+    dest.writeString(text);
+    // Text is twice its length as UTF-16
+    int size = (text == null ? 0 : text.length() * 2) + (rawBytes == null ? 0 : rawBytes.length);
+    if (rawBytes != null && size > MAX_PARCELED_BYTES) {
+      Log.w(TAG, "Leaving " + rawBytes.length + " raw bytes out of the parcel");
+      dest.writeByteArray(null);
+    } else {
+      dest.writeByteArray(rawBytes);
+    }
+    int metadataCount = 0;
+    for (Object value : metadata.values()) {
+      if (value instanceof String || value instanceof Integer) {
+        metadataCount++;
+      }
+    }
+    dest.writeInt(metadataCount);
+    for (Map.Entry<ResultMetadataType,Object> entry : metadata.entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof Integer) {
+        dest.writeString(entry.getKey().name());
+        dest.writeInt(METADATA_INTEGER);
+        dest.writeInt((Integer) value);
+      } else if (value instanceof String) {
+        dest.writeString(entry.getKey().name());
+        dest.writeInt(METADATA_STRING);
+        dest.writeString((String) value);
+      }
+    }
+    dest.writeFloatArray(previewPoints);
+    dest.writeFloatArray(screenPoints);
+    dest.writeLong(frameTimestamp);
+    dest.writeLong(queueMs);
+    dest.writeLong(rotateMs);
+    dest.writeLong(decodeMs);
+    dest.writeLong(totalMs);
+  }
+
+  public static final Creator<ScanResult> CREATOR = new Creator<ScanResult>() {
+    @Override
+    public ScanResult createFromParcel(Parcel source) {
+      return new ScanResult(source);
+    }
+
+    @Override
+    public ScanResult[] newArray(int size) {
+      return new ScanResult[size];
+    }
+  };
+
+  @Override
+  public String toString() {
+    return "ScanResult[" + format + ", " + (text == null ? 0 : text.length()) + " chars, decode " + decodeMs +
+        " ms, total " + totalMs + " ms]";
+  }
+
+}
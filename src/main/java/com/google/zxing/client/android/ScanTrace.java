@@ -0,0 +1,63 @@
+package com.google.zxing.client.android;
+
+import android.os.Build;
+
+/**
+ * Marks the stages of the scan pipeline, from the camera callback through the decode and the handler
+ * queues to drawing the viewfinder, so a trace shows where a frame's time goes. Sections nest per
+ * thread and must be closed on the thread which opened them.
+ * <p>
+ * Off unless a backend is set, and then each mark is one static field read and a null check. Set the
+ * backend before the scanner starts and leave it for as long as it runs; a section opened before a
+ * change may be closed after it.
+ * 扫描流程各阶段的耗时追踪，未设置输出端时几乎没有开销
+ */
+public final class ScanTrace {
+
+  private static TraceBackend backend;
+
+  private ScanTrace() {
+  }
+
+  /**
+   * @param newBackend where sections go from now on, or null to stop tracing
+   */
+  public static void setBackend(TraceBackend newBackend) {
+    backend = newBackend;
+  }
+
+  /**
+   * Sends sections to {@code android.os.Trace}, for systrace and Perfetto captures with app tracing on.
+   *
+   * @return false if the platform is older than Android 4.3, which has no app tracing
+   */
+  public static boolean enableSystrace() {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+      return false;
+    }
+    setBackend(new SystraceBackend());
+    return true;
+  }
+
+  public static boolean isEnabled() {
+    return backend != null;
+  }
+
+  /**
+   * @param name a constant, so nothing is built while tracing is off
+   */
+  public static void begin(String name) {
+    TraceBackend theBackend = backend;
+    if (theBackend != null) {
+      theBackend.beginSection(name);
+    }
+  }
+
+  public static void end() {
+    TraceBackend theBackend = backend;
+    if (theBackend != null) {
+      theBackend.endSection();
+    }
+  }
+
+}
@@ -20,19 +20,18 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
@@ -40,16 +39,21 @@ import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.SeekBar;
+import android.widget.Toast;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.Result;
 import com.google.zxing.ResultMetadataType;
 import com.google.zxing.client.android.camera.CameraManager;
+import com.google.zxing.client.android.camera.FrontLightMode;
+import com.google.zxing.client.android.camera.ScanGovernor;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 
 //import com.google.zxing.client.android.clipboard.ClipboardInterface;
@@ -66,7 +70,7 @@ import java.util.Map;
  * @author dswitkin@google.com (Daniel Switkin)
  * @author Sean Owen
  */
-public final class ScannerActivity extends Activity implements SurfaceHolder.Callback,IScanActivity,SeekBar.OnSeekBarChangeListener{
+public final class ScannerActivity extends Activity implements SurfaceHolder.Callback,IScanActivity,IScanResultReceiver,IMultiScanResultReceiver,IScanProgressReceiver,SeekBar.OnSeekBarChangeListener{
 
   private static final String TAG = ScannerActivity.class.getSimpleName();
 
@@ -97,13 +101,26 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
   private Collection<BarcodeFormat> decodeFormats;
   private Map<DecodeHintType,?> decodeHints;
   private String characterSet;
-  private InactivityTimer inactivityTimer;
+  /**
+   * 无操作时逐级降低扫描开销，替代到时即关闭界面的InactivityTimer
+   */
+  private IdleMonitor idleMonitor;
   private BeepManager beepManager;
+  private ScannerConfig scannerConfig;
   /**
-   * 周围光线检测管理
+   * 本次onResume()后是否已读到并应用了配置，之前不打开摄像头
    */
-  private AmbientLightManager ambientLightManager;
-
+  private boolean configApplied;
+  private final ScannerConfigStore.Callback configCallback = new ScannerConfigStore.Callback() {
+    @Override
+    public void onScannerConfig(ScannerConfig config) {
+      applyConfig(config);
+    }
+  };
+  /**
+   * 依据温度/电量调整扫描档位，跨越onPause()/onResume()保留状态
+   */
+  private ScanGovernor scanGovernor;
 
   private SurfaceView surfaceView4CameraPreview;
   private SeekBar seekBar2ScaleCamera;
@@ -149,15 +166,33 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
    * 获取key:"result"的字符串结果
    */
   public static final String INTENT_KEY_SCAN_RESULT = "scan_result";
+  /**
+   * 未设置{@link #setScanResultCallback(ScanResult.Callback)}时，返回的Intent中以此key携带完整的{@link ScanResult}
+   */
+  public static final String INTENT_KEY_SCAN_RESULT_DETAIL = "scan_result_detail";
+  /**
+   * 分块解码(见{@link ScannerConfig#getTiledCodeFraction()})且未设置回调时，返回的Intent中以此key携带一帧中找到的全部{@link ScanResult}
+   */
+  public static final String INTENT_KEY_SCAN_RESULTS = "scan_results";
+  private static ScanResult.Callback scanResultCallback;
+  /**
+   * 每次设置回调时递增，界面启动时认领当时的编号，只取用或清除属于自己这次启动的回调
+   */
+  private static int scanResultCallbackId;
   private static final String KEY_VIEWFINDERSTYLE = "viewfinder_style";
   private static final String KEY_SCAN_LAYOUT = "scan_layout";
   private int viewfinderOutLineStyleResId;
+  /**
+   * 启动时认领的回调编号，见{@link #setScanResultCallback(ScanResult.Callback)}
+   */
+  private int scanResultCallbackClaim;
   @Override
   public void onCreate(Bundle icicle) {
     super.onCreate(icicle);
     Window window = getWindow();
     window.addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
     Intent startIntent = getIntent();
+    scanResultCallbackClaim = getScanResultCallbackId();
     viewfinderOutLineStyleResId = startIntent.getIntExtra(KEY_VIEWFINDERSTYLE, -1);
     if (viewfinderOutLineStyleResId <= 0) {
       viewfinderOutLineStyleResId = R.style.viewfinder_outline_style;
@@ -166,11 +201,18 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
     if (customScanLayoutResID <= 0) {
       customScanLayoutResID = R.layout.scanner_layout;
     }
+    //尽早在后台读取配置，onResume()中直接使用
+    ScannerConfigStore.get(this).preload();
     setContentView(customScanLayoutResID);
     hasSurface = false;
-    inactivityTimer = new InactivityTimer(this);
+    idleMonitor = new IdleMonitor(new IdleMonitor.Listener() {
+      @Override
+      public void onIdleStateChanged(IdleMonitor.State state) {
+        applyIdleState(state);
+      }
+    });
     beepManager = new BeepManager(this);
-    ambientLightManager = new AmbientLightManager(this);
+    scanGovernor = new ScanGovernor(new DeviceScanConditions(this));
     Log.i("info", TAG + "--> onCreate()");
   }
 
@@ -196,12 +238,12 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
     // off screen.
     cameraManager = new CameraManager(getApplication());
     cameraManager.changeViewfinderRectStyle(viewfinderOutLineStyleResId);
+    cameraManager.setScanGovernor(scanGovernor);
     viewfinderView.configCameraManager(cameraManager);
 
     handler = null;
     lastResult = null;
 
-    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
     //如果配置了不自动旋转屏幕
 //    if (prefs.getBoolean(PreferencesActivity.KEY_DISABLE_AUTO_ORIENTATION, true)) {
 //      setRequestedOrientation(getCurrentOrientation());//???
@@ -212,16 +254,9 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
 
     resetStatusView();
 
+    cameraManager.setAutoZoomEnabled(true);
 
-    beepManager.updatePrefs();
-    ambientLightManager.start(cameraManager);
-
-    inactivityTimer.onResume();
-
-    Intent intent = getIntent();
-
-    copyToClipboard = prefs.getBoolean(PreferencesActivity.KEY_COPY_TO_CLIPBOARD, true)
-        && (intent == null || intent.getBooleanExtra(Intents.Scan.SAVE_HISTORY, true));
+    idleMonitor.start();
 
     source = IntentSource.NONE;
     sourceUrl = null;
@@ -289,16 +324,39 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
     }*/
 
 
-    SurfaceHolder surfaceHolder = surfaceView4CameraPreview.getHolder();
+    if (!hasSurface) {
+      // Install the callback and wait for surfaceCreated() to init the camera.
+      surfaceView4CameraPreview.getHolder().addCallback(this);
+    }
+    //配置在后台读取，读到后再打开摄像头
+    ScannerConfigStore.get(this).current(configCallback);
+    Log.i("info", TAG + "--> onResume()");
+  }
+
+  /**
+   * 应用读取到的扫描配置；若预览Surface已存在则随即打开摄像头
+   */
+  private void applyConfig(ScannerConfig config) {
+    scannerConfig = config;
+    //按调用方指定的扫描模式选用对应的亮度预处理
+    Intent intent = getIntent();
+    if (intent != null && intent.hasExtra(Intents.Scan.MODE)) {
+      scannerConfig = scannerConfig.buildUpon().setScanMode(intent.getStringExtra(Intents.Scan.MODE)).build();
+    }
+    cameraManager.setScannerConfig(scannerConfig);
+    configApplied = true;
+    beepManager.applyConfig(scannerConfig);
+    //闪光灯自动模式下依据取景框内图像亮度开关闪光灯，不再注册光线传感器
+    cameraManager.setAutoTorchEnabled(scannerConfig.getFrontLightMode() == FrontLightMode.AUTO);
+
+    copyToClipboard = scannerConfig.isCopyToClipboard()
+        && (intent == null || intent.getBooleanExtra(Intents.Scan.SAVE_HISTORY, true));
+
     if (hasSurface) {
       // The activity was paused but not stopped, so the surface still exists. Therefore
       // surfaceCreated() won't be called, so init the camera here.
-      initCamera(surfaceHolder);
-    } else {
-      // Install the callback and wait for surfaceCreated() to init the camera.
-      surfaceHolder.addCallback(this);
+      initCamera(surfaceView4CameraPreview.getHolder());
     }
-    Log.i("info", TAG + "--> onResume()");
   }
 
   private int getCurrentOrientation() {
@@ -336,12 +394,13 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
 
   @Override
   protected void onPause() {
+    ScannerConfigStore.get(this).cancel(configCallback);
+    configApplied = false;
     if (handler != null) {
       handler.quitSynchronously();
       handler = null;
     }
-    inactivityTimer.onPause();
-    ambientLightManager.stop();
+    idleMonitor.stop();
     beepManager.close();
     cameraManager.closeDriver();
     //historyManager = null; // Keep for onActivityResult
@@ -354,10 +413,51 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
 
   @Override
   protected void onDestroy() {
-    inactivityTimer.shutdown();
+    if (isFinishing()) {
+      //未返回结果就退出时清除本次的回调，以免静态引用使其持有者(通常是发起扫描的界面)无法回收
+      takeScanResultCallback(scanResultCallbackClaim);
+    }
     super.onDestroy();
   }
 
+  @Override
+  public boolean dispatchTouchEvent(MotionEvent ev) {
+    idleMonitor.onActivity();
+    return super.dispatchTouchEvent(ev);
+  }
+
+  /**
+   * 依据空闲状态调整摄像头及解码节奏，释放摄像头后由触摸等唤醒时重新打开
+   */
+  private void applyIdleState(IdleMonitor.State state) {
+    switch (state) {
+      case ACTIVE:
+        cameraManager.setIdleFpsCap(0);
+        if (!cameraManager.isOpen()) {
+          // The new handler starts decoding at full pace
+          if (hasSurface) {
+            initCamera(surfaceView4CameraPreview.getHolder());
+          }
+          return;
+        }
+        break;
+      case DROWSY:
+      case PAUSED:
+        cameraManager.setIdleFpsCap(IdleMonitor.IDLE_PREVIEW_FPS);
+        break;
+      case RELEASED:
+        if (handler != null) {
+          handler.quitSynchronously();
+          handler = null;
+        }
+        cameraManager.closeDriver();
+        return;
+    }
+    if (handler != null) {
+      handler.setIdleState(state);
+    }
+  }
+
   @Override
   public boolean onKeyDown(int keyCode, KeyEvent event) {
     switch (keyCode) {
@@ -487,8 +587,80 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
    * @param barcode   A greyscale bitmap of the camera data which was decoded.
    */
   public void handleDecode(Result rawResult, Bitmap barcode, float scaleFactor) {
-    inactivityTimer.onActivity();
-    lastResult = rawResult;
+    handleScanResult(new ScanResult(rawResult, new float[0], new float[0], 0L, 0L, 0L, 0L, 0L), barcode, scaleFactor);
+  }
+
+  /**
+   * 设置进程内接收下一次扫描结果的回调，只生效一次，须在启动扫描界面之前设置；设置后结果不再序列化到返回的Intent中，
+   * 返回的Intent仍携带{@link #INTENT_KEY_SCAN_RESULT}文本。未得到结果就退出扫描界面时回调被清除
+   *
+   * @param callback gets the next result on the main thread, every code found in the frame when tiled scanning finds
+   *     several, see {@link ScanResult.ListCallback}; or null to get them via the result Intent
+   */
+  public static synchronized void setScanResultCallback(ScanResult.Callback callback) {
+    scanResultCallback = callback;
+    scanResultCallbackId++;
+  }
+
+  private static synchronized int getScanResultCallbackId() {
+    return scanResultCallbackId;
+  }
+
+  /**
+   * @param id the id claimed when this scan was launched
+   * @return the callback set for that launch, or null if there is none or a newer one replaced it
+   */
+  private static synchronized ScanResult.Callback takeScanResultCallback(int id) {
+    if (id != scanResultCallbackId) {
+      return null;
+    }
+    ScanResult.Callback callback = scanResultCallback;
+    scanResultCallback = null;
+    return callback;
+  }
+
+  /**
+   * 分块解码时一帧中找到多个条码，全部返回：有回调时交给回调({@link ScanResult.ListCallback}一次拿到全部，
+   * 否则逐个回调)，没有回调时才序列化到返回的Intent中；{@link #INTENT_KEY_SCAN_RESULT}只带第一个的文本
+   */
+  @Override
+  public void handleScanResults(List<ScanResult> results, Bitmap barcode, float scaleFactor) {
+    idleMonitor.onActivity();
+    ScanResult first = results.get(0);
+    lastResult = first.getRawResult();
+    beepManager.playBeepSoundAndVibrate();
+
+    Intent resultIntent = new Intent();
+    resultIntent.putExtra(INTENT_KEY_SCAN_RESULT, first.getText());
+    ScanResult.Callback callback = takeScanResultCallback(scanResultCallbackClaim);
+    if (callback instanceof ScanResult.ListCallback) {
+      ((ScanResult.ListCallback) callback).onScanResults(results);
+    } else if (callback != null) {
+      for (ScanResult result : results) {
+        callback.onScanResult(result);
+      }
+    } else {
+      resultIntent.putParcelableArrayListExtra(INTENT_KEY_SCAN_RESULTS, new ArrayList<>(results));
+    }
+    setResult(RESULT_OK, resultIntent);
+    finish();
+  }
+
+  /**
+   * 收集到Structured Append二维码的一个分片，继续扫描其余分片
+   */
+  @Override
+  public void handleScanProgress(ScanResult part, int collected, int total) {
+    idleMonitor.onActivity();
+    beepManager.playBeepSoundAndVibrate();
+    Toast.makeText(getApplicationContext(), getString(R.string.scanner_structured_append_progress, collected, total),
+        Toast.LENGTH_SHORT).show();
+  }
+
+  @Override
+  public void handleScanResult(ScanResult scanResult, Bitmap barcode, float scaleFactor) {
+    idleMonitor.onActivity();
+    lastResult = scanResult.getRawResult();
     beepManager.playBeepSoundAndVibrate();
 
 //    ResultHandler resultHandler = ResultHandlerFactory.makeResultHandler(this, rawResult);
@@ -529,7 +701,13 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
 //    }
 
     Intent resultIntent = new Intent();
-    resultIntent.putExtra(INTENT_KEY_SCAN_RESULT,rawResult.getText());
+    resultIntent.putExtra(INTENT_KEY_SCAN_RESULT, scanResult.getText());
+    ScanResult.Callback callback = takeScanResultCallback(scanResultCallbackClaim);
+    if (callback != null) {
+      callback.onScanResult(scanResult);
+    } else {
+      resultIntent.putExtra(INTENT_KEY_SCAN_RESULT_DETAIL, scanResult);
+    }
     setResult(RESULT_OK, resultIntent);
     finish();
 
@@ -595,9 +773,7 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
       ClipboardInterface.setText(displayContents, this);
     }
 
-    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-
-    if (resultHandler.getDefaultButtonID() != null && prefs.getBoolean(PreferencesActivity.KEY_AUTO_OPEN_WEB, false)) {
+    if (resultHandler.getDefaultButtonID() != null && scannerConfig.isAutoOpenWeb()) {
       resultHandler.handleButtonPress(resultHandler.getDefaultButtonID());
       return;
     }
@@ -653,8 +829,7 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
     TextView supplementTextView = (TextView) findViewById(R.id.contents_supplement_text_view);
     supplementTextView.setText("");
     supplementTextView.setOnClickListener(null);
-    if (PreferenceManager.getDefaultSharedPreferences(this).getBoolean(
-        PreferencesActivity.KEY_SUPPLEMENTAL, true)) {
+    if (scannerConfig.isSupplemental()) {
       SupplementalInfoRetriever.maybeInvokeRetrieval(supplementTextView,
                                                      resultHandler.getResult(),
                                                      historyManager,
@@ -777,6 +952,10 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
     if (surfaceHolder == null) {
       throw new IllegalStateException("No SurfaceHolder provided");
     }
+    if (!configApplied) {
+      // Still being read; applyConfig() opens the camera
+      return;
+    }
     if (cameraManager.isOpen()) {
       Log.w(TAG, "initCamera() while already open -- late SurfaceView callback?");
       return;
@@ -785,7 +964,8 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
       cameraManager.openDriver(surfaceHolder);
       // Creating the handler starts the preview, which can also throw a RuntimeException.
       if (handler == null) {
-        handler = new CaptureActivityHandler(this, decodeFormats, decodeHints, characterSet, cameraManager);
+        handler = new CaptureActivityHandler(this, decodeFormats, decodeHints, characterSet, cameraManager, idleMonitor,
+            scannerConfig);
       }
       decodeOrStoreSavedBitmap(null, null);
     } catch (IOException ioe) {
@@ -804,10 +984,12 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
       seekBar2ScaleCamera.setOnSeekBarChangeListener(null);
     }
     else{
+      //先设置好范围及当前值再监听，setMax()截断进度时不应去缩放
+      seekBar2ScaleCamera.setOnSeekBarChangeListener(null);
+      seekBar2ScaleCamera.setMax(cameraManager.getCameraMaxZoom());
       viewfinderView.setSeekBar(seekBar2ScaleCamera);
+      viewfinderView.showZoom(cameraManager.getCameraCurZoom());
       seekBar2ScaleCamera.setOnSeekBarChangeListener(this);
-      seekBar2ScaleCamera.setProgress(cameraManager.getCameraCurZoom());
-      seekBar2ScaleCamera.setMax(cameraManager.getCameraMaxZoom());
     }
   }
 
@@ -854,7 +1036,8 @@ public final class ScannerActivity extends Activity implements SurfaceHolder.Cal
 
   @Override
   public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-    if (cameraManager != null) {
+    //拖动及双指缩放都经由进度变化来缩放；只是同步显示当前缩放值时不应再缩放，以免打断自动放大
+    if (cameraManager != null && !viewfinderView.isShowingZoom()) {
        cameraManager.zoomCamera(progress);
     }
   }
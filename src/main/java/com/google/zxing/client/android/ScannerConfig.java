@@ -0,0 +1,483 @@
+package com.google.zxing.client.android;
+
+import android.content.SharedPreferences;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.client.android.camera.FrontLightMode;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything the scanner reads from the preferences, read once into an immutable value. It is handed
+ * to the camera, the decode thread and the beep manager, so none of them touches
+ * {@code SharedPreferences} on the way to the first preview frame. {@link ScannerConfigStore} keeps
+ * the one built from the preferences; a {@link Builder} makes one without any.
+ * 扫描配置的只读快照，可由SharedPreferences加载，也可直接通过Builder构建
+ */
+public final class ScannerConfig {
+
+  /**
+   * What the preferences give when nothing has been set.
+   */
+  public static final ScannerConfig DEFAULT = new Builder().build();
+
+  /**
+   * Largest code expected in tiled scanning switched on from the preferences, as a share of the
+   * frame's shorter side.
+   */
+  public static final float DEFAULT_TILED_CODE_FRACTION = 0.25f;
+
+  /**
+   * Time a frame gets to decode in, from when the camera delivered it; none by default, as slow codes
+   * such as dense PDF417 or a try harder scan may need longer on every frame.
+   */
+  public static final long DEFAULT_DECODE_BUDGET_MS = 0L;
+
+  private final boolean decode1DProduct;
+  private final boolean decode1DIndustrial;
+  private final boolean decodeQR;
+  private final boolean decodeDataMatrix;
+  private final boolean decodeAztec;
+  private final boolean decodePDF417;
+  private final boolean autoFocus;
+  private final boolean disableContinuousFocus;
+  private final boolean invertScan;
+  private final boolean disableBarcodeSceneMode;
+  private final boolean disableMetering;
+  private final boolean disableExposure;
+  private final FrontLightMode frontLightMode;
+  private final boolean playBeep;
+  private final boolean vibrate;
+  private final boolean copyToClipboard;
+  private final boolean autoOpenWeb;
+  private final boolean supplemental;
+  private final boolean lowLightFusion;
+  private final boolean fullFrameScan;
+  private final float tiledCodeFraction;
+  private final boolean angledScan;
+  private final long decodeBudgetMs;
+  private final String scanMode;
+  private final Map<String,LuminancePipeline> preprocessing;
+
+  private ScannerConfig(Builder builder) {
+    decode1DProduct = builder.decode1DProduct;
+    decode1DIndustrial = builder.decode1DIndustrial;
+    decodeQR = builder.decodeQR;
+    decodeDataMatrix = builder.decodeDataMatrix;
+    decodeAztec = builder.decodeAztec;
+    decodePDF417 = builder.decodePDF417;
+    autoFocus = builder.autoFocus;
+    disableContinuousFocus = builder.disableContinuousFocus;
+    invertScan = builder.invertScan;
+    disableBarcodeSceneMode = builder.disableBarcodeSceneMode;
+    disableMetering = builder.disableMetering;
+    disableExposure = builder.disableExposure;
+    frontLightMode = builder.frontLightMode;
+    playBeep = builder.playBeep;
+    vibrate = builder.vibrate;
+    copyToClipboard = builder.copyToClipboard;
+    autoOpenWeb = builder.autoOpenWeb;
+    supplemental = builder.supplemental;
+    lowLightFusion = builder.lowLightFusion;
+    fullFrameScan = builder.fullFrameScan;
+    tiledCodeFraction = builder.tiledCodeFraction;
+    angledScan = builder.angledScan;
+    decodeBudgetMs = builder.decodeBudgetMs;
+    scanMode = builder.scanMode;
+    preprocessing = Collections.unmodifiableMap(new HashMap<>(builder.preprocessing));
+  }
+
+  /**
+   * Reads the preferences; does disk I/O the first time the preferences are touched, so keep it off
+   * the main thread.
+   */
+  public static ScannerConfig fromPreferences(SharedPreferences prefs) {
+    return new Builder()
+        .setDecode1DProduct(prefs.getBoolean(PreferencesActivity.KEY_DECODE_1D_PRODUCT, true))
+        .setDecode1DIndustrial(prefs.getBoolean(PreferencesActivity.KEY_DECODE_1D_INDUSTRIAL, true))
+        .setDecodeQR(prefs.getBoolean(PreferencesActivity.KEY_DECODE_QR, true))
+        .setDecodeDataMatrix(prefs.getBoolean(PreferencesActivity.KEY_DECODE_DATA_MATRIX, true))
+        .setDecodeAztec(prefs.getBoolean(PreferencesActivity.KEY_DECODE_AZTEC, false))
+        .setDecodePDF417(prefs.getBoolean(PreferencesActivity.KEY_DECODE_PDF417, false))
+        .setAutoFocus(prefs.getBoolean(PreferencesActivity.KEY_AUTO_FOCUS, true))
+        .setDisableContinuousFocus(prefs.getBoolean(PreferencesActivity.KEY_DISABLE_CONTINUOUS_FOCUS, true))
+        .setInvertScan(prefs.getBoolean(PreferencesActivity.KEY_INVERT_SCAN, false))
+        .setDisableBarcodeSceneMode(prefs.getBoolean(PreferencesActivity.KEY_DISABLE_BARCODE_SCENE_MODE, true))
+        .setDisableMetering(prefs.getBoolean(PreferencesActivity.KEY_DISABLE_METERING, true))
+        .setDisableExposure(prefs.getBoolean(PreferencesActivity.KEY_DISABLE_EXPOSURE, true))
+        .setFrontLightMode(FrontLightMode.readPref(prefs))
+        .setPlayBeep(prefs.getBoolean(BeepManager.PRE_KEY_SHOUD_BEEP, true))
+        .setVibrate(prefs.getBoolean(BeepManager.PRE_KEY_VIBRATE, false))
+        .setCopyToClipboard(prefs.getBoolean(PreferencesActivity.KEY_COPY_TO_CLIPBOARD, true))
+        .setAutoOpenWeb(prefs.getBoolean(PreferencesActivity.KEY_AUTO_OPEN_WEB, false))
+        .setSupplemental(prefs.getBoolean(PreferencesActivity.KEY_SUPPLEMENTAL, true))
+        .setLowLightFusion(prefs.getBoolean(PreferencesActivity.KEY_LOW_LIGHT_FUSION, false))
+        .setFullFrameScan(prefs.getBoolean(PreferencesActivity.KEY_FULL_FRAME_SCAN, false))
+        .setTiledCodeFraction(prefs.getBoolean(PreferencesActivity.KEY_TILED_SCAN, false) ?
+            DEFAULT_TILED_CODE_FRACTION : 0.0f)
+        .setAngledScan(prefs.getBoolean(PreferencesActivity.KEY_ANGLED_SCAN, true))
+        .build();
+  }
+
+  /**
+   * @return the formats to decode when the caller didn't ask for any in particular
+   */
+  public Collection<BarcodeFormat> getDecodeFormats() {
+    Collection<BarcodeFormat> decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
+    if (decode1DProduct) {
+      decodeFormats.addAll(DecodeFormatManager.PRODUCT_FORMATS);
+    }
+    if (decode1DIndustrial) {
+      decodeFormats.addAll(DecodeFormatManager.INDUSTRIAL_FORMATS);
+    }
+    if (decodeQR) {
+      decodeFormats.addAll(DecodeFormatManager.QR_CODE_FORMATS);
+    }
+    if (decodeDataMatrix) {
+      decodeFormats.addAll(DecodeFormatManager.DATA_MATRIX_FORMATS);
+    }
+    if (decodeAztec) {
+      decodeFormats.addAll(DecodeFormatManager.AZTEC_FORMATS);
+    }
+    if (decodePDF417) {
+      decodeFormats.addAll(DecodeFormatManager.PDF417_FORMATS);
+    }
+    return Collections.unmodifiableCollection(decodeFormats);
+  }
+
+  public boolean isAutoFocus() {
+    return autoFocus;
+  }
+
+  public boolean isDisableContinuousFocus() {
+    return disableContinuousFocus;
+  }
+
+  public boolean isInvertScan() {
+    return invertScan;
+  }
+
+  public boolean isDisableBarcodeSceneMode() {
+    return disableBarcodeSceneMode;
+  }
+
+  public boolean isDisableMetering() {
+    return disableMetering;
+  }
+
+  public boolean isDisableExposure() {
+    return disableExposure;
+  }
+
+  public FrontLightMode getFrontLightMode() {
+    return frontLightMode;
+  }
+
+  public boolean isPlayBeep() {
+    return playBeep;
+  }
+
+  public boolean isVibrate() {
+    return vibrate;
+  }
+
+  public boolean isCopyToClipboard() {
+    return copyToClipboard;
+  }
+
+  public boolean isAutoOpenWeb() {
+    return autoOpenWeb;
+  }
+
+  public boolean isSupplemental() {
+    return supplemental;
+  }
+
+  /**
+   * @return whether frames of a still scene are averaged after decodes keep failing, for dim light
+   */
+  public boolean isLowLightFusion() {
+    return lowLightFusion;
+  }
+
+  /**
+   * @return whether codes are looked for in the whole frame, decoding only where one seems to be,
+   *         rather than only in the framing rect
+   */
+  public boolean isFullFrameScan() {
+    return fullFrameScan;
+  }
+
+  /**
+   * @return side of the largest code expected when every code in the frame is decoded, as a share of
+   *         the frame's shorter side; 0 to decode only one code as usual
+   */
+  public float getTiledCodeFraction() {
+    return tiledCodeFraction;
+  }
+
+  /**
+   * @return whether 1D codes are also looked for along scanlines at angles, when rows find nothing
+   */
+  public boolean isAngledScan() {
+    return angledScan;
+  }
+
+  /**
+   * @return time a frame gets to decode in, from when the camera delivered it, before it is given up
+   *         for a fresher one; 0 for no limit
+   */
+  public long getDecodeBudgetMs() {
+    return decodeBudgetMs;
+  }
+
+  /**
+   * @return the {@link Intents.Scan#MODE} scanned for, or null if none in particular
+   */
+  public String getScanMode() {
+    return scanMode;
+  }
+
+  /**
+   * @return the preprocessing for the scan mode, else the one for any mode, else null for none
+   */
+  public LuminancePipeline getPreprocessing() {
+    LuminancePipeline pipeline = scanMode == null ? null : preprocessing.get(scanMode);
+    return pipeline != null ? pipeline : preprocessing.get(null);
+  }
+
+  /**
+   * @return a builder starting from this config
+   */
+  public Builder buildUpon() {
+    Builder builder = new Builder();
+    builder.preprocessing.putAll(preprocessing);
+    return builder
+        .setDecode1DProduct(decode1DProduct)
+        .setDecode1DIndustrial(decode1DIndustrial)
+        .setDecodeQR(decodeQR)
+        .setDecodeDataMatrix(decodeDataMatrix)
+        .setDecodeAztec(decodeAztec)
+        .setDecodePDF417(decodePDF417)
+        .setAutoFocus(autoFocus)
+        .setDisableContinuousFocus(disableContinuousFocus)
+        .setInvertScan(invertScan)
+        .setDisableBarcodeSceneMode(disableBarcodeSceneMode)
+        .setDisableMetering(disableMetering)
+        .setDisableExposure(disableExposure)
+        .setFrontLightMode(frontLightMode)
+        .setPlayBeep(playBeep)
+        .setVibrate(vibrate)
+        .setCopyToClipboard(copyToClipboard)
+        .setAutoOpenWeb(autoOpenWeb)
+        .setSupplemental(supplemental)
+        .setLowLightFusion(lowLightFusion)
+        .setFullFrameScan(fullFrameScan)
+        .setTiledCodeFraction(tiledCodeFraction)
+        .setAngledScan(angledScan)
+        .setDecodeBudgetMs(decodeBudgetMs)
+        .setScanMode(scanMode);
+  }
+
+  @Override
+  public String toString() {
+    return "ScannerConfig[formats=" + getDecodeFormats() + ", autoFocus=" + autoFocus + ", light=" + frontLightMode +
+        ", beep=" + playBeep + ", vibrate=" + vibrate + ", mode=" + scanMode + ", preprocessing=" + getPreprocessing() +
+        ']';
+  }
+
+  /**
+   * Starts out with the same defaults as the preferences.
+   */
+  public static final class Builder {
+
+    private boolean decode1DProduct = true;
+    private boolean decode1DIndustrial = true;
+    private boolean decodeQR = true;
+    private boolean decodeDataMatrix = true;
+    private boolean decodeAztec;
+    private boolean decodePDF417;
+    private boolean autoFocus = true;
+    private boolean disableContinuousFocus = true;
+    private boolean invertScan;
+    private boolean disableBarcodeSceneMode = true;
+    private boolean disableMetering = true;
+    private boolean disableExposure = true;
+    private FrontLightMode frontLightMode = FrontLightMode.OFF;
+    private boolean playBeep = true;
+    private boolean vibrate;
+    private boolean copyToClipboard = true;
+    private boolean autoOpenWeb;
+    private boolean supplemental = true;
+    private boolean lowLightFusion;
+    private boolean fullFrameScan;
+    private float tiledCodeFraction;
+    private boolean angledScan = true;
+    private long decodeBudgetMs = DEFAULT_DECODE_BUDGET_MS;
+    private String scanMode;
+    private final Map<String,LuminancePipeline> preprocessing = new HashMap<>();
+
+    public Builder setDecode1DProduct(boolean decode1DProduct) {
+      this.decode1DProduct = decode1DProduct;
+      return this;
+    }
+
+    public Builder setDecode1DIndustrial(boolean decode1DIndustrial) {
+      this.decode1DIndustrial = decode1DIndustrial;
+      return this;
+    }
+
+    public Builder setDecodeQR(boolean decodeQR) {
+      this.decodeQR = decodeQR;
+      return this;
+    }
+
+    public Builder setDecodeDataMatrix(boolean decodeDataMatrix) {
+      this.decodeDataMatrix = decodeDataMatrix;
+      return this;
+    }
+
+    public Builder setDecodeAztec(boolean decodeAztec) {
+      this.decodeAztec = decodeAztec;
+      return this;
+    }
+
+    public Builder setDecodePDF417(boolean decodePDF417) {
+      this.decodePDF417 = decodePDF417;
+      return this;
+    }
+
+    public Builder setAutoFocus(boolean autoFocus) {
+      this.autoFocus = autoFocus;
+      return this;
+    }
+
+    public Builder setDisableContinuousFocus(boolean disableContinuousFocus) {
+      this.disableContinuousFocus = disableContinuousFocus;
+      return this;
+    }
+
+    public Builder setInvertScan(boolean invertScan) {
+      this.invertScan = invertScan;
+      return this;
+    }
+
+    public Builder setDisableBarcodeSceneMode(boolean disableBarcodeSceneMode) {
+      this.disableBarcodeSceneMode = disableBarcodeSceneMode;
+      return this;
+    }
+
+    public Builder setDisableMetering(boolean disableMetering) {
+      this.disableMetering = disableMetering;
+      return this;
+    }
+
+    public Builder setDisableExposure(boolean disableExposure) {
+      this.disableExposure = disableExposure;
+      return this;
+    }
+
+    public Builder setFrontLightMode(FrontLightMode frontLightMode) {
+      if (frontLightMode == null) {
+        throw new IllegalArgumentException("Front light mode must not be null");
+      }
+      this.frontLightMode = frontLightMode;
+      return this;
+    }
+
+    public Builder setPlayBeep(boolean playBeep) {
+      this.playBeep = playBeep;
+      return this;
+    }
+
+    public Builder setVibrate(boolean vibrate) {
+      this.vibrate = vibrate;
+      return this;
+    }
+
+    public Builder setCopyToClipboard(boolean copyToClipboard) {
+      this.copyToClipboard = copyToClipboard;
+      return this;
+    }
+
+    public Builder setAutoOpenWeb(boolean autoOpenWeb) {
+      this.autoOpenWeb = autoOpenWeb;
+      return this;
+    }
+
+    public Builder setSupplemental(boolean supplemental) {
+      this.supplemental = supplemental;
+      return this;
+    }
+
+    public Builder setLowLightFusion(boolean lowLightFusion) {
+      this.lowLightFusion = lowLightFusion;
+      return this;
+    }
+
+    public Builder setFullFrameScan(boolean fullFrameScan) {
+      this.fullFrameScan = fullFrameScan;
+      return this;
+    }
+
+    /**
+     * @param tiledCodeFraction above 0 to decode every code in the frame, tile by tile, with tiles sized
+     *                          for codes up to this share of the frame's shorter side; 0 for one code
+     */
+    public Builder setTiledCodeFraction(float tiledCodeFraction) {
+      if (!(tiledCodeFraction >= 0.0f) || tiledCodeFraction > 1.0f) {
+        throw new IllegalArgumentException("Bad tiled code fraction: " + tiledCodeFraction);
+      }
+      this.tiledCodeFraction = tiledCodeFraction;
+      return this;
+    }
+
+    public Builder setAngledScan(boolean angledScan) {
+      this.angledScan = angledScan;
+      return this;
+    }
+
+    /**
+     * @param decodeBudgetMs time a frame gets to decode in, from when the camera delivered it, before a newer
+     *     frame waiting behind it takes over; 0 for no limit
+     */
+    public Builder setDecodeBudgetMs(long decodeBudgetMs) {
+      if (decodeBudgetMs < 0L) {
+        throw new IllegalArgumentException("Bad decode budget: " + decodeBudgetMs);
+      }
+      this.decodeBudgetMs = decodeBudgetMs;
+      return this;
+    }
+
+    /**
+     * @param scanMode one of the {@link Intents.Scan#MODE} values, or null for none in particular
+     */
+    public Builder setScanMode(String scanMode) {
+      this.scanMode = scanMode;
+      return this;
+    }
+
+    /**
+     * @param scanMode the {@link Intents.Scan#MODE} value to use the pipeline for, or null for any mode
+     *                 without one of its own
+     * @param pipeline the preprocessing, or null for none
+     */
+    public Builder setPreprocessing(String scanMode, LuminancePipeline pipeline) {
+      if (pipeline == null) {
+        preprocessing.remove(scanMode);
+      } else {
+        preprocessing.put(scanMode, pipeline);
+      }
+      return this;
+    }
+
+    public ScannerConfig build() {
+      return new ScannerConfig(this);
+    }
+  }
+
+}
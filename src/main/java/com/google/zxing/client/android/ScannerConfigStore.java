@@ -0,0 +1,232 @@
+package com.google.zxing.client.android;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Holds the {@link ScannerConfig} read from the default preferences, one per process. The preferences
+ * are only ever read on the {@link ScannerExecutors#scheduler() scheduler} or another background
+ * thread: the main thread asks with {@link #current(Callback)} and gets the config once it is there,
+ * right away if {@link #preload()} has already finished. A preference change listener throws the
+ * config away and reads it again in the background.
+ * 从SharedPreferences异步加载扫描配置并在配置变化时重新加载
+ */
+public final class ScannerConfigStore {
+
+  /**
+   * Receives the config on the main thread.
+   */
+  public interface Callback {
+    void onScannerConfig(ScannerConfig config);
+  }
+
+  private static final String TAG = ScannerConfigStore.class.getSimpleName();
+
+  private static ScannerConfigStore instance;
+
+  private final Context context;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Runnable loadTask;
+  private final Runnable deliverTask;
+  /**
+   * Registered listeners are only weakly referenced by the preferences, so this keeps it alive.
+   */
+  private final SharedPreferences.OnSharedPreferenceChangeListener changeListener;
+  /**
+   * Not a preference, so kept here and added to every config read.
+   */
+  private final Map<String,LuminancePipeline> preprocessing = new HashMap<>();
+  private ScannerConfig config;
+  private final List<Callback> callbacks = new ArrayList<>();
+  private boolean loading;
+  /**
+   * Bumped on every change, so a read which overlapped a change is not kept.
+   */
+  private int generation;
+  private boolean listening;
+
+  private ScannerConfigStore(Context context) {
+    this.context = context;
+    loadTask = new Runnable() {
+      @Override
+      public void run() {
+        load();
+      }
+    };
+    deliverTask = new Runnable() {
+      @Override
+      public void run() {
+        deliver();
+      }
+    };
+    changeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+      @Override
+      public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+        invalidate();
+      }
+    };
+  }
+
+  public static synchronized ScannerConfigStore get(Context context) {
+    if (instance == null) {
+      instance = new ScannerConfigStore(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Starts reading the config in the background unless it is loaded or on its way. Cheap, call it
+   * early, e.g. in {@code onCreate()}.
+   */
+  public synchronized void preload() {
+    if (config != null || loading) {
+      return;
+    }
+    loading = true;
+    try {
+      ScannerExecutors.scheduler().execute(loadTask);
+    } catch (RejectedExecutionException ree) {
+      // Still not on the caller's thread, which is usually the main one
+      Log.w(TAG, "Could not preload scanner config on the scheduler", ree);
+      new Thread(loadTask, TAG).start();
+    }
+  }
+
+  /**
+   * Hands the config to the callback on the main thread: at once if it is loaded, otherwise once the
+   * background read finishes, which this starts if need be. Call on the main thread.
+   *
+   * @see #cancel(Callback)
+   */
+  public void current(Callback callback) {
+    ScannerConfig loaded;
+    synchronized (this) {
+      loaded = config;
+      if (loaded == null && !callbacks.contains(callback)) {
+        callbacks.add(callback);
+      }
+    }
+    if (loaded != null) {
+      callback.onScannerConfig(loaded);
+    } else {
+      preload();
+    }
+  }
+
+  /**
+   * Drops a callback passed to {@link #current(Callback)} which hasn't had the config yet, e.g. in
+   * {@code onPause()}.
+   */
+  public synchronized void cancel(Callback callback) {
+    callbacks.remove(callback);
+  }
+
+  /**
+   * @return the config, read on the calling thread if it isn't loaded yet
+   * @throws IllegalStateException on the main thread, which must use {@link #current(Callback)}
+   */
+  public ScannerConfig awaitCurrent() {
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      throw new IllegalStateException("Would read the preferences on the main thread");
+    }
+    synchronized (this) {
+      if (config != null) {
+        return config;
+      }
+    }
+    return load();
+  }
+
+  /**
+   * Forgets the config; the next one is read in the background.
+   */
+  public void invalidate() {
+    synchronized (this) {
+      config = null;
+      generation++;
+    }
+    preload();
+  }
+
+  /**
+   * Sets the preprocessing of the configs from now on, as the preferences can't hold it.
+   *
+   * @see ScannerConfig.Builder#setPreprocessing(String, LuminancePipeline)
+   */
+  public void setPreprocessing(String scanMode, LuminancePipeline pipeline) {
+    synchronized (this) {
+      if (pipeline == null) {
+        preprocessing.remove(scanMode);
+      } else {
+        preprocessing.put(scanMode, pipeline);
+      }
+    }
+    invalidate();
+  }
+
+  private ScannerConfig load() {
+    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+    synchronized (this) {
+      if (!listening) {
+        listening = true;
+        prefs.registerOnSharedPreferenceChangeListener(changeListener);
+      }
+    }
+    while (true) {
+      int startGeneration;
+      Map<String,LuminancePipeline> startPreprocessing;
+      synchronized (this) {
+        startGeneration = generation;
+        startPreprocessing = new HashMap<>(preprocessing);
+      }
+      ScannerConfig loaded = ScannerConfig.fromPreferences(prefs);
+      if (!startPreprocessing.isEmpty()) {
+        ScannerConfig.Builder builder = loaded.buildUpon();
+        for (Map.Entry<String,LuminancePipeline> entry : startPreprocessing.entrySet()) {
+          builder.setPreprocessing(entry.getKey(), entry.getValue());
+        }
+        loaded = builder.build();
+      }
+      synchronized (this) {
+        if (generation == startGeneration) {
+          loading = false;
+          if (config == null) {
+            config = loaded;
+            Log.i(TAG, "Loaded " + loaded);
+          }
+          if (!callbacks.isEmpty()) {
+            mainHandler.post(deliverTask);
+          }
+          return config;
+        }
+      }
+    }
+  }
+
+  private void deliver() {
+    ScannerConfig loaded;
+    List<Callback> waiting;
+    synchronized (this) {
+      loaded = config;
+      if (loaded == null) {
+        return; // Changed again meanwhile; the next read delivers
+      }
+      waiting = new ArrayList<>(callbacks);
+      callbacks.clear();
+    }
+    for (Callback callback : waiting) {
+      callback.onScannerConfig(loaded);
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+package com.google.zxing.client.android;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors shared by the scanner's background helpers (focus, idle handling, ...). Timed work used to
+ * be done by {@code AsyncTask}s sleeping on {@code AsyncTask.THREAD_POOL_EXECUTOR}, each holding a pool
+ * thread hostage for the whole delay; a single scheduler thread serves all of them instead. Decode
+ * work split across cores has a pool of its own at normal priority.
+ * 扫描相关后台定时任务共用的线程池
+ */
+public final class ScannerExecutors {
+
+  private static final long DECODER_KEEP_ALIVE_SECONDS = 30L;
+
+  private static ScheduledExecutorService scheduler;
+  private static ExecutorService decoder;
+
+  private ScannerExecutors() {
+  }
+
+  /**
+   * @return the shared scheduler; tasks run on one low priority daemon thread and must be short
+   */
+  public static synchronized ScheduledExecutorService scheduler() {
+    if (scheduler == null) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("ScannerScheduler"));
+      executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+      scheduler = executor;
+    }
+    return scheduler;
+  }
+
+  /**
+   * @return the shared pool for decode work split across cores, one thread per core; threads go away
+   *         when idle for a while
+   */
+  public static synchronized ExecutorService decoder() {
+    if (decoder == null) {
+      int cores = Runtime.getRuntime().availableProcessors();
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(cores, cores, DECODER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("ScannerDecoder", Thread.NORM_PRIORITY));
+      executor.allowCoreThreadTimeOut(true);
+      decoder = executor;
+    }
+    return decoder;
+  }
+
+  static final class NamedThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final int priority;
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String name) {
+      this(name, Thread.NORM_PRIORITY - 1);
+    }
+
+    NamedThreadFactory(String name, int priority) {
+      this.name = name;
+      this.priority = priority;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, name + '-' + count.incrementAndGet());
+      thread.setDaemon(true);
+      thread.setPriority(priority);
+      return thread;
+    }
+  }
+
+}
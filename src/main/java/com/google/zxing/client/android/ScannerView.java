@@ -0,0 +1,333 @@
+package com.google.zxing.client.android;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.widget.FrameLayout;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.client.android.camera.CameraManager;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Camera preview, viewfinder and decoder in one view which can stay on a screen between scans. The
+ * host forwards its {@code onResume()} and {@code onPause()}; in between the camera stays open and
+ * the decode thread alive, and {@link #pauseScanning()} and {@link #resumeScanning()} only start and
+ * stop asking for frames. After a result decoding pauses by itself until {@link #resumeScanning()},
+ * so the next scan costs a single decode instead of an activity launch and a camera open.
+ * 可嵌入界面中的扫描控件：两次扫描之间保持摄像头打开，只暂停/恢复解码
+ */
+public final class ScannerView extends FrameLayout implements SurfaceHolder.Callback {
+
+  private static final String TAG = ScannerView.class.getSimpleName();
+
+  /**
+   * Gets the results, on the main thread. Decoding is paused when it is called.
+   */
+  public interface OnScanListener {
+    void onScanned(ScanResult result, Bitmap barcode);
+  }
+
+  /**
+   * Gets all the codes of a frame when tiled scanning is on, on the main thread. Decoding is paused
+   * when it is called. Without one, the {@link OnScanListener} gets the first code.
+   */
+  public interface OnMultiScanListener {
+    void onScannedAll(List<ScanResult> results, Bitmap frame);
+  }
+
+  /**
+   * Hears about the parts of a Structured Append QR code, on the main thread. Scanning goes on.
+   */
+  public interface OnScanProgressListener {
+    void onPartScanned(ScanResult part, int collected, int total);
+  }
+
+  private final SurfaceView surfaceView;
+  private final ViewfinderView viewfinderView;
+  private final BeepManager beepManager;
+  private final ScanHost scanHost = new ScanHost();
+  private final ScannerConfigStore.Callback configCallback = new ScannerConfigStore.Callback() {
+    @Override
+    public void onScannerConfig(ScannerConfig config) {
+      applyConfig(config);
+    }
+  };
+  private CameraManager cameraManager;
+  private CaptureActivityHandler handler;
+  private ScannerConfig scannerConfig;
+  /**
+   * The config scanning runs with since the last {@link #onResume()}; null until it has been read.
+   */
+  private ScannerConfig activeConfig;
+  private Collection<BarcodeFormat> decodeFormats;
+  private OnScanListener onScanListener;
+  private OnScanProgressListener onScanProgressListener;
+  private OnMultiScanListener onMultiScanListener;
+  private boolean hasSurface;
+  private boolean resumed;
+  private boolean scanning = true;
+
+  public ScannerView(Context context) {
+    this(context, null);
+  }
+
+  public ScannerView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+    ScannerConfigStore.get(context).preload();
+    surfaceView = new SurfaceView(context);
+    viewfinderView = new ViewfinderView(context);
+    addView(surfaceView, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    addView(viewfinderView, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    Activity activity = findActivity(context);
+    beepManager = activity != null ? new BeepManager(activity) : null;
+  }
+
+  /**
+   * Looks through wrappers such as {@code ContextThemeWrapper} or {@code TintContextWrapper} for the
+   * activity the view lives in.
+   * 逐层取出被包装的Context，直到找到所在的Activity
+   *
+   * @return the activity, or null if the context doesn't belong to one
+   */
+  private static Activity findActivity(Context context) {
+    while (context instanceof ContextWrapper) {
+      if (context instanceof Activity) {
+        return (Activity) context;
+      }
+      context = ((ContextWrapper) context).getBaseContext();
+    }
+    return context instanceof Activity ? (Activity) context : null;
+  }
+
+  public void setOnScanListener(OnScanListener onScanListener) {
+    this.onScanListener = onScanListener;
+  }
+
+  public void setOnMultiScanListener(OnMultiScanListener onMultiScanListener) {
+    this.onMultiScanListener = onMultiScanListener;
+  }
+
+  public void setOnScanProgressListener(OnScanProgressListener onScanProgressListener) {
+    this.onScanProgressListener = onScanProgressListener;
+  }
+
+  /**
+   * @param scannerConfig the config to scan with from the next {@link #onResume()}, or null for the
+   *                      one from the preferences
+   */
+  public void setScannerConfig(ScannerConfig scannerConfig) {
+    this.scannerConfig = scannerConfig;
+  }
+
+  /**
+   * @param decodeFormats formats to look for from the next {@link #onResume()}, or null for those
+   *                      of the config
+   */
+  public void setDecodeFormats(Collection<BarcodeFormat> decodeFormats) {
+    this.decodeFormats = decodeFormats;
+  }
+
+  /**
+   * Opens the camera and starts scanning, unless {@link #pauseScanning()} was called. Call from the
+   * host's {@code onResume()}.
+   */
+  public void onResume() {
+    resumed = true;
+    if (cameraManager == null) {
+      cameraManager = new CameraManager(getContext().getApplicationContext());
+      viewfinderView.configCameraManager(cameraManager);
+    }
+    if (!hasSurface) {
+      surfaceView.getHolder().addCallback(this);
+    }
+    // The camera opens once both the surface and the config are there
+    if (scannerConfig != null) {
+      applyConfig(scannerConfig);
+    } else {
+      ScannerConfigStore.get(getContext()).current(configCallback);
+    }
+  }
+
+  private void applyConfig(ScannerConfig config) {
+    activeConfig = config;
+    cameraManager.setScannerConfig(config);
+    if (beepManager != null) {
+      beepManager.applyConfig(config);
+    }
+    if (hasSurface) {
+      initCamera(surfaceView.getHolder(), config);
+    }
+  }
+
+  /**
+   * Stops scanning and closes the camera. Call from the host's {@code onPause()}.
+   */
+  public void onPause() {
+    resumed = false;
+    ScannerConfigStore.get(getContext()).cancel(configCallback);
+    activeConfig = null;
+    if (handler != null) {
+      handler.quitSynchronously();
+      handler = null;
+    }
+    if (beepManager != null) {
+      beepManager.close();
+    }
+    if (cameraManager != null) {
+      cameraManager.closeDriver();
+    }
+    if (!hasSurface) {
+      surfaceView.getHolder().removeCallback(this);
+    }
+  }
+
+  /**
+   * Stops decoding frames; the camera stays open and the preview keeps running.
+   */
+  public void pauseScanning() {
+    scanning = false;
+    if (handler != null) {
+      handler.pauseDecoding();
+    }
+  }
+
+  /**
+   * Decodes frames again, after {@link #pauseScanning()} or a result.
+   */
+  public void resumeScanning() {
+    scanning = true;
+    if (handler != null) {
+      handler.resumeDecoding();
+    }
+  }
+
+  public boolean isScanning() {
+    return scanning && handler != null;
+  }
+
+  private void initCamera(SurfaceHolder surfaceHolder, ScannerConfig config) {
+    if (cameraManager.isOpen()) {
+      Log.w(TAG, "initCamera() while already open -- late SurfaceView callback?");
+      return;
+    }
+    try {
+      cameraManager.openDriver(surfaceHolder);
+      if (handler == null) {
+        handler = new CaptureActivityHandler(scanHost, decodeFormats, null, null, cameraManager, null, config);
+      }
+      if (!scanning) {
+        handler.pauseDecoding();
+      }
+    } catch (IOException ioe) {
+      Log.w(TAG, ioe);
+    } catch (RuntimeException e) {
+      // Fail to connect to camera service and the like; leave the view empty
+      Log.w(TAG, "Unexpected error initializing camera", e);
+    }
+  }
+
+  @Override
+  public void surfaceCreated(SurfaceHolder holder) {
+    if (!hasSurface) {
+      hasSurface = true;
+      if (resumed && activeConfig != null) {
+        initCamera(holder, activeConfig);
+      }
+    }
+  }
+
+  @Override
+  public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+  }
+
+  @Override
+  public void surfaceDestroyed(SurfaceHolder holder) {
+    hasSurface = false;
+  }
+
+  /**
+   * The view's side of the decode pipeline. Not implemented by the view itself, as
+   * {@link IScanActivity#getHandler()} would hide {@code View.getHandler()}.
+   */
+  private final class ScanHost
+      implements IScanActivity, IScanResultReceiver, IMultiScanResultReceiver, IScanProgressReceiver {
+
+    @Override
+    public void handleScanResults(List<ScanResult> results, Bitmap barcode, float scaleFactor) {
+      if (onMultiScanListener == null) {
+        handleScanResult(results.get(0), barcode, scaleFactor);
+        return;
+      }
+      scanning = false;
+      if (beepManager != null) {
+        beepManager.playBeepSoundAndVibrate();
+      }
+      onMultiScanListener.onScannedAll(results, barcode);
+    }
+
+    @Override
+    public void handleScanProgress(ScanResult part, int collected, int total) {
+      if (beepManager != null) {
+        beepManager.playBeepSoundAndVibrate();
+      }
+      if (onScanProgressListener != null) {
+        onScanProgressListener.onPartScanned(part, collected, total);
+      }
+    }
+
+    @Override
+    public void handleScanResult(ScanResult result, Bitmap barcode, float scaleFactor) {
+      // The handler stops asking for frames after a result; stay that way until resumeScanning()
+      scanning = false;
+      if (beepManager != null) {
+        beepManager.playBeepSoundAndVibrate();
+      }
+      if (onScanListener != null) {
+        onScanListener.onScanned(result, barcode);
+      }
+    }
+
+    @Override
+    public void handleDecode(Result rawResult, Bitmap barcode, float scaleFactor) {
+      handleScanResult(new ScanResult(rawResult, new float[0], new float[0], 0L, 0L, 0L, 0L, 0L), barcode,
+          scaleFactor);
+    }
+
+    @Override
+    public void drawViewfinder() {
+      viewfinderView.drawViewfinder();
+    }
+
+    @Override
+    public Handler getHandler() {
+      return handler;
+    }
+
+    @Override
+    public CameraManager getCameraManager() {
+      return cameraManager;
+    }
+
+    @Override
+    public ViewfinderView getViewfinderView() {
+      return viewfinderView;
+    }
+
+    @Override
+    public Activity getActivity() {
+      return findActivity(getContext());
+    }
+  }
+
+}
@@ -0,0 +1,224 @@
+package com.google.zxing.client.android;
+
+import android.util.Log;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.common.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the symbols of a Structured Append QR code as they turn up in frames. Symbols belong
+ * together when they carry the same parity and count; each one says which part it is, so they may be
+ * scanned in any order, and a part seen before is recognized and skipped. Once every part is there
+ * they are joined in order into one result. An encoder may split a multi-byte character between two
+ * symbols, which each decode to garbage on their own, so parts made of byte segments only are joined
+ * as bytes and decoded once; parts with other content, or bytes the decoder read in a charset it
+ * can't be asked again, fall back to joining their texts. Only one set is collected at a time: a symbol of
+ * another set, a set left alone for too long, or one whose text grows too large is dropped, so memory
+ * stays bounded whatever the camera sees.
+ * <p>
+ * Used on the decode thread only.
+ * 多帧拼接Structured Append二维码：按序号收集各个分片，齐全后输出拼接后的内容
+ */
+final class StructuredAppendAssembler {
+
+  private static final String TAG = StructuredAppendAssembler.class.getSimpleName();
+
+  static final int REJECTED = 0;
+  static final int DUPLICATE = 1;
+  static final int ADDED = 2;
+  static final int COMPLETE = 3;
+
+  /**
+   * The standard allows at most 16 symbols of at most about 7000 digits each; this is well above
+   * any real set of byte or text data, and keeps a stream of junk from piling up.
+   */
+  private static final int MAX_TEXT_CHARS = 64 * 1024;
+  private static final long MAX_IDLE_MS = 30 * 1000L;
+
+  private final Map<DecodeHintType,?> hints;
+  private final String[] texts = new String[16];
+  /**
+   * Each part's byte segments run together, or null for a part whose text they don't account for.
+   */
+  private final byte[][] bytes = new byte[16][];
+  private int total;
+  private int parity = -1;
+  private int collected;
+  private int textChars;
+  private long lastAddedTime;
+  private Result lastPart;
+
+  /**
+   * @param hints the decode hints, for the character set the parts were decoded in
+   */
+  StructuredAppendAssembler(Map<DecodeHintType,?> hints) {
+    this.hints = hints;
+  }
+
+  static boolean isPart(Result result) {
+    Map<ResultMetadataType,Object> metadata = result.getResultMetadata();
+    return result.getBarcodeFormat() == BarcodeFormat.QR_CODE && metadata != null &&
+        metadata.get(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE) instanceof Integer &&
+        metadata.get(ResultMetadataType.STRUCTURED_APPEND_PARITY) instanceof Integer;
+  }
+
+  /**
+   * @param part a result for which {@link #isPart(Result)} holds
+   * @param now {@code SystemClock.uptimeMillis()}
+   * @return {@link #ADDED} or {@link #COMPLETE} for a new part, {@link #DUPLICATE} for one already
+   *         collected, {@link #REJECTED} if it cannot be collected
+   */
+  int offer(Result part, long now) {
+    Map<ResultMetadataType,Object> metadata = part.getResultMetadata();
+    // High nibble is the position, low nibble the number of symbols less one
+    int sequence = (Integer) metadata.get(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE);
+    int partParity = (Integer) metadata.get(ResultMetadataType.STRUCTURED_APPEND_PARITY);
+    int index = (sequence >> 4) & 0x0F;
+    int partTotal = (sequence & 0x0F) + 1;
+    String text = part.getText();
+    if (index >= partTotal || text == null) {
+      return REJECTED;
+    }
+    if (collected > 0 && now - lastAddedTime > MAX_IDLE_MS) {
+      Log.i(TAG, "Dropping " + collected + " of " + total + " parts, none added for " + MAX_IDLE_MS + " ms");
+      reset();
+    }
+    if (collected > 0 && (partParity != parity || partTotal != total)) {
+      Log.i(TAG, "Part of another set; dropping " + collected + " of " + total + " parts");
+      reset();
+    }
+    if (collected == 0) {
+      total = partTotal;
+      parity = partParity;
+    }
+    if (texts[index] != null) {
+      return DUPLICATE;
+    }
+    if (textChars + text.length() > MAX_TEXT_CHARS) {
+      Log.w(TAG, "Set grew beyond " + MAX_TEXT_CHARS + " chars; dropping it");
+      reset();
+      return REJECTED;
+    }
+    texts[index] = text;
+    bytes[index] = byteContent(part);
+    textChars += text.length();
+    collected++;
+    lastAddedTime = now;
+    lastPart = part;
+    return collected == total ? COMPLETE : ADDED;
+  }
+
+  int getCollected() {
+    return collected;
+  }
+
+  int getTotal() {
+    return total;
+  }
+
+  /**
+   * @return the joined result after {@link #offer(Result, long)} returned {@link #COMPLETE}; the
+   *         parts are forgotten
+   */
+  Result assemble() {
+    if (collected == 0 || collected != total) {
+      throw new IllegalStateException("Only " + collected + " of " + total + " parts collected");
+    }
+    byte[] joinedBytes = joinBytes();
+    String text = null;
+    if (joinedBytes != null) {
+      text = decode(joinedBytes, StringUtils.guessEncoding(joinedBytes, hints));
+    }
+    if (text == null) {
+      StringBuilder joined = new StringBuilder(textChars);
+      for (int i = 0; i < total; i++) {
+        joined.append(texts[i]);
+      }
+      text = joined.toString();
+      joinedBytes = null;
+    }
+    Result result = new Result(text, joinedBytes, lastPart.getResultPoints(), BarcodeFormat.QR_CODE,
+        lastPart.getTimestamp());
+    result.putMetadata(ResultMetadataType.STRUCTURED_APPEND_PARITY, parity);
+    if (joinedBytes != null) {
+      result.putMetadata(ResultMetadataType.BYTE_SEGMENTS, Collections.singletonList(joinedBytes));
+    }
+    Object ecLevel = lastPart.getResultMetadata().get(ResultMetadataType.ERROR_CORRECTION_LEVEL);
+    if (ecLevel != null) {
+      result.putMetadata(ResultMetadataType.ERROR_CORRECTION_LEVEL, ecLevel);
+    }
+    reset();
+    return result;
+  }
+
+  /**
+   * @return the byte segments of all parts in sequence order, or null unless every part has them
+   */
+  private byte[] joinBytes() {
+    ByteArrayOutputStream joined = new ByteArrayOutputStream(textChars);
+    for (int i = 0; i < total; i++) {
+      if (bytes[i] == null) {
+        return null;
+      }
+      joined.write(bytes[i], 0, bytes[i].length);
+    }
+    return joined.toByteArray();
+  }
+
+  /**
+   * @return the part's byte segments run together, if decoding them the way the decoder does gives
+   *         back its whole text; otherwise null
+   */
+  private byte[] byteContent(Result part) {
+    Object segments = part.getResultMetadata().get(ResultMetadataType.BYTE_SEGMENTS);
+    if (!(segments instanceof List) || ((List<?>) segments).isEmpty()) {
+      return null;
+    }
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    StringBuilder text = new StringBuilder();
+    for (Object segment : (List<?>) segments) {
+      if (!(segment instanceof byte[])) {
+        return null;
+      }
+      byte[] segmentBytes = (byte[]) segment;
+      // Without an ECI the decoder reads each segment in the hinted or the guessed charset
+      String segmentText = decode(segmentBytes, StringUtils.guessEncoding(segmentBytes, hints));
+      if (segmentText == null) {
+        return null;
+      }
+      text.append(segmentText);
+      content.write(segmentBytes, 0, segmentBytes.length);
+    }
+    return text.toString().equals(part.getText()) ? content.toByteArray() : null;
+  }
+
+  private static String decode(byte[] data, String charset) {
+    try {
+      return new String(data, charset);
+    } catch (UnsupportedEncodingException uee) {
+      return null;
+    }
+  }
+
+  void reset() {
+    for (int i = 0; i < texts.length; i++) {
+      texts[i] = null;
+      bytes[i] = null;
+    }
+    total = 0;
+    parity = -1;
+    collected = 0;
+    textChars = 0;
+    lastPart = null;
+  }
+
+}
@@ -0,0 +1,25 @@
+package com.google.zxing.client.android;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Sends sections to {@code android.os.Trace}; they are only recorded while a capture with the app's
+ * tracing on is running.
+ * 使用系统Trace输出追踪区间
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+final class SystraceBackend implements TraceBackend {
+
+  @Override
+  public void beginSection(String name) {
+    Trace.beginSection(name);
+  }
+
+  @Override
+  public void endSection() {
+    Trace.endSection();
+  }
+
+}
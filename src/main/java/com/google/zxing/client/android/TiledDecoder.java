@@ -0,0 +1,235 @@
+package com.google.zxing.client.android;
+
+import android.util.Log;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes every code in a whole frame, e.g. a shelf of labels. The frame is cut into square tiles
+ * twice the size of the largest code expected, overlapping by half, so each such code lies wholly
+ * within some tile. Workers, each with its own reader, take tiles in turn until none are left; the
+ * decode thread is one of them and the others run on {@link ScannerExecutors#decoder()}. A code found
+ * in several overlapping tiles is reported once: results with the same format and text whose centers
+ * are closer than the largest code are taken for the same code.
+ * <p>
+ * The readers get no {@link DecodeHintType#NEED_RESULT_POINT_CALLBACK}: it would be called from
+ * several threads at once, while the viewfinder's point buffer takes a single writer, and with points
+ * relative to each tile.
+ * <p>
+ * Called on the decode thread only.
+ * 全画面分块并行解码：将画面切分为相互重叠的方块，多线程各自解码后合并去重
+ */
+final class TiledDecoder {
+
+  private static final String TAG = TiledDecoder.class.getSimpleName();
+
+  /**
+   * Tiles smaller than this hold too few modules of any code worth looking for.
+   */
+  private static final int MIN_CODE_SIZE = 64;
+
+  private final float maxCodeFraction;
+  private final Worker[] workers;
+  private final AtomicInteger nextTile = new AtomicInteger();
+  private final List<Future<?>> futures = new ArrayList<>();
+  private OrientedLuminanceSource frame;
+  private DecodeDeadline deadline;
+  private int frameWidth;
+  private int frameHeight;
+  private int tileSize;
+  private int step;
+  private int tilesX;
+  private int tilesY;
+
+  /**
+   * @param maxCodeFraction side of the largest code expected, as a share of the frame's shorter side
+   */
+  TiledDecoder(Map<DecodeHintType,Object> hints, float maxCodeFraction) {
+    if (!(maxCodeFraction > 0.0f) || maxCodeFraction > 1.0f) {
+      throw new IllegalArgumentException("Bad code size fraction: " + maxCodeFraction);
+    }
+    this.maxCodeFraction = maxCodeFraction;
+    Map<DecodeHintType,Object> workerHints = new EnumMap<>(DecodeHintType.class);
+    if (hints != null) {
+      workerHints.putAll(hints);
+    }
+    workerHints.remove(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+    workers = new Worker[Runtime.getRuntime().availableProcessors()];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Worker(workerHints);
+    }
+  }
+
+  /**
+   * @param frame the whole frame, in any orientation
+   * @param maxWorkers most threads to decode on, the calling one included
+   * @param deadline once expired, tiles not yet started are skipped and those being decoded give up
+   * @return the codes found, with result points in frame pixels; empty if none
+   */
+  List<Result> decode(OrientedLuminanceSource frame, int maxWorkers, DecodeDeadline deadline) {
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    this.frame = frame;
+    this.deadline = deadline;
+    frameWidth = width;
+    frameHeight = height;
+    int maxCodeSize = Math.max(MIN_CODE_SIZE, (int) (Math.min(width, height) * maxCodeFraction));
+    step = maxCodeSize;
+    tileSize = Math.min(2 * maxCodeSize, Math.min(width, height));
+    tilesX = countTiles(width);
+    tilesY = countTiles(height);
+    nextTile.set(0);
+
+    int workerCount = Math.max(1, Math.min(Math.min(maxWorkers, workers.length), tilesX * tilesY));
+    futures.clear();
+    ExecutorService decoder = ScannerExecutors.decoder();
+    for (int i = 1; i < workerCount; i++) {
+      workers[i].results.clear();
+      try {
+        futures.add(decoder.submit(workers[i]));
+      } catch (RejectedExecutionException ree) {
+        Log.w(TAG, "Decoding tiles on fewer threads", ree);
+        break;
+      }
+    }
+    workers[0].results.clear();
+    workers[0].run();
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException ie) {
+        interrupted = true;
+      } catch (ExecutionException ee) {
+        Log.w(TAG, "Tile worker failed", ee.getCause());
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    List<Result> merged = new ArrayList<>();
+    for (int i = 0; i <= futures.size(); i++) {
+      for (Result result : workers[i].results) {
+        if (!isDuplicate(result, merged, maxCodeSize)) {
+          merged.add(result);
+        }
+      }
+      workers[i].results.clear();
+    }
+    this.frame = null;
+    this.deadline = null;
+    return merged;
+  }
+
+  /**
+   * @return number of tiles along a side, the last one flush with the edge
+   */
+  private int countTiles(int length) {
+    if (length <= tileSize) {
+      return 1;
+    }
+    return (length - tileSize + step - 1) / step + 1;
+  }
+
+  private static boolean isDuplicate(Result result, List<Result> merged, int maxCodeSize) {
+    float[] center = center(result.getResultPoints());
+    for (Result other : merged) {
+      if (other.getBarcodeFormat() == result.getBarcodeFormat() && other.getText().equals(result.getText())) {
+        float[] otherCenter = center(other.getResultPoints());
+        if (center == null || otherCenter == null ||
+            Math.abs(center[0] - otherCenter[0]) < maxCodeSize && Math.abs(center[1] - otherCenter[1]) < maxCodeSize) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static float[] center(ResultPoint[] points) {
+    if (points == null) {
+      return null;
+    }
+    float x = 0.0f;
+    float y = 0.0f;
+    int count = 0;
+    for (ResultPoint point : points) {
+      if (point != null) {
+        x += point.getX();
+        y += point.getY();
+        count++;
+      }
+    }
+    return count == 0 ? null : new float[] {x / count, y / count};
+  }
+
+  /**
+   * Decodes tiles with its own reader until none are left.
+   */
+  private final class Worker implements Runnable {
+
+    private final MultiFormatReader reader = new MultiFormatReader();
+    private final List<Result> results = new ArrayList<>();
+
+    Worker(Map<DecodeHintType,Object> hints) {
+      reader.setHints(hints);
+    }
+
+    @Override
+    public void run() {
+      int tileCount = tilesX * tilesY;
+      int tile;
+      while (!deadline.isExpired() && (tile = nextTile.getAndIncrement()) < tileCount) {
+        int left = Math.min((tile % tilesX) * step, frameWidth - tileSize);
+        int top = Math.min((tile / tilesX) * step, frameHeight - tileSize);
+        int tileWidth = Math.min(tileSize, frameWidth);
+        int tileHeight = Math.min(tileSize, frameHeight);
+        LuminanceSource source = frame.cropView(Math.max(0, left), Math.max(0, top), tileWidth, tileHeight);
+        try {
+          Result result = reader.decodeWithState(
+              new BinaryBitmap(new DeadlineBinarizer(new HybridBinarizer(source), deadline)));
+          results.add(toFrame(result, Math.max(0, left), Math.max(0, top)));
+        } catch (ReaderException re) {
+          // Nothing in this tile
+        } finally {
+          reader.reset();
+        }
+      }
+    }
+
+    private Result toFrame(Result result, int left, int top) {
+      ResultPoint[] points = result.getResultPoints();
+      ResultPoint[] moved = null;
+      if (points != null) {
+        moved = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+          if (points[i] != null) {
+            moved[i] = new ResultPoint(points[i].getX() + left, points[i].getY() + top);
+          }
+        }
+      }
+      Result framed = new Result(result.getText(), result.getRawBytes(), result.getNumBits(), moved,
+          result.getBarcodeFormat(), result.getTimestamp());
+      framed.putAllMetadata(result.getResultMetadata());
+      return framed;
+    }
+  }
+
+}
@@ -0,0 +1,21 @@
+package com.google.zxing.client.android;
+
+/**
+ * Where {@link ScanTrace} sections go: {@code android.os.Trace} on a device, see
+ * {@link ScanTrace#enableSystrace()}, or a {@link ChromeTraceWriter} under a plain JVM.
+ * 扫描流程耗时追踪的输出端
+ */
+public interface TraceBackend {
+
+    /**
+     * Opens a section on the calling thread. Called on any thread.
+     *
+     * @param name a constant naming the stage
+     */
+    void beginSection(String name);
+
+    /**
+     * Closes the section the calling thread opened last.
+     */
+    void endSection();
+}
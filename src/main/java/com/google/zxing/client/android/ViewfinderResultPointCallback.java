@@ -18,18 +18,39 @@ package com.google.zxing.client.android;
 
 import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
+import com.google.zxing.client.android.camera.CameraManager;
 
 final class ViewfinderResultPointCallback implements ResultPointCallback {
 
   private final ViewfinderView viewfinderView;
+  private final IdleMonitor idleMonitor;
+  private final CameraManager cameraManager;
 
   ViewfinderResultPointCallback(ViewfinderView viewfinderView) {
+    this(viewfinderView, null);
+  }
+
+  ViewfinderResultPointCallback(ViewfinderView viewfinderView, IdleMonitor idleMonitor) {
+    this(viewfinderView, idleMonitor, null);
+  }
+
+  ViewfinderResultPointCallback(ViewfinderView viewfinderView, IdleMonitor idleMonitor, CameraManager cameraManager) {
     this.viewfinderView = viewfinderView;
+    this.idleMonitor = idleMonitor;
+    this.cameraManager = cameraManager;
   }
 
   @Override
   public void foundPossibleResultPoint(ResultPoint point) {
     viewfinderView.addPossibleResultPoint(point);
+    // A candidate finder pattern means someone is trying to scan
+    if (idleMonitor != null) {
+      idleMonitor.onActivity();
+    }
+    //用于估算码的大小，过小时自动放大
+    if (cameraManager != null) {
+      cameraManager.onPossibleResultPoint(point);
+    }
   }
 
 }
@@ -16,6 +16,7 @@
 
 package com.google.zxing.client.android;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
@@ -25,36 +26,68 @@ import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
-import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
 import android.widget.SeekBar;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.client.android.camera.CameraManager;
-import java.util.Collection;
-import java.util.HashSet;
 
 /**
  * This view is overlaid on top of the camera preview. It adds the viewfinder
  * rectangle and partial transparency outside it, as well as the laser scanner
- * animation and result points.
+ * animation and result points. From API 11 the scan line is its only child,
+ * so it sweeps without taking space in the host's layout.
  */
-public final class ViewfinderView extends View {
+public final class ViewfinderView extends FrameLayout {
 
     /**
      * 缩放控件
      */
     private SeekBar mSeekBar;
+    private boolean showingZoom;
 
     public void setSeekBar(SeekBar mSeekBar) {
         this.mSeekBar = mSeekBar;
     }
 
     /**
-     * 刷新界面的时间
+     * 将缩放条移动到别处(如自动放大)已设置的缩放值，移动期间{@link #isShowingZoom()}为true，
+     * 缩放条的监听据此不再重复缩放
+     *
+     * @param tenZoom zoom times 10
+     */
+    public void showZoom(int tenZoom) {
+        if (mSeekBar == null) {
+            return;
+        }
+        showingZoom = true;
+        try {
+            mSeekBar.setProgress(tenZoom);
+        } finally {
+            showingZoom = false;
+        }
+    }
+
+    /**
+     * @return true while {@link #showZoom(int)} moves the zoom bar
+     */
+    public boolean isShowingZoom() {
+        return showingZoom;
+    }
+
+    /**
+     * 刷新界面的时间，也是扫描线移动速度(每次移动的像素)所基于的时间间隔
      */
     private static final long ANIMATION_DELAY = 10L;
+    /**
+     * 扫描线由独立图层播放时，结果点淡出前保留的时间
+     */
+    private static final long POINT_FADE_DELAY = 80L;
     private static final int OPAQUE = 0xFF;
 
     /**
@@ -72,6 +105,24 @@ public final class ViewfinderView extends View {
     private boolean animLineSlideToDown;
     private int mCenterAnimLineH;// 中间横线高度
     private int mCenterLineMoveSpeed;// 中间横线滚动速度
+    private int mCenterLineFps;// 中间横线每秒移动次数，0为跟随屏幕刷新率
+    /**
+     * 扫描线图层(API 11以上)，是本控件唯一的子View；为null时仍在onDraw()中逐帧绘制扫描线
+     */
+    private volatile ScanLineView scanLineView;
+    /**
+     * 扫描线图层当前的尺寸和位置所依据的取景框
+     */
+    private final Rect scanLineRect = new Rect();
+    private boolean scanLineLayoutPending;
+    private final Runnable layoutScanLineTask = new Runnable() {
+        @Override
+        public void run() {
+            scanLineLayoutPending = false;
+            layoutScanLineView();
+        }
+    };
+    private long pollingDelay = ANIMATION_DELAY;
     /**
      * 扫描结果位图
      * @deprecated
@@ -115,8 +166,29 @@ public final class ViewfinderView extends View {
      * 扫描出的有效的像素点的颜色
      */
     private int validScanedPointPixelsColor;
-    private Collection<ResultPoint> possibleResultPoints;
-    private Collection<ResultPoint> lastPossibleResultPoints;
+    /**
+     * 由解码线程写入、UI线程读取的可能的结果点
+     */
+    private final ResultPointRing possibleResultPoints = new ResultPointRing();
+    /**
+     * 以下只在UI线程中使用：本次和上次绘制的结果点(x, y交替存放)
+     */
+    private float[] currentPoints = new float[ResultPointRing.MAX_POINTS_PER_FRAME * 2];
+    private float[] lastPoints = new float[ResultPointRing.MAX_POINTS_PER_FRAME * 2];
+    private int currentPointCount;
+    private int lastPointCount;
+    private long drawnPointSequence;
+    /**
+     * 结果点坐标(预览帧中)到屏幕坐标的缩放比例
+     */
+    private float pointScaleX = 1.0f;
+    private float pointScaleY = 1.0f;
+    private boolean pointScaleKnown;
+    /**
+     * 前置摄像头画面镜像显示，结果点的x坐标从取景框右侧算起
+     */
+    private boolean pointsMirrored;
+    private final Rect lineRect = new Rect();
     /**
      * 是否第一次绘制
      */
@@ -172,6 +244,7 @@ public final class ViewfinderView extends View {
 
         mCenterAnimLineH = a.getDimensionPixelSize(R.styleable.Scanner_center_anim_line_h,defaultLineHeight);
         mCenterLineMoveSpeed = a.getInt(R.styleable.Scanner_center_line_move_speed, defaultLineSpeed);
+        mCenterLineFps = a.getInt(R.styleable.Scanner_center_line_fps, 0);
 
         isLeftRightCornerShow = a.getBoolean(R.styleable.Scanner_draw_left_right_corner, defLeftRightCornerShow);
         isTopBottomCornerShow = a.getBoolean(R.styleable.Scanner_draw_top_bottom_corner, defTopBottomCornerShow);
@@ -200,9 +273,11 @@ public final class ViewfinderView extends View {
             scanAnimLine = res.getDrawable(centerLineDrawableId);
         }
         paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        possibleResultPoints = new HashSet<ResultPoint>(5);
-        lastPossibleResultPoints = null;
         a.recycle();
+        setWillNotDraw(false);
+        if (scanAnimLine != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            addScanLineView();
+        }
     }
 
     CameraManager cameraManager;
@@ -215,8 +290,23 @@ public final class ViewfinderView extends View {
      * 取景框的矩形范围
      */
     private Rect viewfinderRect;
+    /**
+     * 缓存的静态图层：遮罩、边框、四个角及边上的图片，只在取景框或尺寸变化时重绘
+     */
+    private Bitmap staticLayer;
+    private final Rect staticLayerRect = new Rect();
+
     @Override
     public void onDraw(Canvas canvas) {
+        ScanTrace.begin("ViewfinderView.onDraw");
+        try {
+            drawScanner(canvas);
+        } finally {
+            ScanTrace.end();
+        }
+    }
+
+    private void drawScanner(Canvas canvas) {
         if (cameraManager == null) {
             return;
         }
@@ -225,116 +315,58 @@ public final class ViewfinderView extends View {
 //        if (viewfinderRect == null) {
 //            return;
 //        }
-        if (this.viewfinderRect == null) {
-            this.viewfinderRect = cameraManager.getFramingRect();
-        }
-        if (this.viewfinderRect == null) {//不绘制了
+        Rect framingRect = cameraManager.getFramingRect();
+        if (framingRect == null) {//不绘制了
             return;
         }
+        if (!framingRect.equals(viewfinderRect)) {
+            // 取景框变了(手动设置、重开相机、旋转等)，结果点的比例和扫描线都按新的取景框重来
+            viewfinderRect = new Rect(framingRect);
+            pointScaleKnown = false;
+            isFirstDraw = false;
+        }
+        if (!pointScaleKnown) {
+            Rect previewRect = cameraManager.getFramingRectInPreview();
+            if (previewRect != null && previewRect.width() > 0 && previewRect.height() > 0) {
+                pointScaleX = viewfinderRect.width() / (float) previewRect.width();
+                pointScaleY = viewfinderRect.height() / (float) previewRect.height();
+                pointsMirrored = cameraManager.isPreviewMirrored();
+                pointScaleKnown = true;
+            }
+        }
         // 初始化中间线滑动的最上边和最下边
         if (!isFirstDraw) {
             isFirstDraw = true;
             animLineSlideTop = viewfinderRect.top;
+            int fps = getScanLineFps();
+            pollingDelay = Math.max(ANIMATION_DELAY, 1000L / fps);
         }
 
         // 获取屏幕的宽和高
         int width = canvas.getWidth();
         int height = canvas.getHeight();
 
-//        paint.setColor(resultBitmap != null ? scanResultColor : aroundViewfinderBgColor);
-        paint.setColor(aroundViewfinderBgColor);
-
-        // 画出扫描框外面的阴影部分，共四个部分，扫描框的上面到屏幕上面，扫描框的下面到屏幕下面
-        // 扫描框的左边面到屏幕左边，扫描框的右边到屏幕右边
-        canvas.drawRect(0, 0, width, viewfinderRect.top, paint);
-        canvas.drawRect(0, viewfinderRect.top, viewfinderRect.left, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
-        canvas.drawRect(viewfinderRect.right + viewfinderOutlineWidth, viewfinderRect.top, width, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
-        canvas.drawRect(0, viewfinderRect.bottom + viewfinderOutlineWidth, width, height, paint);
-
         if (resultBitmap != null) {
+            drawMask(canvas, width, height);
+            if (scanLineView != null && scanLineView.isSweeping()) {
+                scanLineView.stopSweep();
+                scanLineView.setVisibility(INVISIBLE);
+            }
             // Draw the opaque result bitmap over the scanning rectangle
             paint.setAlpha(OPAQUE);
             canvas.drawBitmap(resultBitmap, viewfinderRect.left, viewfinderRect.top, paint);
         }
         else {
-            // 画扫描框边上的角，总共4个角每个角2小短线即8个部分
-            paint.setColor(cornerColor);
-            if (drawableTop == null || drawableBottom == null) {
-                int mSpelce = viewfinderOutlineWidth + cornerSideLineWidth;
-                int left = viewfinderRect.left - mSpelce;
-                int right = viewfinderRect.right + mSpelce;
-                int top = viewfinderRect.top - mSpelce;
-                int bottom = viewfinderRect.bottom + mSpelce;
-
-                if (isCornerInSide) {
-                    mSpelce = viewfinderOutlineWidth;
-                    left = viewfinderRect.left + mSpelce;
-                    right = viewfinderRect.right - mSpelce;
-                    top = viewfinderRect.top + mSpelce;
-                    bottom = viewfinderRect.bottom - mSpelce;
-                }
-
-                if (isLeftRightCornerShow) {
-                    // 左上角横线
-                    canvas.drawRect(left, top, left + cornerSideLineLength, top + cornerSideLineWidth, paint);
-                    // 左上角竖线
-                    canvas.drawRect(left, top, left + cornerSideLineWidth, top + cornerSideLineLength, paint);
-                    // 右上角横线
-                    canvas.drawRect(right - cornerSideLineLength, top, right, top + cornerSideLineWidth, paint);
-                    // 右上角竖线
-                    canvas.drawRect(right - cornerSideLineWidth, top, right, top + cornerSideLineLength, paint);
-                }
-
-                if (isTopBottomCornerShow) {
-                    // 左下角横线
-                    canvas.drawRect(left, bottom - cornerSideLineWidth, left + cornerSideLineLength, bottom, paint);
-                    // 左下角竖线
-                    canvas.drawRect(left, bottom - cornerSideLineLength, left + cornerSideLineWidth, bottom, paint);
-                    // 右下角横线
-                    canvas.drawRect(right - cornerSideLineLength, bottom - cornerSideLineWidth, right, bottom, paint);
-                    // 右下角竖线
-                    canvas.drawRect(right - cornerSideLineWidth, bottom - cornerSideLineLength, right, bottom, paint);
-                }
+            // 静态部分每帧只贴一次缓存的图层，只有扫描线和结果点需要真正绘制
+            Bitmap layer = getStaticLayer(getWidth(), getHeight());
+            if (layer != null) {
+                canvas.drawBitmap(layer, 0, 0, null);
             }
-
-            paint.setColor(viewfinderOutlineColor);
-            // 绘制上面长方形
-            canvas.drawRect(viewfinderRect.left - viewfinderOutlineWidth, viewfinderRect.top - viewfinderOutlineWidth,
-                    viewfinderRect.right + viewfinderOutlineWidth, viewfinderRect.top + viewfinderOutlineWidth, paint);
-            // 绘制左边长方形
-            canvas.drawRect(viewfinderRect.left - viewfinderOutlineWidth, viewfinderRect.top - viewfinderOutlineWidth,
-                    viewfinderRect.left + viewfinderOutlineWidth, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
-            // 绘制右边长方形
-            canvas.drawRect(viewfinderRect.right - viewfinderOutlineWidth, viewfinderRect.top - viewfinderOutlineWidth,
-                    viewfinderRect.right + viewfinderOutlineWidth, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
-            // 绘制下面长方形
-            canvas.drawRect(viewfinderRect.left - viewfinderOutlineWidth, viewfinderRect.bottom - viewfinderOutlineWidth,
-                    viewfinderRect.right + viewfinderOutlineWidth, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
-            int drawSize = cornerSideLineWidth + viewfinderOutlineWidth - 1;
-            if (drawableTop != null) {
-                drawableTop.setBounds(viewfinderRect.left - drawSize, viewfinderRect.top
-                        - drawSize, viewfinderRect.right + drawSize, viewfinderRect.top
-                        + drawableTop.getIntrinsicHeight() - drawSize);
+            else {
+                drawStaticParts(canvas, width, height);
             }
-            if (drawableBottom != null)
-                drawableBottom.setBounds(viewfinderRect.left - drawSize, viewfinderRect.bottom
-                                - drawableBottom.getIntrinsicHeight() + drawSize,
-                        viewfinderRect.right + drawSize, viewfinderRect.bottom + drawSize);
-            if (drawableLeft != null)
-                drawableLeft.setBounds(viewfinderRect.left - drawSize, viewfinderRect.top,
-                        viewfinderRect.left, viewfinderRect.bottom);
-            if (drawableRight != null)
-                drawableRight.setBounds(viewfinderRect.right, viewfinderRect.top, viewfinderRect.right
-                        + cornerSideLineWidth, viewfinderRect.bottom);
-            if (drawableTop != null)
-                drawableTop.draw(canvas);
-            if (drawableBottom != null)
-                drawableBottom.draw(canvas);
-            if (drawableLeft != null)
-                drawableLeft.draw(canvas);
-            if (drawableRight != null)
-                drawableRight.draw(canvas);
 
+            boolean lineOnLayer = scanAnimLine != null && useScanLineView();
             //绘制中间的扫描动画线条
             int viewfinderRectTop = viewfinderRect.top;
             int viewfinderRectBottom = viewfinderRect.bottom - 10;
@@ -344,44 +376,297 @@ public final class ViewfinderView extends View {
             if (animLineSlideTop >= viewfinderRectBottom) {//到底端了,则往上走
                 animLineSlideToDown = false;
             }
+            int moveStep = (int) (mCenterLineMoveSpeed * pollingDelay / ANIMATION_DELAY);
             if (animLineSlideToDown) {
-                animLineSlideTop += mCenterLineMoveSpeed;
+                animLineSlideTop += moveStep;
             }
             else{
-                animLineSlideTop -= mCenterLineMoveSpeed;
+                animLineSlideTop -= moveStep;
             }
-            if (scanAnimLine != null) {
-                Rect lineRect = new Rect();
+            if (scanAnimLine != null && !lineOnLayer) {
+                paint.setAlpha(OPAQUE);
                 lineRect.left = viewfinderRect.left;
                 lineRect.right = viewfinderRect.right;
                 lineRect.top = animLineSlideTop;
                 lineRect.bottom = animLineSlideTop + mCenterAnimLineH;// 扫描线的宽度15
                 canvas.drawBitmap(((BitmapDrawable) (scanAnimLine)).getBitmap(),null,lineRect, paint);
             }
-            //绘制有效数据点
-            Collection<ResultPoint> currentPossible = possibleResultPoints;
-            Collection<ResultPoint> currentLast = lastPossibleResultPoints;
-            if (currentPossible.isEmpty()) {
-                lastPossibleResultPoints = null;
+            //绘制有效数据点：新一帧的点大而实，上一次绘制过的点小而淡
+            long publishedSequence = possibleResultPoints.getPublishedSequence();
+            if (publishedSequence != drawnPointSequence) {
+                float[] previous = lastPoints;
+                lastPoints = currentPoints;
+                lastPointCount = currentPointCount;
+                int count = possibleResultPoints.copyLatest(previous);
+                currentPoints = previous;
+                currentPointCount = count < 0 ? 0 : count;
+                drawnPointSequence = publishedSequence;
             }
             else {
-                possibleResultPoints = new HashSet<ResultPoint>(5);
-                lastPossibleResultPoints = currentPossible;
-                paint.setAlpha(OPAQUE);
-                paint.setColor(validScanedPointPixelsColor);
-                for (ResultPoint point : currentPossible) {
-                    canvas.drawCircle(viewfinderRect.left + point.getX(), viewfinderRect.top + point.getY(), 6.0f, paint);
-                }
+                lastPointCount = currentPointCount;
+                float[] previous = lastPoints;
+                lastPoints = currentPoints;
+                currentPoints = previous;
+                currentPointCount = 0;
             }
-            if (currentLast != null) {
-                paint.setAlpha(OPAQUE / 2);
-                paint.setColor(validScanedPointPixelsColor);
-                for (ResultPoint point : currentLast) {
-                    canvas.drawCircle(viewfinderRect.left + point.getX(), viewfinderRect.top + point.getY(), 3.0f, paint);
-                }
+            paint.setColor(validScanedPointPixelsColor);
+            paint.setAlpha(OPAQUE);
+            drawPoints(canvas, currentPoints, currentPointCount, 6.0f);
+            paint.setAlpha(OPAQUE / 2);
+            drawPoints(canvas, lastPoints, lastPointCount, 3.0f);
+            if (!lineOnLayer) {
+                // 只刷新扫描框的内容，其他地方不刷新
+                postInvalidateDelayed(pollingDelay, viewfinderRect.left, viewfinderRect.top,viewfinderRect.right, viewfinderRect.bottom);
+            }
+            else if (currentPointCount > 0 || lastPointCount > 0) {
+                // 扫描线不再需要重绘，只为淡出结果点再刷新一次
+                postInvalidateDelayed(POINT_FADE_DELAY, viewfinderRect.left, viewfinderRect.top,viewfinderRect.right, viewfinderRect.bottom);
+            }
+        }
+    }
+
+    /**
+     * @return true if the scan line is animated on its own layer, which is then kept sweeping; false
+     * while there is no layer or it is still being fitted to the viewfinder rect
+     */
+    private boolean useScanLineView() {
+        if (scanLineView == null) {
+            return false;
+        }
+        if (!scanLineRect.equals(viewfinderRect)) {
+            if (scanLineView.isSweeping()) {
+                scanLineView.stopSweep();
+                scanLineView.setVisibility(INVISIBLE);
+            }
+            if (!scanLineLayoutPending) {
+                // Layout can't be requested in the middle of drawing
+                scanLineLayoutPending = true;
+                post(layoutScanLineTask);
+            }
+            return false;
+        }
+        if (!scanLineView.isSweeping()) {
+            scanLineView.setVisibility(VISIBLE);
+            startScanLineSweep();
+        }
+        return true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private void addScanLineView() {
+        ScanLineView view = new ScanLineView(getContext(), scanAnimLine);
+        view.setVisibility(INVISIBLE);
+        addView(view, new LayoutParams(0, mCenterAnimLineH));
+        scanLineView = view;
+    }
+
+    /**
+     * 按当前取景框设置扫描线图层的宽度和水平位置，竖直方向由扫描动画移动
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private void layoutScanLineView() {
+        if (viewfinderRect == null) {
+            return;
+        }
+        ViewGroup.LayoutParams params = scanLineView.getLayoutParams();
+        params.width = viewfinderRect.width();
+        params.height = mCenterAnimLineH;
+        scanLineView.setLayoutParams(params);
+        scanLineView.setTranslationX(viewfinderRect.left);
+        scanLineRect.set(viewfinderRect);
+        invalidate();
+    }
+
+    private void startScanLineSweep() {
+        int distance = Math.max(1, viewfinderRect.bottom - 10 - viewfinderRect.top);
+        long duration = distance * ANIMATION_DELAY / Math.max(1, mCenterLineMoveSpeed);
+        int fps = getScanLineFps();
+        // 与屏幕刷新率一致时交给动画框架逐帧移动
+        scanLineView.startSweep(viewfinderRect.top, viewfinderRect.bottom - 10, duration,
+                fps >= getDisplayRefreshRate() ? 0 : fps);
+    }
+
+    /**
+     * @return frame rate for the scan line: the configured one, but no faster than the display
+     */
+    private int getScanLineFps() {
+        int refreshRate = getDisplayRefreshRate();
+        return mCenterLineFps > 0 ? Math.min(mCenterLineFps, refreshRate) : refreshRate;
+    }
+
+    private int getDisplayRefreshRate() {
+        WindowManager windowManager = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+        float refreshRate = windowManager == null ? 0.0f : windowManager.getDefaultDisplay().getRefreshRate();
+        return refreshRate >= 1.0f ? Math.round(refreshRate) : 60;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseStaticLayer();
+        removeCallbacks(layoutScanLineTask);
+        scanLineLayoutPending = false;
+        if (scanLineView != null) {
+            scanLineView.stopSweep();
+        }
+    }
+
+    /**
+     * @return the static layer for the current framing rect, rebuilt if the rect or the view size
+     * changed, or null if the view has no size yet
+     */
+    private Bitmap getStaticLayer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        Bitmap layer = staticLayer;
+        if (layer != null && layer.getWidth() == width && layer.getHeight() == height &&
+                staticLayerRect.equals(viewfinderRect)) {
+            return layer;
+        }
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height) {
+            releaseStaticLayer();
+            try {
+                layer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError oom) {
+                // Fall back to drawing everything on every frame
+                Log.w("info", "--> getStaticLayer() no memory for " + width + "x" + height);
+                return null;
             }
-            // 只刷新扫描框的内容，其他地方不刷新
-            postInvalidateDelayed(ANIMATION_DELAY, viewfinderRect.left, viewfinderRect.top,viewfinderRect.right, viewfinderRect.bottom);
+        }
+        else {
+            layer.eraseColor(0);
+        }
+        drawStaticParts(new Canvas(layer), width, height);
+        staticLayer = layer;
+        staticLayerRect.set(viewfinderRect);
+        return layer;
+    }
+
+    private void releaseStaticLayer() {
+        if (staticLayer != null) {
+            staticLayer.recycle();
+            staticLayer = null;
+        }
+    }
+
+    /**
+     * 样式(颜色、图片等)变化后调用，下次绘制时重建静态图层
+     */
+    public void invalidateStaticLayer() {
+        staticLayerRect.setEmpty();
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        releaseStaticLayer();
+    }
+
+
+    /**
+     * 画出扫描框外面的阴影部分，共四个部分，扫描框的上面到屏幕上面，扫描框的下面到屏幕下面
+     * 扫描框的左边面到屏幕左边，扫描框的右边到屏幕右边
+     */
+    private void drawMask(Canvas canvas, int width, int height) {
+//        paint.setColor(resultBitmap != null ? scanResultColor : aroundViewfinderBgColor);
+        paint.setColor(aroundViewfinderBgColor);
+        canvas.drawRect(0, 0, width, viewfinderRect.top, paint);
+        canvas.drawRect(0, viewfinderRect.top, viewfinderRect.left, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
+        canvas.drawRect(viewfinderRect.right + viewfinderOutlineWidth, viewfinderRect.top, width, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
+        canvas.drawRect(0, viewfinderRect.bottom + viewfinderOutlineWidth, width, height, paint);
+    }
+
+    /**
+     * 绘制不随动画变化的部分：遮罩、四个角、取景框边框及边上的图片
+     */
+    private void drawStaticParts(Canvas canvas, int width, int height) {
+        drawMask(canvas, width, height);
+        // 画扫描框边上的角，总共4个角每个角2小短线即8个部分
+        paint.setColor(cornerColor);
+        if (drawableTop == null || drawableBottom == null) {
+            int mSpelce = viewfinderOutlineWidth + cornerSideLineWidth;
+            int left = viewfinderRect.left - mSpelce;
+            int right = viewfinderRect.right + mSpelce;
+            int top = viewfinderRect.top - mSpelce;
+            int bottom = viewfinderRect.bottom + mSpelce;
+
+            if (isCornerInSide) {
+                mSpelce = viewfinderOutlineWidth;
+                left = viewfinderRect.left + mSpelce;
+                right = viewfinderRect.right - mSpelce;
+                top = viewfinderRect.top + mSpelce;
+                bottom = viewfinderRect.bottom - mSpelce;
+            }
+
+            if (isLeftRightCornerShow) {
+                // 左上角横线
+                canvas.drawRect(left, top, left + cornerSideLineLength, top + cornerSideLineWidth, paint);
+                // 左上角竖线
+                canvas.drawRect(left, top, left + cornerSideLineWidth, top + cornerSideLineLength, paint);
+                // 右上角横线
+                canvas.drawRect(right - cornerSideLineLength, top, right, top + cornerSideLineWidth, paint);
+                // 右上角竖线
+                canvas.drawRect(right - cornerSideLineWidth, top, right, top + cornerSideLineLength, paint);
+            }
+
+            if (isTopBottomCornerShow) {
+                // 左下角横线
+                canvas.drawRect(left, bottom - cornerSideLineWidth, left + cornerSideLineLength, bottom, paint);
+                // 左下角竖线
+                canvas.drawRect(left, bottom - cornerSideLineLength, left + cornerSideLineWidth, bottom, paint);
+                // 右下角横线
+                canvas.drawRect(right - cornerSideLineLength, bottom - cornerSideLineWidth, right, bottom, paint);
+                // 右下角竖线
+                canvas.drawRect(right - cornerSideLineWidth, bottom - cornerSideLineLength, right, bottom, paint);
+            }
+        }
+
+        paint.setColor(viewfinderOutlineColor);
+        // 绘制上面长方形
+        canvas.drawRect(viewfinderRect.left - viewfinderOutlineWidth, viewfinderRect.top - viewfinderOutlineWidth,
+                viewfinderRect.right + viewfinderOutlineWidth, viewfinderRect.top + viewfinderOutlineWidth, paint);
+        // 绘制左边长方形
+        canvas.drawRect(viewfinderRect.left - viewfinderOutlineWidth, viewfinderRect.top - viewfinderOutlineWidth,
+                viewfinderRect.left + viewfinderOutlineWidth, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
+        // 绘制右边长方形
+        canvas.drawRect(viewfinderRect.right - viewfinderOutlineWidth, viewfinderRect.top - viewfinderOutlineWidth,
+                viewfinderRect.right + viewfinderOutlineWidth, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
+        // 绘制下面长方形
+        canvas.drawRect(viewfinderRect.left - viewfinderOutlineWidth, viewfinderRect.bottom - viewfinderOutlineWidth,
+                viewfinderRect.right + viewfinderOutlineWidth, viewfinderRect.bottom + viewfinderOutlineWidth, paint);
+        int drawSize = cornerSideLineWidth + viewfinderOutlineWidth - 1;
+        if (drawableTop != null) {
+            drawableTop.setBounds(viewfinderRect.left - drawSize, viewfinderRect.top
+                    - drawSize, viewfinderRect.right + drawSize, viewfinderRect.top
+                    + drawableTop.getIntrinsicHeight() - drawSize);
+        }
+        if (drawableBottom != null)
+            drawableBottom.setBounds(viewfinderRect.left - drawSize, viewfinderRect.bottom
+                            - drawableBottom.getIntrinsicHeight() + drawSize,
+                    viewfinderRect.right + drawSize, viewfinderRect.bottom + drawSize);
+        if (drawableLeft != null)
+            drawableLeft.setBounds(viewfinderRect.left - drawSize, viewfinderRect.top,
+                    viewfinderRect.left, viewfinderRect.bottom);
+        if (drawableRight != null)
+            drawableRight.setBounds(viewfinderRect.right, viewfinderRect.top, viewfinderRect.right
+                    + cornerSideLineWidth, viewfinderRect.bottom);
+        if (drawableTop != null)
+            drawableTop.draw(canvas);
+        if (drawableBottom != null)
+            drawableBottom.draw(canvas);
+        if (drawableLeft != null)
+            drawableLeft.draw(canvas);
+        if (drawableRight != null)
+            drawableRight.draw(canvas);
+    }
+
+    private void drawPoints(Canvas canvas, float[] points, int count, float radius) {
+        for (int i = 0; i < count; i++) {
+            float x = points[i * 2] * pointScaleX;
+            canvas.drawCircle(pointsMirrored ? viewfinderRect.right - x : viewfinderRect.left + x,
+                    viewfinderRect.top + points[i * 2 + 1] * pointScaleY, radius, paint);
         }
     }
 
@@ -401,8 +686,24 @@ public final class ViewfinderView extends View {
         invalidate();
     }
 
+    /**
+     * Collects a candidate point found while decoding the current frame; called on the decode thread.
+     * The points become visible with {@link #publishPossibleResultPoints()}.
+     */
     public void addPossibleResultPoint(ResultPoint point) {
-        possibleResultPoints.add(point);
+        possibleResultPoints.add(point.getX(), point.getY());
+    }
+
+    /**
+     * Hands the points collected for the frame just decoded to the UI thread; called on the decode
+     * thread once per frame.
+     * 每解码完一帧后调用，将本帧的可能结果点交给UI线程绘制
+     */
+    public void publishPossibleResultPoints() {
+        if (possibleResultPoints.publish() > 0 && scanLineView != null) {
+            // Nothing else redraws the view while the scan line sweeps on its own layer
+            postInvalidate();
+        }
     }
 
     private int mode = 0;// 用于标记模式
@@ -16,25 +16,34 @@
 
 package com.google.zxing.client.android.camera;
 
-import android.annotation.SuppressLint;
-import android.content.Context;
-import android.content.SharedPreferences;
+import android.graphics.Rect;
 import android.hardware.Camera;
-import android.os.AsyncTask;
-import android.preference.PreferenceManager;
 import android.util.Log;
 
-import com.google.zxing.client.android.PreferencesActivity;
+import com.google.zxing.client.android.ScannerExecutors;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Keeps the camera in focus for cameras which only support one-shot auto focus. Rather than
+ * refocusing on a blind timer, each decoded frame reports the sharpness of the framing rect: focus is
+ * triggered when it drops noticeably below the best seen since the last focus, or when decoding keeps
+ * failing, and is skipped altogether while frames stay sharp. A slow timer on the shared
+ * {@link ScannerExecutors#scheduler()} is kept only as a fallback for when no frames are reported.
+ */
 final class AutoFocusManager implements Camera.AutoFocusCallback {
 
   private static final String TAG = AutoFocusManager.class.getSimpleName();
 
   private static final long AUTO_FOCUS_INTERVAL_MS = 2000L;
+  private static final long MIN_REFOCUS_INTERVAL_MS = 1000L;
+  private static final float SHARPNESS_DROP_RATIO = 0.7f;
+  private static final int FAILED_DECODES_BEFORE_REFOCUS = 12;
+  private static final int SHARPNESS_SAMPLE_STEP = 4;
   private static final Collection<String> FOCUS_MODES_CALLING_AF;
   static {
     FOCUS_MODES_CALLING_AF = new ArrayList<>(2);
@@ -46,14 +55,31 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
   private boolean focusing;
   private final boolean useAutoFocus;
   private final Camera camera;
-  private AsyncTask<?,?,?> outstandingTask;
-  AutoFocusManager(Context context, Camera camera) {
+  private ScheduledFuture<?> outstandingTask;
+  /**
+   * Best sharpness seen since the last focus completed, or negative if none measured yet.
+   */
+  private float referenceSharpness = -1.0f;
+  private int failedDecodes;
+  private long lastFocusTime;
+  private long lastSharpFrameTime;
+
+  private final Runnable fallbackTask = new Runnable() {
+    @Override
+    public void run() {
+      onFallbackTimer();
+    }
+  };
+  private final Runnable focusNowTask = new Runnable() {
+    @Override
+    public void run() {
+      start();
+    }
+  };
+
+  AutoFocusManager(Camera camera, String currentFocusMode, boolean autoFocusEnabled) {
     this.camera = camera;
-    SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
-    String currentFocusMode = camera.getParameters().getFocusMode();
-    useAutoFocus =
-        sharedPrefs.getBoolean(PreferencesActivity.KEY_AUTO_FOCUS, true) &&
-        FOCUS_MODES_CALLING_AF.contains(currentFocusMode);
+    useAutoFocus = autoFocusEnabled && FOCUS_MODES_CALLING_AF.contains(currentFocusMode);
     Log.i(TAG, "Current focus mode '" + currentFocusMode + "'; use auto focus? " + useAutoFocus);
     start();
   }
@@ -61,16 +87,66 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
   @Override
   public synchronized void onAutoFocus(boolean success, Camera theCamera) {
     focusing = false;
-    autoFocusAgainLater();
+    lastFocusTime = System.currentTimeMillis();
+    // The first frame after focusing becomes the new reference
+    referenceSharpness = -1.0f;
+    failedDecodes = 0;
+    autoFocusAgainLater(AUTO_FOCUS_INTERVAL_MS);
+  }
+
+  /**
+   * Reports a frame which has just been run through the decoder. Called on the decode thread.
+   *
+   * @param yuvData the frame as the camera delivered it, not rotated
+   * @param dataWidth width of that frame
+   * @param roi the decode region within that frame
+   * @param decoded whether a barcode was found in it
+   */
+  void onFrameDecoded(byte[] yuvData, int dataWidth, Rect roi, boolean decoded) {
+    if (!useAutoFocus) {
+      return;
+    }
+    float sharpness = FrameSharpness.measure(yuvData, dataWidth, roi.left, roi.top, roi.width(), roi.height(),
+                                             SHARPNESS_SAMPLE_STEP);
+    synchronized (this) {
+      if (stopped || focusing) {
+        return;
+      }
+      failedDecodes = decoded ? 0 : failedDecodes + 1;
+      long now = System.currentTimeMillis();
+      if (referenceSharpness < 0.0f || sharpness > referenceSharpness) {
+        referenceSharpness = sharpness;
+      }
+      boolean blurred = sharpness < referenceSharpness * SHARPNESS_DROP_RATIO;
+      if (!blurred) {
+        lastSharpFrameTime = now;
+      }
+      if ((blurred || failedDecodes >= FAILED_DECODES_BEFORE_REFOCUS) &&
+          now - lastFocusTime >= MIN_REFOCUS_INTERVAL_MS) {
+        Log.d(TAG, "Refocusing: sharpness " + sharpness + " / " + referenceSharpness + ", failed decodes " +
+            failedDecodes);
+        cancelOutstandingTask();
+        autoFocusAgainLater(0L);
+      }
+    }
   }
 
-  @SuppressLint("NewApi")
-  private synchronized void autoFocusAgainLater() {
+  private synchronized void onFallbackTimer() {
+    outstandingTask = null;
+    long sinceSharp = System.currentTimeMillis() - lastSharpFrameTime;
+    if (sinceSharp < AUTO_FOCUS_INTERVAL_MS) {
+      // Frames are coming in sharp, so there is nothing to fix; look again later
+      autoFocusAgainLater(AUTO_FOCUS_INTERVAL_MS - sinceSharp);
+    } else {
+      start();
+    }
+  }
+
+  private synchronized void autoFocusAgainLater(long delayMs) {
     if (!stopped && outstandingTask == null) {
-      AutoFocusTask newTask = new AutoFocusTask();
       try {
-        newTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-        outstandingTask = newTask;
+        outstandingTask = ScannerExecutors.scheduler().schedule(delayMs > 0L ? fallbackTask : focusNowTask,
+                                                                delayMs, TimeUnit.MILLISECONDS);
       } catch (RejectedExecutionException ree) {
         Log.w(TAG, "Could not request auto focus", ree);
       }
@@ -88,7 +164,7 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
           // Have heard RuntimeException reported in Android 4.0.x+; continue?
           Log.w(TAG, "Unexpected exception while focusing", re);
           // Try again later to keep cycle going
-          autoFocusAgainLater();
+          autoFocusAgainLater(AUTO_FOCUS_INTERVAL_MS);
         }
       }
     }
@@ -96,9 +172,7 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
 
   private synchronized void cancelOutstandingTask() {
     if (outstandingTask != null) {
-      if (outstandingTask.getStatus() != AsyncTask.Status.FINISHED) {
-        outstandingTask.cancel(true);
-      }
+      outstandingTask.cancel(false);
       outstandingTask = null;
     }
   }
@@ -117,17 +191,4 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
     }
   }
 
-  private final class AutoFocusTask extends AsyncTask<Object,Object,Object> {
-    @Override
-    protected Object doInBackground(Object... voids) {
-      try {
-        Thread.sleep(AUTO_FOCUS_INTERVAL_MS);
-      } catch (InterruptedException e) {
-        // continue
-      }
-      start();
-      return null;
-    }
-  }
-
 }
@@ -0,0 +1,117 @@
+package com.google.zxing.client.android.camera;
+
+import android.graphics.Rect;
+import android.util.Log;
+
+/**
+ * Turns the torch on and off from what the camera actually sees inside the framing rect, rather than
+ * from the ambient light sensor which often sits behind the phone case. A sparse luminance histogram
+ * of each decoded frame gives the median brightness and the share of blown-out pixels; the torch goes
+ * on after a run of dark frames. With the torch on, auto exposure pulls the median back to mid grey
+ * however bright the room, so it goes off only after a run of frames too bright for exposure to pull
+ * down, a median well above mid grey, or with much of the rect glaring. The torch is never switched
+ * off just to look, which would flicker in the middle of a scan. Switches are rate limited and frames
+ * are ignored while auto exposure settles after a switch.
+ * 依据取景框内图像亮度自动开关闪光灯，无需注册光线传感器
+ */
+final class AutoTorchController {
+
+  private static final String TAG = AutoTorchController.class.getSimpleName();
+
+  private static final int SAMPLE_STEP = 8;
+  private static final int BIN_SHIFT = 3; // 32 bins of 8 levels
+  private static final int DARK_MEDIAN = 48;
+  private static final int SATURATED_LEVEL = 248;
+  private static final float GLARE_FRACTION = 0.25f;
+  private static final int FRAMES_TO_SWITCH = 8;
+  private static final long MIN_SWITCH_INTERVAL_MS = 3000L;
+  private static final long EXPOSURE_SETTLE_MS = 800L;
+  /**
+   * Median with the torch on above which the scene is lit well enough without it; far enough above
+   * both {@link #DARK_MEDIAN} and the mid grey auto exposure aims for not to switch back and forth.
+   */
+  private static final int BRIGHT_MEDIAN = 176;
+
+  private final int[] histogram = new int[256 >> BIN_SHIFT];
+  private boolean torchOn;
+  private int votes;
+  private long lastSwitchTime;
+
+  AutoTorchController(boolean torchOn) {
+    this.torchOn = torchOn;
+  }
+
+  /**
+   * Tells the controller the torch was switched, by it or by the user.
+   */
+  synchronized void onTorchChanged(boolean newSetting) {
+    if (torchOn != newSetting) {
+      torchOn = newSetting;
+      votes = 0;
+      lastSwitchTime = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Called on the decode thread for each decoded frame.
+   *
+   * @param yuvData the frame, only the leading Y plane is read
+   * @param dataWidth width of the frame
+   * @param roi region to measure
+   * @return the torch setting to switch to, or null to leave it as it is
+   */
+  synchronized Boolean onFrame(byte[] yuvData, int dataWidth, Rect roi) {
+    long now = System.currentTimeMillis();
+    if (now - lastSwitchTime < EXPOSURE_SETTLE_MS) {
+      return null;
+    }
+
+    int[] histogram = this.histogram;
+    for (int i = 0; i < histogram.length; i++) {
+      histogram[i] = 0;
+    }
+    int count = 0;
+    int saturated = 0;
+    for (int y = roi.top; y < roi.bottom; y += SAMPLE_STEP) {
+      int offset = y * dataWidth;
+      for (int x = roi.left; x < roi.right; x += SAMPLE_STEP) {
+        int luminance = yuvData[offset + x] & 0xff;
+        histogram[luminance >> BIN_SHIFT]++;
+        if (luminance >= SATURATED_LEVEL) {
+          saturated++;
+        }
+        count++;
+      }
+    }
+    if (count == 0) {
+      return null;
+    }
+    int median = median(histogram, count);
+
+    boolean wantSwitch;
+    if (torchOn) {
+      wantSwitch = median >= BRIGHT_MEDIAN || saturated > count * GLARE_FRACTION;
+    } else {
+      wantSwitch = median <= DARK_MEDIAN;
+    }
+    votes = wantSwitch ? votes + 1 : 0;
+    if (votes < FRAMES_TO_SWITCH || now - lastSwitchTime < MIN_SWITCH_INTERVAL_MS) {
+      return null;
+    }
+    Log.i(TAG, "Median luminance " + median + ", saturated " + saturated + '/' + count + ": torch " + !torchOn);
+    return !torchOn;
+  }
+
+  private static int median(int[] histogram, int count) {
+    int half = count / 2;
+    int seen = 0;
+    for (int bin = 0; bin < histogram.length; bin++) {
+      seen += histogram[bin];
+      if (seen > half) {
+        return (bin << BIN_SHIFT) + (1 << (BIN_SHIFT - 1));
+      }
+    }
+    return 255;
+  }
+
+}
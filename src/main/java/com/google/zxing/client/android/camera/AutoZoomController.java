@@ -0,0 +1,178 @@
+package com.google.zxing.client.android.camera;
+
+import android.util.Log;
+
+/**
+ * Zooms in when a code is seen but too small to decode. QR finder patterns reported while decoding
+ * carry an estimate of the module size in the decoded frame; once a few frames in a row fail with
+ * modules below {@link #SMALL_MODULE_SIZE} pixels, the controller asks for enough magnification to
+ * bring them to {@link #TARGET_MODULE_SIZE}, at most doubling it per step. Where the code was seen
+ * is kept so the decode region can follow it after zooming. With nothing seen for a while the zoom
+ * goes back to where the user left it.
+ * 远距离扫描时依据候选定位点估算码的模块大小，自动放大摄像头
+ */
+final class AutoZoomController {
+
+  private static final String TAG = AutoZoomController.class.getSimpleName();
+
+  static final int NO_CHANGE = -1;
+
+  /**
+   * Module size in pixels below which decoding tends to fail.
+   */
+  private static final float SMALL_MODULE_SIZE = 2.5f;
+  private static final float TARGET_MODULE_SIZE = 4.0f;
+  private static final float MAX_STEP = 2.0f;
+  private static final int SMALL_FRAMES_TO_ZOOM = 3;
+  /**
+   * Frames right after a zoom change may still show the old zoom, and focus has to catch up.
+   */
+  private static final long SETTLE_MS = 500L;
+  private static final long RETURN_AFTER_MS = 4000L;
+
+  // Points of the frame being decoded
+  private float sumX;
+  private float sumY;
+  private int points;
+  private float sumModuleSize;
+  private int moduleSizes;
+
+  private int baseTenZoom;
+  private int tenZoom;
+  private int smallFrames;
+  private long lastChangeTime;
+  private long lastSeenTime;
+  private float codeX = -1.0f;
+  private float codeY = -1.0f;
+  private float lastZoomFactor = 1.0f;
+
+  /**
+   * @param tenZoom zoom the camera is at now, times 10; also the zoom to return to
+   */
+  AutoZoomController(int tenZoom) {
+    baseTenZoom = tenZoom;
+    this.tenZoom = tenZoom;
+  }
+
+  /**
+   * Reports a candidate point of the frame being decoded. Called on the decode thread.
+   *
+   * @param x x within the decode region
+   * @param y y within the decode region
+   * @param moduleSize estimated module size in pixels, or 0 if unknown
+   */
+  synchronized void addPoint(float x, float y, float moduleSize) {
+    sumX += x;
+    sumY += y;
+    points++;
+    if (moduleSize > 0.0f) {
+      sumModuleSize += moduleSize;
+      moduleSizes++;
+    }
+  }
+
+  /**
+   * The user zoomed by hand; that becomes the zoom to work from and to return to.
+   */
+  synchronized void onManualZoom(int newTenZoom) {
+    baseTenZoom = newTenZoom;
+    tenZoom = newTenZoom;
+    smallFrames = 0;
+    lastChangeTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Called on the decode thread once a frame has been decoded, with the points reported meanwhile.
+   *
+   * @param decoded whether a barcode was found
+   * @param snapshot current camera parameters
+   * @return zoom to switch to, times 10, or {@link #NO_CHANGE}
+   */
+  synchronized int onFrame(boolean decoded, CameraParameterSnapshot snapshot) {
+    int framePoints = points;
+    float frameX = framePoints > 0 ? sumX / framePoints : 0.0f;
+    float frameY = framePoints > 0 ? sumY / framePoints : 0.0f;
+    float moduleSize = moduleSizes > 0 ? sumModuleSize / moduleSizes : 0.0f;
+    sumX = 0.0f;
+    sumY = 0.0f;
+    points = 0;
+    sumModuleSize = 0.0f;
+    moduleSizes = 0;
+
+    long now = System.currentTimeMillis();
+    if (decoded || framePoints > 0) {
+      lastSeenTime = now;
+    }
+    if (framePoints > 0) {
+      codeX = frameX;
+      codeY = frameY;
+    }
+    if (decoded) {
+      smallFrames = 0;
+      return NO_CHANGE;
+    }
+    if (now - lastChangeTime < SETTLE_MS) {
+      return NO_CHANGE;
+    }
+    if (framePoints == 0) {
+      if (tenZoom != baseTenZoom && now - lastSeenTime >= RETURN_AFTER_MS) {
+        Log.i(TAG, "Nothing seen for " + (now - lastSeenTime) + " ms, back to zoom " + baseTenZoom);
+        codeX = -1.0f;
+        codeY = -1.0f;
+        return changeTo(baseTenZoom, snapshot, now);
+      }
+      return NO_CHANGE;
+    }
+    if (moduleSize <= 0.0f || moduleSize >= SMALL_MODULE_SIZE) {
+      smallFrames = 0;
+      return NO_CHANGE;
+    }
+    if (++smallFrames < SMALL_FRAMES_TO_ZOOM) {
+      return NO_CHANGE;
+    }
+    smallFrames = 0;
+    float step = Math.min(MAX_STEP, TARGET_MODULE_SIZE / moduleSize);
+    int newTenZoom = snapshot.findTenZoom(snapshot.getMagnification(tenZoom) * step);
+    if (newTenZoom <= tenZoom) {
+      return NO_CHANGE; // As far as the camera goes
+    }
+    Log.i(TAG, "Module size " + moduleSize + " px, zoom " + tenZoom + " -> " + newTenZoom);
+    return changeTo(newTenZoom, snapshot, now);
+  }
+
+  private int changeTo(int newTenZoom, CameraParameterSnapshot snapshot, long now) {
+    lastZoomFactor = snapshot.getMagnification(newTenZoom) / snapshot.getMagnification(tenZoom);
+    tenZoom = newTenZoom;
+    lastChangeTime = now;
+    return newTenZoom;
+  }
+
+  /**
+   * @return how much the last change magnified the image, below 1 when zooming out
+   */
+  synchronized float getLastZoomFactor() {
+    return lastZoomFactor;
+  }
+
+  /**
+   * @return whether the zoom is off from where the user left it
+   */
+  synchronized boolean isZoomedIn() {
+    return tenZoom != baseTenZoom;
+  }
+
+  /**
+   * @return x of the code within the decode region it was last seen in, or -1 if unknown
+   */
+  synchronized float getCodeX() {
+    return codeX;
+  }
+
+  /**
+   * @return y of the code within the decode region it was last seen in, or -1 if unknown
+   */
+  synchronized float getCodeY() {
+    return codeY;
+  }
+
+}
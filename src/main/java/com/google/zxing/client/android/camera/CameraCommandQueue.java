@@ -0,0 +1,228 @@
+package com.google.zxing.client.android.camera;
+
+import android.annotation.TargetApi;
+import android.hardware.Camera;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies parameter changes (zoom, torch, preview FPS range) on a camera
+ * thread of its own, so neither the UI nor the decode thread ever waits for the camera HAL. Commands
+ * only record the desired value; whatever piles up within one frame interval goes out in a single
+ * {@code setParameters()}, so dragging the zoom bar costs one camera call per frame rather than one
+ * per touch event. The queue keeps the {@code Camera.Parameters} it last applied instead of fetching
+ * them again, and publishes a {@link CameraParameterSnapshot} after each change for readers.
+ * <p>
+ * All parameter changes made while the camera is open have to go through here, or the cached
+ * parameters would overwrite them.
+ * 摄像头参数命令队列：在独立线程中合并执行缩放、闪光灯、帧率等参数修改
+ */
+final class CameraCommandQueue {
+
+  private static final String TAG = CameraCommandQueue.class.getSimpleName();
+
+  /**
+   * About one frame at 30fps.
+   */
+  private static final long MIN_APPLY_INTERVAL_MS = 33L;
+  private static final int NONE = -1;
+  /**
+   * Longest {@link #shutdown()} waits for a change in progress before the camera may be released.
+   */
+  private static final long SHUTDOWN_TIMEOUT_MS = 500L;
+
+  private final Camera camera;
+  private final CameraConfigurationManager configManager;
+  private final HandlerThread thread;
+  private final Handler handler;
+  private final Runnable applyTask;
+  private volatile CameraParameterSnapshot snapshot;
+
+  // Pending commands, guarded by this
+  private int pendingTenZoom = NONE;
+  private Boolean pendingTorch;
+  private int[] pendingFpsRange;
+  private final List<Runnable> pendingCallbacks = new ArrayList<>(2);
+  private boolean applyScheduled;
+  private long lastApplyTime;
+  private boolean closed;
+  private int[] rejectedFpsRange;
+
+  // Camera thread only
+  private Camera.Parameters parameters;
+
+  /**
+   * Must be created once the camera has been configured; reads the parameters once on the calling thread.
+   */
+  CameraCommandQueue(Camera camera, CameraConfigurationManager configManager) {
+    this.camera = camera;
+    this.configManager = configManager;
+    parameters = camera.getParameters();
+    snapshot = CameraParameterSnapshot.of(parameters, configManager);
+    thread = new HandlerThread("CameraCommands");
+    thread.start();
+    handler = new Handler(thread.getLooper());
+    applyTask = new Runnable() {
+      @Override
+      public void run() {
+        applyPending();
+      }
+    };
+  }
+
+  /**
+   * @return the parameters as last applied; never blocks
+   */
+  CameraParameterSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * @return the torch setting last asked for, applied or not
+   */
+  synchronized boolean isTorchRequested() {
+    return pendingTorch != null ? pendingTorch : snapshot.isTorchOn();
+  }
+
+  /**
+   * @param tenZoom desired zoom times 10
+   */
+  synchronized void setZoom(int tenZoom) {
+    pendingTenZoom = tenZoom;
+    scheduleApply();
+  }
+
+  /**
+   * @param afterApplied run on the camera thread once the torch has been switched, may be null
+   */
+  synchronized void setTorch(boolean on, Runnable afterApplied) {
+    pendingTorch = on;
+    if (afterApplied != null) {
+      pendingCallbacks.add(afterApplied);
+    }
+    scheduleApply();
+  }
+
+  /**
+   * @param range fps * 1000, min then max
+   */
+  synchronized void setPreviewFpsRange(int[] range) {
+    pendingFpsRange = range.clone();
+    scheduleApply();
+  }
+
+  /**
+   * @return an FPS range the camera refused since the last call, or null; the camera kept the one in
+   * {@link #getSnapshot()}
+   */
+  synchronized int[] takeRejectedFpsRange() {
+    int[] range = rejectedFpsRange;
+    rejectedFpsRange = null;
+    return range;
+  }
+
+  /**
+   * Drops pending commands and stops the camera thread, waiting a while for a change in progress so
+   * that it doesn't race with the camera being released.
+   */
+  void shutdown() {
+    synchronized (this) {
+      closed = true;
+      pendingCallbacks.clear();
+    }
+    handler.removeCallbacks(applyTask);
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+      quitSafely();
+    } else {
+      thread.quit();
+    }
+    try {
+      thread.join(SHUTDOWN_TIMEOUT_MS);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    if (thread.isAlive()) {
+      Log.w(TAG, "Camera thread still busy after " + SHUTDOWN_TIMEOUT_MS + " ms");
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+  private void quitSafely() {
+    thread.quitSafely();
+  }
+
+  private void scheduleApply() {
+    if (closed || applyScheduled) {
+      return;
+    }
+    applyScheduled = true;
+    long wait = lastApplyTime + MIN_APPLY_INTERVAL_MS - SystemClock.uptimeMillis();
+    handler.postDelayed(applyTask, Math.max(0L, wait));
+  }
+
+  private void applyPending() {
+    int tenZoom;
+    Boolean torch;
+    int[] fpsRange;
+    Runnable[] callbacks;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      tenZoom = pendingTenZoom;
+      torch = pendingTorch;
+      fpsRange = pendingFpsRange;
+      callbacks = pendingCallbacks.toArray(new Runnable[pendingCallbacks.size()]);
+      pendingTenZoom = NONE;
+      pendingTorch = null;
+      pendingFpsRange = null;
+      pendingCallbacks.clear();
+      applyScheduled = false;
+      lastApplyTime = SystemClock.uptimeMillis();
+    }
+
+    Camera.Parameters theParameters = parameters;
+    if (tenZoom != NONE) {
+      configManager.setZoom(theParameters, tenZoom);
+    }
+    if (torch != null) {
+      configManager.applyTorch(theParameters, torch);
+    }
+    if (fpsRange != null) {
+      theParameters.setPreviewFpsRange(fpsRange[Camera.Parameters.PREVIEW_FPS_MIN_INDEX],
+          fpsRange[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]);
+    }
+    try {
+      camera.setParameters(theParameters);
+    } catch (RuntimeException re) {
+      // Rejected, or the camera was released meanwhile; start over from what the driver has
+      Log.w(TAG, "Camera rejected parameters", re);
+      try {
+        parameters = camera.getParameters();
+      } catch (RuntimeException re2) {
+        return;
+      }
+    }
+    CameraParameterSnapshot newSnapshot = CameraParameterSnapshot.of(parameters, configManager);
+    snapshot = newSnapshot;
+    synchronized (this) {
+      if (fpsRange != null && !Arrays.equals(fpsRange, newSnapshot.getPreviewFpsRange())) {
+        rejectedFpsRange = fpsRange;
+      }
+      if (closed) {
+        return;
+      }
+    }
+    for (Runnable callback : callbacks) {
+      callback.run();
+    }
+  }
+
+}
@@ -18,19 +18,19 @@ package com.google.zxing.client.android.camera;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.hardware.Camera;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.Display;
 import android.view.Surface;
 import android.view.WindowManager;
 
-import com.google.zxing.client.android.PreferencesActivity;
+import com.google.zxing.client.android.ScannerConfig;
 import com.google.zxing.client.android.camera.open.CameraFacing;
 import com.google.zxing.client.android.camera.open.OpenCamera;
 
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -47,6 +47,10 @@ final class CameraConfigurationManager {
    * 摄像头需要显示的角度
    */
   private int cwRotationFromDisplayToCamera;
+  /**
+   * 前置摄像头的预览是镜像显示的
+   */
+  private boolean previewMirrored;
   /**
    * 屏幕分辨率
    */
@@ -64,12 +68,24 @@ final class CameraConfigurationManager {
    * 一般和屏幕分辨率一致
    */
   private Point previewSizeOnScreen;
+  /**
+   * 预览尺寸的选择结果，用于诊断
+   */
+  private PreviewSizeSelection previewSizeSelection;
   private int previewFormat;
   private String previewFormatString;
+  /**
+   * 扫描配置，替代直接读取SharedPreferences
+   */
+  private volatile ScannerConfig scannerConfig = ScannerConfig.DEFAULT;
   CameraConfigurationManager(Context context) {
     this.context = context;
   }
 
+  void setScannerConfig(ScannerConfig scannerConfig) {
+    this.scannerConfig = scannerConfig;
+  }
+
   /**
    * Reads, one time, values from the camera that are needed by the app.
    */
@@ -132,7 +148,8 @@ final class CameraConfigurationManager {
     cwRotationFromDisplayToCamera =
         (360 + cwRotationFromNaturalToCamera - cwRotationFromNaturalToDisplay) % 360;
     Log.i(TAG, "Final display orientation: " + cwRotationFromDisplayToCamera);
-    if (camera.getFacing() == CameraFacing.FRONT) {
+    previewMirrored = camera.getFacing() == CameraFacing.FRONT;
+    if (previewMirrored) {
       Log.i(TAG, "Compensating rotation for front camera");
       cwNeededRotation = (360 - cwRotationFromDisplayToCamera) % 360;
     } else {
@@ -141,8 +158,21 @@ final class CameraConfigurationManager {
     Log.i(TAG, "Clockwise rotation from display to camera: " + cwNeededRotation);
 
     screenResolution = getDisplaySize(display);
-    boolean isScreenPortrait = screenResolution.x < screenResolution.y;
     Log.i(TAG, "Screen resolution in current orientation: " + screenResolution);
+  }
+
+  /**
+   * Picks, one time, the preview size to use. Must be called after {@link #initFromCameraParameters(OpenCamera)}
+   * since the framing rect depends on the screen resolution read there.
+   * 依据取景框大小以及解码代价模型选择预览尺寸
+   *
+   * @param camera the opened camera
+   * @param framingRect framing rect in screen coordinates, may be null
+   * @param policy cost model for the preview size; null keeps the old "largest suitable size" behavior
+   */
+  void initPreviewSize(OpenCamera camera, Rect framingRect, PreviewSizePolicy policy) {
+    Camera.Parameters parameters = camera.getCamera().getParameters();
+    boolean isScreenPortrait = screenResolution.x < screenResolution.y;
 
     //changed here
     Point screenResolutionForCamera = new Point(screenResolution.x, screenResolution.y);
@@ -152,7 +182,14 @@ final class CameraConfigurationManager {
       screenResolutionForCamera.x = screenResolution.y;
       screenResolutionForCamera.y = screenResolution.x;
     }
-    cameraResolution = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolutionForCamera);
+    if (policy == null) {
+      cameraResolution = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolutionForCamera);
+      previewSizeSelection = new PreviewSizeSelection(cameraResolution, 0.0f, 0, "largest suitable size, no cost policy");
+    } else {
+      previewSizeSelection =
+          CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolutionForCamera, framingRect, policy);
+      cameraResolution = previewSizeSelection.getSize();
+    }
     Log.i(TAG, "Camera resolution: " + cameraResolution);//eg.Point(2560, 1440)
     //changed here:因为调用 findBestPreviewSizeValue方法参数一致，所以得到的值也会一致
 //    bestPreviewSize = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolution);
@@ -176,8 +213,10 @@ final class CameraConfigurationManager {
    * 设置所期望的摄像头参数
    * @param camera
    * @param safeMode
+   * @param decodeRoi region being decoded, in the rotated frame handed to the decoder; focus and
+   *                  metering areas follow it. May be null
    */
-  void setDesiredCameraParameters(OpenCamera camera, boolean safeMode) {
+  void setDesiredCameraParameters(OpenCamera camera, boolean safeMode, Rect decodeRoi) {
 
     Camera theCamera = camera.getCamera();
     Camera.Parameters parameters = theCamera.getParameters();
@@ -193,29 +232,30 @@ final class CameraConfigurationManager {
       Log.w(TAG, "In camera config safe mode -- most settings will not be honored");
     }
 
-    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+    ScannerConfig config = scannerConfig;
 
-    initializeTorch(parameters, prefs, safeMode);
+    initializeTorch(parameters, config, safeMode);
 
     CameraConfigurationUtils.setFocus(
         parameters,
-        prefs.getBoolean(PreferencesActivity.KEY_AUTO_FOCUS, true),
-        prefs.getBoolean(PreferencesActivity.KEY_DISABLE_CONTINUOUS_FOCUS, true),
+        config.isAutoFocus(),
+        config.isDisableContinuousFocus(),
         safeMode);
 
     if (!safeMode) {
-      if (prefs.getBoolean(PreferencesActivity.KEY_INVERT_SCAN, false)) {
+      if (config.isInvertScan()) {
         CameraConfigurationUtils.setInvertColor(parameters);
       }
 
-      if (!prefs.getBoolean(PreferencesActivity.KEY_DISABLE_BARCODE_SCENE_MODE, true)) {
+      if (!config.isDisableBarcodeSceneMode()) {
         CameraConfigurationUtils.setBarcodeSceneMode(parameters);
       }
 
-      if (!prefs.getBoolean(PreferencesActivity.KEY_DISABLE_METERING, true)) {
+      if (!config.isDisableMetering()) {
         CameraConfigurationUtils.setVideoStabilization(parameters);
-        CameraConfigurationUtils.setFocusArea(parameters);
-        CameraConfigurationUtils.setMetering(parameters);
+        List<Camera.Area> decodeArea = CameraConfigurationUtils.buildArea(toCameraFrame(decodeRoi), cameraResolution);
+        CameraConfigurationUtils.setFocusArea(parameters, decodeArea);
+        CameraConfigurationUtils.setMetering(parameters, decodeArea);
       }
 
     }
@@ -243,6 +283,43 @@ final class CameraConfigurationManager {
 //    theCamera.setDisplayOrientation(90);
   }
 
+  /**
+   * Undoes the {@link #getCWNeededRotation()} the decoder views each frame with, mapping a rect in the
+   * rotated frame back into the camera's own preview frame.
+   */
+  Rect toCameraFrame(Rect rotatedRect) {
+    if (rotatedRect == null || cameraResolution == null) {
+      return null;
+    }
+    int cameraWidth = cameraResolution.x;
+    int cameraHeight = cameraResolution.y;
+    switch (cwNeededRotation) {
+      case 90:
+        return new Rect(rotatedRect.top, cameraHeight - rotatedRect.right,
+                        rotatedRect.bottom, cameraHeight - rotatedRect.left);
+      case 180:
+        return new Rect(cameraWidth - rotatedRect.right, cameraHeight - rotatedRect.bottom,
+                        cameraWidth - rotatedRect.left, cameraHeight - rotatedRect.top);
+      case 270:
+        return new Rect(cameraWidth - rotatedRect.bottom, rotatedRect.left,
+                        cameraWidth - rotatedRect.top, rotatedRect.right);
+      default:
+        return new Rect(rotatedRect);
+    }
+  }
+
+  /**
+   * @return size of the preview frame once turned by {@link #getCWNeededRotation()}, i.e. as the decoder
+   *         sees it; null before the preview size is chosen
+   */
+  Point getRotatedResolution() {
+    if (cameraResolution == null) {
+      return null;
+    }
+    return cwNeededRotation % 180 == 0 ? new Point(cameraResolution.x, cameraResolution.y) :
+        new Point(cameraResolution.y, cameraResolution.x);
+  }
+
   Point getBestPreviewSize() {
     return bestPreviewSize;
   }
@@ -251,6 +328,13 @@ final class CameraConfigurationManager {
     return previewSizeOnScreen;
   }
 
+  /**
+   * @return the preview size chosen by {@link #initPreviewSize(OpenCamera, Rect, PreviewSizePolicy)} and why
+   */
+  PreviewSizeSelection getPreviewSizeSelection() {
+    return previewSizeSelection;
+  }
+
   Point getCameraResolution() {
     return cameraResolution;
   }
@@ -263,34 +347,32 @@ final class CameraConfigurationManager {
     return cwNeededRotation;
   }
 
-  boolean getTorchState(Camera camera) {
-    if (camera != null) {
-      Camera.Parameters parameters = camera.getParameters();
-      if (parameters != null) {
-        String flashMode = parameters.getFlashMode();
-        return flashMode != null &&
-            (Camera.Parameters.FLASH_MODE_ON.equals(flashMode) ||
-             Camera.Parameters.FLASH_MODE_TORCH.equals(flashMode));
-      }
-    }
-    return false;
+  /**
+   * @return whether the preview is shown mirrored, as it is for a front camera
+   */
+  boolean isPreviewMirrored() {
+    return previewMirrored;
   }
 
-  void setTorch(Camera camera, boolean newSetting) {
-    Camera.Parameters parameters = camera.getParameters();
+  static boolean isTorchOn(Camera.Parameters parameters) {
+    String flashMode = parameters.getFlashMode();
+    return flashMode != null &&
+        (Camera.Parameters.FLASH_MODE_ON.equals(flashMode) ||
+         Camera.Parameters.FLASH_MODE_TORCH.equals(flashMode));
+  }
+
+  void applyTorch(Camera.Parameters parameters, boolean newSetting) {
     doSetTorch(parameters, newSetting, false);
-    camera.setParameters(parameters);
   }
 
-  private void initializeTorch(Camera.Parameters parameters, SharedPreferences prefs, boolean safeMode) {
-    boolean currentSetting = FrontLightMode.readPref(prefs) == FrontLightMode.ON;
+  private void initializeTorch(Camera.Parameters parameters, ScannerConfig config, boolean safeMode) {
+    boolean currentSetting = config.getFrontLightMode() == FrontLightMode.ON;
     doSetTorch(parameters, currentSetting, safeMode);
   }
 
   private void doSetTorch(Camera.Parameters parameters, boolean newSetting, boolean safeMode) {
     CameraConfigurationUtils.setTorch(parameters, newSetting);
-    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-    if (!safeMode && !prefs.getBoolean(PreferencesActivity.KEY_DISABLE_EXPOSURE, true)) {
+    if (!safeMode && !scannerConfig.isDisableExposure()) {
       CameraConfigurationUtils.setBestExposure(parameters, newSetting);
     }
   }
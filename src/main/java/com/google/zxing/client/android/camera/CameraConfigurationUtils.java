@@ -169,22 +169,34 @@ public final class CameraConfigurationUtils {
   }
 
   public static void setFocusArea(Camera.Parameters parameters) {
+    setFocusArea(parameters, buildMiddleArea(AREA_PER_1000));
+  }
+
+  /**
+   * @param areas focus areas in driver coordinates, see {@link #buildArea(Rect, Point)}
+   */
+  public static void setFocusArea(Camera.Parameters parameters, List<Camera.Area> areas) {
     if (parameters.getMaxNumFocusAreas() > 0) {
       Log.i(TAG, "Old focus areas: " + toString(parameters.getFocusAreas()));
-      List<Camera.Area> middleArea = buildMiddleArea(AREA_PER_1000);
-      Log.i(TAG, "Setting focus area to : " + toString(middleArea));
-      parameters.setFocusAreas(middleArea);
+      Log.i(TAG, "Setting focus area to : " + toString(areas));
+      parameters.setFocusAreas(areas);
     } else {
       Log.i(TAG, "Device does not support focus areas");
     }
   }
 
   public static void setMetering(Camera.Parameters parameters) {
+    setMetering(parameters, buildMiddleArea(AREA_PER_1000));
+  }
+
+  /**
+   * @param areas metering areas in driver coordinates, see {@link #buildArea(Rect, Point)}
+   */
+  public static void setMetering(Camera.Parameters parameters, List<Camera.Area> areas) {
     if (parameters.getMaxNumMeteringAreas() > 0) {
       Log.i(TAG, "Old metering areas: " + parameters.getMeteringAreas());
-      List<Camera.Area> middleArea = buildMiddleArea(AREA_PER_1000);
-      Log.i(TAG, "Setting metering area to : " + toString(middleArea));
-      parameters.setMeteringAreas(middleArea);
+      Log.i(TAG, "Setting metering area to : " + toString(areas));
+      parameters.setMeteringAreas(areas);
     } else {
       Log.i(TAG, "Device does not support metering areas");
     }
@@ -195,6 +207,33 @@ public final class CameraConfigurationUtils {
         new Camera.Area(new Rect(-areaPer1000, -areaPer1000, areaPer1000, areaPer1000), 1));
   }
 
+  /**
+   * Maps a rect in preview frame pixels to a focus / metering area, whose coordinates run from -1000
+   * to 1000 across the (unrotated) camera frame.
+   * 将预览帧内的矩形区域转换成摄像头对焦/测光区域坐标(-1000~1000)
+   *
+   * @param rectInPreview region in the camera's own preview frame coordinates
+   * @param previewSize size of the preview frame
+   * @return single area list, or the middle area if the rect is unusable
+   */
+  public static List<Camera.Area> buildArea(Rect rectInPreview, Point previewSize) {
+    if (rectInPreview == null || previewSize == null || previewSize.x <= 0 || previewSize.y <= 0) {
+      return buildMiddleArea(AREA_PER_1000);
+    }
+    int left = clampArea(rectInPreview.left * 2000 / previewSize.x - 1000);
+    int top = clampArea(rectInPreview.top * 2000 / previewSize.y - 1000);
+    int right = clampArea(rectInPreview.right * 2000 / previewSize.x - 1000);
+    int bottom = clampArea(rectInPreview.bottom * 2000 / previewSize.y - 1000);
+    if (left >= right || top >= bottom) {
+      return buildMiddleArea(AREA_PER_1000);
+    }
+    return Collections.singletonList(new Camera.Area(new Rect(left, top, right, bottom), 1));
+  }
+
+  private static int clampArea(int value) {
+    return Math.max(-1000, Math.min(1000, value));
+  }
+
   public static void setVideoStabilization(Camera.Parameters parameters) {
     if (parameters.isVideoStabilizationSupported()) {
       if (parameters.getVideoStabilization()) {
@@ -368,6 +407,121 @@ public final class CameraConfigurationUtils {
     return defaultSize;
   }
 
+  /**
+   * Like {@link #findBestPreviewSizeValue(Camera.Parameters, Point)}, but rather than the largest
+   * suitable size, picks the smallest one which still gives the target barcode enough pixels per
+   * module inside the framing rect, as described by the {@link PreviewSizePolicy}. Sizes are
+   * filtered by minimum size and aspect ratio exactly as before.
+   * 依据解码代价选择预览尺寸：取满足每模块最小像素数的最小预览尺寸
+   *
+   * @param parameters camera parameters listing the supported preview sizes
+   * @param screenResolution screen resolution, flipped to the camera's orientation
+   * @param framingRect framing rect in screen coordinates, or null if not known yet
+   * @param policy cost model the chosen size must satisfy
+   * @return chosen size along with the reason it was chosen
+   */
+  public static PreviewSizeSelection findBestPreviewSizeValue(Camera.Parameters parameters,
+                                                              Point screenResolution,
+                                                              Rect framingRect,
+                                                              PreviewSizePolicy policy) {
+    if (framingRect == null || framingRect.isEmpty()) {
+      Point largestSize = findBestPreviewSizeValue(parameters, screenResolution);
+      return new PreviewSizeSelection(largestSize, 0.0f, 0, "no framing rect, fell back to largest suitable size");
+    }
+
+    List<Camera.Size> rawSupportedSizes = parameters.getSupportedPreviewSizes();
+    if (rawSupportedSizes == null) {
+      Log.w(TAG, "Device returned no supported preview sizes; using default");
+      Camera.Size defaultSize = parameters.getPreviewSize();
+      if (defaultSize == null) {
+        throw new IllegalStateException("Parameters contained no preview size!");
+      }
+      return new PreviewSizeSelection(new Point(defaultSize.width, defaultSize.height), 0.0f, 0,
+          "device returned no supported preview sizes");
+    }
+
+    // Sort by size, ascending, so the first size satisfying the policy is also the cheapest to decode
+    List<Camera.Size> supportedPreviewSizes = new ArrayList<>(rawSupportedSizes);
+    Collections.sort(supportedPreviewSizes, new Comparator<Camera.Size>() {
+      @Override
+      public int compare(Camera.Size a, Camera.Size b) {
+        int aPixels = a.height * a.width;
+        int bPixels = b.height * b.width;
+        if (aPixels < bPixels) {
+          return -1;
+        }
+        if (aPixels > bPixels) {
+          return 1;
+        }
+        return 0;
+      }
+    });
+
+    double screenAspectRatio = screenResolution.x / (double) screenResolution.y;
+    int screenShortSide = Math.min(screenResolution.x, screenResolution.y);
+    int framingShortSide = Math.min(framingRect.width(), framingRect.height());
+
+    // Remove sizes that are unsuitable
+    Iterator<Camera.Size> it = supportedPreviewSizes.iterator();
+    while (it.hasNext()) {
+      Camera.Size supportedPreviewSize = it.next();
+      int realWidth = supportedPreviewSize.width;
+      int realHeight = supportedPreviewSize.height;
+      if (realWidth * realHeight < MIN_PREVIEW_PIXELS) {
+        it.remove();
+        continue;
+      }
+      boolean isCandidatePortrait = realWidth < realHeight;
+      int maybeFlippedWidth = isCandidatePortrait ? realHeight : realWidth;
+      int maybeFlippedHeight = isCandidatePortrait ? realWidth : realHeight;
+      double aspectRatio = maybeFlippedWidth / (double) maybeFlippedHeight;
+      if (Math.abs(aspectRatio - screenAspectRatio) > MAX_ASPECT_DISTORTION) {
+        it.remove();
+      }
+    }
+
+    int candidateCount = supportedPreviewSizes.size();
+    if (candidateCount == 0) {
+      Camera.Size defaultPreview = parameters.getPreviewSize();
+      if (defaultPreview == null) {
+        throw new IllegalStateException("Parameters contained no preview size!");
+      }
+      Point defaultSize = new Point(defaultPreview.width, defaultPreview.height);
+      Log.i(TAG, "No suitable preview sizes, using default: " + defaultSize);
+      return new PreviewSizeSelection(defaultSize, 0.0f, 0, "no supported size passed the size/aspect filters");
+    }
+
+    for (Camera.Size candidate : supportedPreviewSizes) {
+      float pixelsPerModule = pixelsPerModule(candidate, framingShortSide, screenShortSide, policy);
+      if (pixelsPerModule >= policy.getMinPixelsPerModule()) {
+        Point size = new Point(candidate.width, candidate.height);
+        String reason = "smallest of " + candidateCount + " candidates giving " + pixelsPerModule +
+            " px/module >= " + policy.getMinPixelsPerModule() + " for " + policy.getTargetModules() + " modules";
+        Log.i(TAG, "Using cheapest sufficient preview size: " + size + ", " + reason);
+        return new PreviewSizeSelection(size, pixelsPerModule, candidateCount, reason);
+      }
+    }
+
+    // Nothing reaches the target resolution, so the largest size is the best we can do
+    Camera.Size largestPreview = supportedPreviewSizes.get(candidateCount - 1);
+    Point largestSize = new Point(largestPreview.width, largestPreview.height);
+    float pixelsPerModule = pixelsPerModule(largestPreview, framingShortSide, screenShortSide, policy);
+    String reason = "no candidate reaches " + policy.getMinPixelsPerModule() + " px/module, largest of " +
+        candidateCount + " gives " + pixelsPerModule;
+    Log.i(TAG, "Using largest suitable preview size: " + largestSize + ", " + reason);
+    return new PreviewSizeSelection(largestSize, pixelsPerModule, candidateCount, reason);
+  }
+
+  private static float pixelsPerModule(Camera.Size previewSize,
+                                       int framingShortSide,
+                                       int screenShortSide,
+                                       PreviewSizePolicy policy) {
+    // Aspect ratios match to within MAX_ASPECT_DISTORTION, so scaling by the short sides is close enough
+    int previewShortSide = Math.min(previewSize.width, previewSize.height);
+    double framingShortSideInPreview = framingShortSide * previewShortSide / (double) screenShortSide;
+    return policy.pixelsPerModule(framingShortSideInPreview);
+  }
+
   private static String findSettableValue(String name,
                                           Collection<String> supportedValues,
                                           String... desiredValues) {
@@ -27,13 +27,17 @@ import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowManager;
 
-import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.client.android.OrientedLuminanceSource;
 import com.google.zxing.client.android.R;
+import com.google.zxing.client.android.ScannerConfig;
 import com.google.zxing.client.android.camera.open.OpenCamera;
 import com.google.zxing.client.android.camera.open.OpenCameraInterface;
+import com.google.zxing.qrcode.detector.FinderPattern;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.Arrays;
 
 /**
  * This object wraps the Camera service object and expects to be the only one talking to it. The
@@ -65,6 +69,48 @@ public final class CameraManager {
     private int requestedCameraId = OpenCameraInterface.NO_REQUESTED_CAMERA;
     private int requestedFramingRectWidth;
     private int requestedFramingRectHeight;
+    /**
+     * 选择预览尺寸时的解码代价模型，为null时则沿用选择最大预览尺寸的方式
+     */
+    private PreviewSizePolicy previewSizePolicy = PreviewSizePolicy.DEFAULT;
+    /**
+     * 预览帧率调节器的配置，为null时不动态调节帧率
+     */
+    private FpsGovernorConfig fpsGovernorConfig = FpsGovernorConfig.DEFAULT;
+    private PreviewFpsGovernor fpsGovernor;
+    /**
+     * 是否依据取景框内的图像亮度自动开关闪光灯
+     */
+    private boolean autoTorchEnabled;
+    private AutoTorchController autoTorchController;
+    /**
+     * 依据温度/电量调整扫描档位的调节器，为null时始终全速扫描
+     */
+    private ScanGovernor scanGovernor;
+    private volatile ScanOperatingPoint operatingPoint;
+    /**
+     * 空闲时的帧率上限，0表示不限制
+     */
+    private int idleFpsCap;
+    /**
+     * 进入空闲前的预览帧率范围，空闲结束时恢复
+     */
+    private int[] rangeBeforeIdle;
+    /**
+     * Takes all parameter changes while the camera is open.
+     */
+    private volatile CameraCommandQueue commandQueue;
+    private ScannerConfig scannerConfig = ScannerConfig.DEFAULT;
+    private boolean autoZoomEnabled;
+    private volatile AutoZoomController autoZoomController;
+    private Handler zoomHandler;
+    private int zoomMessage;
+    /**
+     * Where the decode region is moved from the framing rect to follow a code after auto zoom.
+     */
+    private int decodeOffsetX;
+    private int decodeOffsetY;
+    private Rect decodeRect;
     /**
      * Preview frames are delivered here, which we pass on to the registered handler. Make sure to
      * clear the handler so it will only receive one message.
@@ -101,13 +147,14 @@ public final class CameraManager {
                 requestedFramingRectWidth = 0;
                 requestedFramingRectHeight = 0;
             }
+            configManager.initPreviewSize(theCamera, getFramingRect(), previewSizePolicy);
         }
 
         Camera cameraObject = theCamera.getCamera();
         Camera.Parameters parameters = cameraObject.getParameters();
         String parametersFlattened = parameters == null ? null : parameters.flatten(); // Save these, temporarily
         try {
-            configManager.setDesiredCameraParameters(theCamera, false);
+            configManager.setDesiredCameraParameters(theCamera, false, getFramingRectInPreview());
         } catch (RuntimeException re) {
             // Driver failed
             Log.w(TAG, "Camera rejected parameters. Setting only minimal safe-mode parameters");
@@ -118,13 +165,19 @@ public final class CameraManager {
                 parameters.unflatten(parametersFlattened);
                 try {
                     cameraObject.setParameters(parameters);
-                    configManager.setDesiredCameraParameters(theCamera, true);
+                    configManager.setDesiredCameraParameters(theCamera, true, getFramingRectInPreview());
                 } catch (RuntimeException re2) {
                     // Well, darn. Give up
                     Log.w(TAG, "Camera rejected even safe-mode parameters! No configuration");
                 }
             }
         }
+        // The camera may have settled on another preview size than requested
+        framingRectInPreview = null;
+        resetDecodeRect();
+        if (commandQueue == null) {
+            commandQueue = new CameraCommandQueue(cameraObject, configManager);
+        }
         cameraObject.setPreviewDisplay(holder);
     }
 
@@ -137,12 +190,18 @@ public final class CameraManager {
      */
     public synchronized void closeDriver() {
         if (camera != null) {
+            if (commandQueue != null) {
+                commandQueue.shutdown();
+                commandQueue = null;
+            }
             camera.getCamera().release();
             camera = null;
+            rangeBeforeIdle = null;
             // Make sure to clear these each time we close the camera, so that any scanning rect
             // requested by intent is forgotten.
             framingRect = null;
             framingRectInPreview = null;
+            resetDecodeRect();
         }
     }
 
@@ -154,10 +213,31 @@ public final class CameraManager {
         if (theCamera != null && !previewing) {
             theCamera.getCamera().startPreview();
             previewing = true;
-            autoFocusManager = new AutoFocusManager(context, theCamera.getCamera());
+            CameraParameterSnapshot snapshot = commandQueue.getSnapshot();
+            autoFocusManager = new AutoFocusManager(theCamera.getCamera(), snapshot.getFocusMode(),
+                    scannerConfig.isAutoFocus());
+            fpsGovernor = buildFpsGovernor(snapshot);
+            applyIdleFpsRange();
+            if (autoTorchEnabled) {
+                autoTorchController = new AutoTorchController(commandQueue.isTorchRequested());
+            }
+            if (autoZoomEnabled && snapshot.isZoomSupported()) {
+                autoZoomController = new AutoZoomController(snapshot.getTenZoom());
+            }
         }
     }
 
+    private PreviewFpsGovernor buildFpsGovernor(CameraParameterSnapshot snapshot) {
+        FpsGovernorConfig config = fpsGovernorConfig;
+        if (config == null) {
+            return null;
+        }
+        PreviewFpsGovernor governor = new PreviewFpsGovernor(config, snapshot.getSupportedPreviewFpsRanges(),
+                snapshot.getPreviewFpsRange());
+        governor.setFpsCap(fpsCap());
+        return governor.isUsable() ? governor : null;
+    }
+
     /**
      * Tells the camera to stop drawing preview frames.
      */
@@ -170,32 +250,118 @@ public final class CameraManager {
             camera.getCamera().stopPreview();
             previewCallback.setHandler(null, 0);
             previewing = false;
+            fpsGovernor = null;
+            autoTorchController = null;
+            autoZoomController = null;
         }
     }
 
     /**
-     * Convenience method for {@link com.google.zxing.client.android.CaptureActivity2}
+     * Convenience method for {@link com.google.zxing.client.android.CaptureActivity2}. Returns
+     * right away; the torch is switched on the camera command thread.
      *
      * @param newSetting if {@code true}, light should be turned on if currently off. And vice versa.
      */
     public synchronized void setTorch(boolean newSetting) {
-        OpenCamera theCamera = camera;
-        if (theCamera != null) {
-            if (newSetting != configManager.getTorchState(theCamera.getCamera())) {
-                boolean wasAutoFocusManager = autoFocusManager != null;
-                if (wasAutoFocusManager) {
+        final OpenCamera theCamera = camera;
+        CameraCommandQueue queue = commandQueue;
+        if (theCamera != null && queue != null) {
+            if (newSetting != queue.isTorchRequested()) {
+                Runnable restartAutoFocus = null;
+                if (autoFocusManager != null) {
                     autoFocusManager.stop();
                     autoFocusManager = null;
+                    restartAutoFocus = new Runnable() {
+                        @Override
+                        public void run() {
+                            restartAutoFocus(theCamera);
+                        }
+                    };
                 }
-                configManager.setTorch(theCamera.getCamera(), newSetting);
-                if (wasAutoFocusManager) {
-                    autoFocusManager = new AutoFocusManager(context, theCamera.getCamera());
-                    autoFocusManager.start();
-                }
+                queue.setTorch(newSetting, restartAutoFocus);
+            }
+            if (autoTorchController != null) {
+                autoTorchController.onTorchChanged(newSetting);
             }
         }
     }
 
+    private synchronized void restartAutoFocus(OpenCamera theCamera) {
+        CameraCommandQueue queue = commandQueue;
+        if (camera == theCamera && previewing && autoFocusManager == null && queue != null) {
+            autoFocusManager = new AutoFocusManager(theCamera.getCamera(), queue.getSnapshot().getFocusMode(),
+                    scannerConfig.isAutoFocus());
+        }
+    }
+
+    /**
+     * Lets the torch follow the brightness of the framing rect in the decoded frames instead of the
+     * ambient light sensor, taking effect at the next {@link #startPreview()}.
+     * 设置是否依据取景框内的图像亮度自动开关闪光灯，开启后无需再注册光线传感器
+     *
+     * @param enabled true to switch the torch automatically
+     */
+    public synchronized void setAutoTorchEnabled(boolean enabled) {
+        autoTorchEnabled = enabled;
+        if (!enabled) {
+            autoTorchController = null;
+        }
+    }
+
+    /**
+     * Sets the focus, torch, exposure and scene settings to configure the camera with, taking effect
+     * the next time the camera is opened. Defaults to {@link ScannerConfig#DEFAULT}.
+     * 设置扫描配置，下次打开摄像头时生效
+     *
+     * @param config the config to use
+     */
+    public synchronized void setScannerConfig(ScannerConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Scanner config must not be null");
+        }
+        scannerConfig = config;
+        configManager.setScannerConfig(config);
+    }
+
+    /**
+     * Lets the camera zoom in by itself when a code is seen but too small to decode, taking effect at
+     * the next {@link #startPreview()}.
+     * 设置识别到的码过小时是否自动放大
+     *
+     * @param enabled true to zoom automatically
+     */
+    public synchronized void setAutoZoomEnabled(boolean enabled) {
+        autoZoomEnabled = enabled;
+        if (!enabled) {
+            autoZoomController = null;
+        }
+    }
+
+    /**
+     * Reports a candidate point found while decoding, for auto zoom. Called on the decode thread.
+     *
+     * @param point the point, in the coordinates of the decode region
+     */
+    public void onPossibleResultPoint(ResultPoint point) {
+        AutoZoomController controller = autoZoomController;
+        if (controller != null) {
+            float moduleSize = point instanceof FinderPattern ? ((FinderPattern) point).getEstimatedModuleSize() : 0.0f;
+            controller.addPoint(point.getX(), point.getY(), moduleSize);
+        }
+    }
+
+    /**
+     * Zoom changes made by auto zoom will be reported to the handler supplied, with the new zoom times
+     * 10 in message.arg1, so zoom controls can follow them.
+     *
+     * @param handler The handler to send the message to, or null to stop reporting.
+     * @param message The what field of the message to be sent.
+     */
+    public synchronized void setZoomHandler(Handler handler, int message) {
+        zoomHandler = handler;
+        zoomMessage = message;
+    }
+
     /**
      * A single preview frame will be returned to the handler supplied. The data will arrive as byte[]
      * in the message.obj field, with width and height encoded as message.arg1 and message.arg2,
@@ -212,6 +378,333 @@ public final class CameraManager {
         }
     }
 
+    /**
+     * Reports a preview frame which has just been run through the decoder, so the preview FPS range
+     * can follow what the decoder actually keeps up with, focus can be refreshed when the frame
+     * goes soft and the torch can follow the scene brightness. Called on the decode thread; at most one
+     * FPS range change is queued per evaluation window of the {@link PreviewFpsGovernor}.
+     * 报告一帧的解码结果及耗时，用于动态调节预览帧率以及重新对焦
+     *
+     * @param data the frame as the camera delivered it, not rotated
+     * @param width width of that frame
+     * @param height height of that frame
+     * @param decodeTimeMs time the attempt took
+     * @param decoded whether a barcode was found
+     */
+    public void onFrameDecoded(byte[] data, int width, int height, long decodeTimeMs, boolean decoded) {
+        ScanGovernor theScanGovernor = updateOnFrame(data, width, height, decodeTimeMs, decoded);
+        if (theScanGovernor == null) {
+            return;
+        }
+        // Thermal and battery readings are calls into system services; the UI thread must not wait on them
+        theScanGovernor.onDecodeLatency(decodeTimeMs);
+        ScanOperatingPoint newPoint = theScanGovernor.evaluate(System.currentTimeMillis());
+        if (newPoint != null) {
+            onOperatingPointChanged(theScanGovernor, newPoint);
+        }
+    }
+
+    /**
+     * The part of {@link #onFrameDecoded} that drives the camera.
+     *
+     * @return the scan governor to consult once the lock is released, or null
+     */
+    private synchronized ScanGovernor updateOnFrame(byte[] data,
+                                                    int width,
+                                                    int height,
+                                                    long decodeTimeMs,
+                                                    boolean decoded) {
+        OpenCamera theCamera = camera;
+        if (theCamera == null || !previewing) {
+            return null;
+        }
+        // Focus and torch measure the decode region where it lies in the camera's own frame
+        Rect roi = configManager.toCameraFrame(getDecodeRect());
+        if (autoFocusManager != null && roi != null && roi.right < width && roi.bottom < height) {
+            autoFocusManager.onFrameDecoded(data, width, roi, decoded);
+        }
+        if (autoTorchController != null && roi != null && roi.right <= width && roi.bottom <= height) {
+            Boolean newTorch = autoTorchController.onFrame(data, width, roi);
+            if (newTorch != null) {
+                setTorch(newTorch);
+            }
+        }
+        AutoZoomController zoomController = autoZoomController;
+        if (zoomController != null && commandQueue != null) {
+            int newTenZoom = zoomController.onFrame(decoded, commandQueue.getSnapshot());
+            if (newTenZoom != AutoZoomController.NO_CHANGE) {
+                commandQueue.setZoom(newTenZoom);
+                if (zoomHandler != null) {
+                    zoomHandler.obtainMessage(zoomMessage, newTenZoom, 0).sendToTarget();
+                }
+                Point rotatedResolution = configManager.getRotatedResolution();
+                if (rotatedResolution != null) {
+                    followCode(zoomController, rotatedResolution.x, rotatedResolution.y);
+                }
+            } else if (!zoomController.isZoomedIn() && (decodeOffsetX != 0 || decodeOffsetY != 0)) {
+                resetDecodeRect();
+            }
+        }
+        PreviewFpsGovernor governor = fpsGovernor;
+        if (governor != null) {
+            int[] rejectedRange = commandQueue == null ? null : commandQueue.takeRejectedFpsRange();
+            if (rejectedRange != null) {
+                governor.onRangeRejected(rejectedRange, commandQueue.getSnapshot().getPreviewFpsRange());
+            }
+            governor.onFramesDropped(previewCallback.takeDroppedFrames());
+            int[] newRange = governor.onFrameDecoded(decodeTimeMs);
+            if (newRange != null && commandQueue != null) {
+                commandQueue.setPreviewFpsRange(newRange);
+            }
+        }
+        return scanGovernor;
+    }
+
+    private synchronized void onOperatingPointChanged(ScanGovernor governor, ScanOperatingPoint newPoint) {
+        // Dropped if the governor was replaced while it was evaluating
+        if (governor != scanGovernor) {
+            return;
+        }
+        Log.i(TAG, "Scan operating point " + operatingPoint + " -> " + newPoint);
+        applyOperatingPoint(newPoint);
+    }
+
+    /**
+     * Moves the decode region to where the code will be once the zoom change applies: zooming scales
+     * offsets from the frame center by the zoom factor.
+     */
+    private void followCode(AutoZoomController controller, int width, int height) {
+        Rect base = getFramingRectInPreview();
+        Rect current = getDecodeRect();
+        if (base == null || current == null || !controller.isZoomedIn() || controller.getCodeX() < 0.0f) {
+            resetDecodeRect();
+            return;
+        }
+        float factor = controller.getLastZoomFactor();
+        float centerX = width / 2.0f;
+        float centerY = height / 2.0f;
+        float codeX = centerX + (current.left + controller.getCodeX() - centerX) * factor;
+        float codeY = centerY + (current.top + controller.getCodeY() - centerY) * factor;
+        int offsetX = Math.round(codeX - (base.left + base.right) / 2.0f);
+        int offsetY = Math.round(codeY - (base.top + base.bottom) / 2.0f);
+        decodeOffsetX = Math.max(-base.left, Math.min(offsetX, width - base.right));
+        decodeOffsetY = Math.max(-base.top, Math.min(offsetY, height - base.bottom));
+        decodeRect = null;
+    }
+
+    private synchronized void resetDecodeRect() {
+        decodeOffsetX = 0;
+        decodeOffsetY = 0;
+        decodeRect = null;
+    }
+
+    /**
+     * @return a copy of the region of the rotated preview frame which is decoded, or null before the
+     *         camera is configured
+     * 获取(旋转后的)预览帧中实际解码的区域
+     */
+    public Rect getDecodeRegion() {
+        Rect rect = getDecodeRect();
+        return rect == null ? null : new Rect(rect);
+    }
+
+    /**
+     * @return the framing rect in the preview, moved to follow a code after auto zoom
+     */
+    private synchronized Rect getDecodeRect() {
+        if (decodeRect == null) {
+            Rect base = getFramingRectInPreview();
+            if (base == null) {
+                return null;
+            }
+            Rect rect = new Rect(base);
+            rect.offset(decodeOffsetX, decodeOffsetY);
+            decodeRect = rect;
+        }
+        return decodeRect;
+    }
+
+    /**
+     * Maps points found by the decoder to the rotated preview frame. Call on the decode thread right
+     * after the decode, before {@link #onFrameDecoded} may move the decode region.
+     * 将解码区域内的结果点换算到(旋转后的)预览帧坐标
+     *
+     * @param points points within the decode region, may be null
+     * @return x, y pairs in the preview frame
+     */
+    public float[] mapToPreview(ResultPoint[] points) {
+        Rect rect = getDecodeRect();
+        return mapToPreview(points, rect == null ? 0 : rect.left, rect == null ? 0 : rect.top);
+    }
+
+    /**
+     * Maps points found in some other region of the rotated preview frame to the frame.
+     * 将指定区域内的结果点换算到预览帧坐标
+     *
+     * @param points points within the region, may be null
+     * @param left left edge of the region in the frame
+     * @param top top edge of the region in the frame
+     * @return x, y pairs in the preview frame
+     */
+    public float[] mapToPreview(ResultPoint[] points, int left, int top) {
+        if (points == null) {
+            return new float[0];
+        }
+        float[] mapped = new float[points.length * 2];
+        for (int i = 0; i < points.length; i++) {
+            ResultPoint point = points[i];
+            if (point != null) {
+                mapped[i * 2] = left + point.getX();
+                mapped[i * 2 + 1] = top + point.getY();
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * Maps points in the rotated preview frame to the screen, undoing {@link #getFramingRectInPreview()}.
+     * 将预览帧坐标换算为屏幕坐标
+     *
+     * @param previewPoints x, y pairs as from {@link #mapToPreview(ResultPoint[])}
+     * @return x, y pairs in screen pixels
+     */
+    public float[] mapPreviewToScreen(float[] previewPoints) {
+        float[] mapped = new float[previewPoints.length];
+        Point rotatedResolution = configManager.getRotatedResolution();
+        Point screenResolution = configManager.getScreenResolution();
+        if (rotatedResolution == null || screenResolution == null) {
+            return mapped;
+        }
+        float scaleX = (float) screenResolution.x / rotatedResolution.x;
+        float scaleY = (float) screenResolution.y / rotatedResolution.y;
+        boolean mirrored = configManager.isPreviewMirrored();
+        for (int i = 0; i + 1 < previewPoints.length; i += 2) {
+            float x = mirrored ? rotatedResolution.x - previewPoints[i] : previewPoints[i];
+            mapped[i] = x * scaleX;
+            mapped[i + 1] = previewPoints[i + 1] * scaleY;
+        }
+        return mapped;
+    }
+
+    /**
+     * The screen shows a front camera's preview mirrored, while the decoder reads it the right way
+     * round; x in the preview frame then runs from the right edge of the screen.
+     * 前置摄像头的预览是镜像显示的，预览帧中的x坐标需从屏幕右侧算起
+     *
+     * @return whether the preview frame is mirrored on screen
+     */
+    public boolean isPreviewMirrored() {
+        return configManager.isPreviewMirrored();
+    }
+
+    /**
+     * Sets the bounds and hysteresis for runtime preview FPS adjustment, taking effect at the next
+     * {@link #startPreview()}. See {@link FpsGovernorConfig#forScanMode(String)} for per scan mode presets.
+     * 设置预览帧率调节器的配置
+     *
+     * @param config the config to use, or null to leave the FPS range alone
+     */
+    public synchronized void setFpsGovernorConfig(FpsGovernorConfig config) {
+        fpsGovernorConfig = config;
+    }
+
+    /**
+     * Lets the given governor step the pipeline down when the device gets hot or the battery runs low.
+     * Its operating point applies right away to the FPS cap and the binarizer, and to the preview size
+     * the next time the camera is opened.
+     * 设置依据温度、电量调整扫描档位的调节器
+     *
+     * @param governor the governor to follow, or null to always scan at full speed
+     */
+    public synchronized void setScanGovernor(ScanGovernor governor) {
+        scanGovernor = governor;
+        if (governor != null) {
+            applyOperatingPoint(governor.getOperatingPoint());
+        }
+    }
+
+    private void applyOperatingPoint(ScanOperatingPoint point) {
+        operatingPoint = point;
+        if (previewSizePolicy != null) {
+            previewSizePolicy = point.getPreviewSizePolicy();
+        }
+        if (fpsGovernor != null) {
+            fpsGovernor.setFpsCap(fpsCap());
+        }
+    }
+
+    /**
+     * Caps the preview frame rate while the scanner is idle, on top of the operating point's cap.
+     * 设置空闲时的预览帧率上限
+     *
+     * @param maxFps highest frame rate to capture at, or 0 to lift the cap
+     */
+    public synchronized void setIdleFpsCap(int maxFps) {
+        idleFpsCap = maxFps;
+        if (fpsGovernor != null) {
+            fpsGovernor.setFpsCap(fpsCap());
+        }
+        applyIdleFpsRange();
+    }
+
+    /**
+     * Switches the preview FPS range as soon as the idle cap changes. The governor only moves on decoded
+     * frames, which hardly come while idle, and there is none at all on devices with a single range.
+     */
+    private void applyIdleFpsRange() {
+        CameraCommandQueue queue = commandQueue;
+        if (queue == null || !previewing) {
+            return;
+        }
+        CameraParameterSnapshot snapshot = queue.getSnapshot();
+        int[] range;
+        if (idleFpsCap > 0) {
+            int[] current = snapshot.getPreviewFpsRange();
+            range = PreviewFpsGovernor.fastestRangeUnder(snapshot.getSupportedPreviewFpsRanges(), idleFpsCap);
+            if (range == null || Arrays.equals(range, current)) {
+                return;
+            }
+            if (rangeBeforeIdle == null) {
+                rangeBeforeIdle = current;
+            }
+        } else {
+            range = rangeBeforeIdle;
+            rangeBeforeIdle = null;
+            if (range == null) {
+                return;
+            }
+            int cap = fpsCap();
+            if (cap > 0 && range[Camera.Parameters.PREVIEW_FPS_MAX_INDEX] > cap * 1000) {
+                range = PreviewFpsGovernor.fastestRangeUnder(snapshot.getSupportedPreviewFpsRanges(), cap);
+            }
+            if (range == null || Arrays.equals(range, snapshot.getPreviewFpsRange())) {
+                return;
+            }
+        }
+        queue.setPreviewFpsRange(range);
+        if (fpsGovernor != null) {
+            fpsGovernor.onRangeApplied(range);
+        }
+    }
+
+    private int fpsCap() {
+        ScanOperatingPoint point = operatingPoint;
+        int cap = point == null ? 0 : point.getMaxFps();
+        if (idleFpsCap > 0 && (cap == 0 || idleFpsCap < cap)) {
+            cap = idleFpsCap;
+        }
+        return cap;
+    }
+
+    /**
+     * 当前的扫描档位，可在解码线程中调用
+     *
+     * @return the operating point chosen by the {@link ScanGovernor}, or null if there is none
+     */
+    public ScanOperatingPoint getOperatingPoint() {
+        return operatingPoint;
+    }
+
 //  /**
 //   * Calculates the framing rect which the UI should draw to show the user where to place the
 //   * barcode. This target helps with alignment as well as forces the user to hold the device
@@ -354,7 +847,8 @@ public final class CameraManager {
 
     /**
      * Like {@link #getFramingRect} but coordinates are in terms of the preview frame,
-     * not UI / screen.
+     * not UI / screen. The frame is the one the decoder sees, turned by the camera's needed rotation and,
+     * for a front camera, not mirrored like the screen.
      *
      * @return {@link Rect} expressing barcode scan area in terms of the preview size
      */
@@ -366,23 +860,47 @@ public final class CameraManager {
             }
             Rect rect = new Rect(framingRect);
 //    cameraResolution= Point(2560, 1440) screenResolution=Point(1440, 2560)
-            Point cameraResolution = configManager.getCameraResolution();
+            Point rotatedResolution = configManager.getRotatedResolution();
             Point screenResolution = configManager.getScreenResolution();
-            if (cameraResolution == null || screenResolution == null) {
+            if (rotatedResolution == null || screenResolution == null) {
                 // Called early, before init even finished
                 return null;
             }
-            Log.i("info", TAG + "--> getFramingRectInPreview()cameraResolution= " + cameraResolution + " screenResolution=" + screenResolution);
-//      rect.left = rect.left * cameraResolution.x / screenResolution.x;
-//      rect.right = rect.right * cameraResolution.x / screenResolution.x;
-//      rect.top = rect.top * cameraResolution.y / screenResolution.y;
-//      rect.bottom = rect.bottom * cameraResolution.y / screenResolution.y;
+            Log.i("info", TAG + "--> getFramingRectInPreview()rotatedResolution= " + rotatedResolution + " screenResolution=" + screenResolution);
+            // The preview size is no longer the screen size (see PreviewSizePolicy), so scale the rect into
+            // the frame DecodeHandler decodes, i.e. the camera frame turned to match the screen
+            rect.left = rect.left * rotatedResolution.x / screenResolution.x;
+            rect.right = rect.right * rotatedResolution.x / screenResolution.x;
+            rect.top = rect.top * rotatedResolution.y / screenResolution.y;
+            rect.bottom = rect.bottom * rotatedResolution.y / screenResolution.y;
+            if (configManager.isPreviewMirrored()) {
+                int left = rect.left;
+                rect.left = rotatedResolution.x - rect.right;
+                rect.right = rotatedResolution.x - left;
+            }
             framingRectInPreview = rect;
         }
         return framingRectInPreview;
     }
 
 
+    /**
+     * Sets the cost model used to pick the preview size the next time the camera is opened.
+     * 设置选择预览尺寸的解码代价模型，需要在{@link #openDriver(SurfaceHolder)}之前调用
+     *
+     * @param policy the policy to use, or null to always use the largest suitable preview size
+     */
+    public synchronized void setPreviewSizePolicy(PreviewSizePolicy policy) {
+        previewSizePolicy = policy;
+    }
+
+    /**
+     * @return the chosen preview size and the reason it was chosen, or null before the camera is opened
+     */
+    public synchronized PreviewSizeSelection getPreviewSizeSelection() {
+        return configManager.getPreviewSizeSelection();
+    }
+
     /**
      * Allows third party apps to specify the camera ID, rather than determine
      * it automatically based on available cameras and their orientation.
@@ -414,31 +932,43 @@ public final class CameraManager {
             framingRect = new Rect(leftOffset, topOffset, leftOffset + width, topOffset + height);
             Log.d(TAG, "Calculated manual framing rect: " + framingRect);
             framingRectInPreview = null;
+            decodeRect = null;
         } else {
             requestedFramingRectWidth = width;
             requestedFramingRectHeight = height;
         }
     }
 
+    /**
+     * Views a preview frame the way the decoder reads it: turned by the rotation the camera needs to
+     * match the screen, without copying it.
+     * 依据摄像头预览的图像数据构建按屏幕方向旋转后的亮度视图，不复制数据
+     *
+     * @param data   A preview frame. @see {@link PreviewCallback#onPreviewFrame(byte[], Camera)}
+     * @param width  The width of the frame as the camera delivered it.
+     * @param height The height of the frame as the camera delivered it.
+     * @return the whole frame, in the coordinates of {@link #getFramingRectInPreview()}
+     */
+    public OrientedLuminanceSource buildFrame(byte[] data, int width, int height) {
+        // Go ahead and assume it's YUV rather than die.
+        return new OrientedLuminanceSource(data, width, height, configManager.getCWNeededRotation(), false);
+    }
+
     /**
      * A factory method to build the appropriate LuminanceSource object based on the format
      * of the preview buffers, as described by Camera.Parameters.
-     * 依据摄像头预览的图像数据byte[]data 构建出 Planar（平面）YUV(亮度和色差信号)源信息
+     * 依据摄像头预览的图像数据构建出取景框内的亮度源信息
      *
-     * @param data   A preview frame. @see {@link PreviewCallback#onPreviewFrame(byte[], Camera)}
-     * @param width  The width of the image.
-     * @param height The height of the image.
-     * @return A PlanarYUVLuminanceSource instance.
+     * @param frame the preview frame, as from {@link #buildFrame(byte[], int, int)}
+     * @return the decode region of the frame, or null before the camera is configured
      */
-    public PlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
-        Rect rect = getFramingRectInPreview();
+    public OrientedLuminanceSource buildLuminanceSource(OrientedLuminanceSource frame) {
+        Rect rect = getDecodeRect();
         if (rect == null) {
             return null;
         }
 //    Log.e("info", TAG + "--->buildLuminanceSource() width =" + width + " height = " + height + " framingRect" + rect);
-        // Go ahead and assume it's YUV rather than die.
-        return new PlanarYUVLuminanceSource(data, width, height, rect.left, rect.top,
-                rect.width(), rect.height(), false);
+        return frame.cropView(rect.left, rect.top, rect.width(), rect.height());
     }
 //
 //  /**
@@ -504,54 +1034,39 @@ public final class CameraManager {
     }
 
     /**
-     * 当前摄像头是否支持缩放
+     * 当前摄像头是否支持缩放，读取缓存的参数快照，不会阻塞
      *
      * @return
      */
     public boolean isCurCameraSupportZoom() {
-        if (camera != null) {
-            Camera theCamera = camera.getCamera();
-            if (theCamera != null) {
-                Camera.Parameters curParameter = theCamera.getParameters();
-                if (curParameter != null) {
-                    return curParameter.isZoomSupported();
-                }
-            }
-        }
-        return false;
+        CameraCommandQueue queue = commandQueue;
+        return queue != null && queue.getSnapshot().isZoomSupported();
     }
 
     public int getCameraCurZoom() {
-        return configManager != null ? configManager.getCameraCurZoom(getCurCameraParameter()) : 0;
+        CameraCommandQueue queue = commandQueue;
+        return queue != null ? queue.getSnapshot().getTenZoom() : 0;
     }
 
     public int getCameraMaxZoom() {
-        return configManager != null ? configManager.getCameraMaxZoom(getCurCameraParameter()) : 100;
+        CameraCommandQueue queue = commandQueue;
+        return queue != null ? queue.getSnapshot().getTenMaxZoom() : 100;
     }
 
+    /**
+     * 缩放摄像头；立即返回，连续的缩放请求在摄像头线程中合并为每帧最多一次参数设置
+     *
+     * @param zoomValue desired zoom times 10
+     */
     public void zoomCamera(int zoomValue) {
-        if (configManager != null) {
-            Camera.Parameters curCameraParameter = getCurCameraParameter();
-            configManager.setZoom(curCameraParameter, zoomValue);
-            if (curCameraParameter != null) {
-                getCurOpenedCamera().setParameters(curCameraParameter);
-            }
+        CameraCommandQueue queue = commandQueue;
+        if (queue != null) {
+            queue.setZoom(zoomValue);
         }
-    }
-
-    private Camera.Parameters getCurCameraParameter() {
-        Camera curOpenedCamera = getCurOpenedCamera();
-        if (curOpenedCamera != null) {
-            return curOpenedCamera.getParameters();
+        AutoZoomController controller = autoZoomController;
+        if (controller != null) {
+            controller.onManualZoom(zoomValue);
         }
-        return null;
-    }
-
-    private Camera getCurOpenedCamera() {
-        if (camera != null) {
-            return camera.getCamera();
-        }
-        return null;
     }
 
     private float getCurDensity() {
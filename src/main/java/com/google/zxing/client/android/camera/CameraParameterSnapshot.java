@@ -0,0 +1,138 @@
+package com.google.zxing.client.android.camera;
+
+import android.hardware.Camera;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of the camera parameters the scanner keeps asking about. {@code Camera.getParameters()}
+ * parses the whole flattened parameter string on every call, and the UI used to do that on every
+ * zoom bar event; this copy is taken on the camera thread after each {@code setParameters()} instead.
+ * 摄像头参数的只读快照，读取时无需调用Camera.getParameters()
+ */
+public final class CameraParameterSnapshot {
+
+  private final boolean zoomSupported;
+  private final int tenZoom;
+  private final int tenMaxZoom;
+  private final boolean torchOn;
+  private final String focusMode;
+  private final int[] previewFpsRange;
+  private final List<int[]> supportedPreviewFpsRanges;
+  private final List<Integer> zoomRatios;
+
+  private CameraParameterSnapshot(boolean zoomSupported,
+                                  int tenZoom,
+                                  int tenMaxZoom,
+                                  boolean torchOn,
+                                  String focusMode,
+                                  int[] previewFpsRange,
+                                  List<int[]> supportedPreviewFpsRanges,
+                                  List<Integer> zoomRatios) {
+    this.zoomSupported = zoomSupported;
+    this.tenZoom = tenZoom;
+    this.tenMaxZoom = tenMaxZoom;
+    this.torchOn = torchOn;
+    this.focusMode = focusMode;
+    this.previewFpsRange = previewFpsRange;
+    this.supportedPreviewFpsRanges = supportedPreviewFpsRanges;
+    this.zoomRatios = zoomRatios;
+  }
+
+  static CameraParameterSnapshot of(Camera.Parameters parameters, CameraConfigurationManager configManager) {
+    int[] previewFpsRange = new int[2];
+    parameters.getPreviewFpsRange(previewFpsRange);
+    List<int[]> supported = parameters.getSupportedPreviewFpsRange();
+    boolean zoomSupported = configManager.isCurCameraSupportZoom(parameters);
+    List<Integer> zoomRatios = zoomSupported ? parameters.getZoomRatios() : null;
+    return new CameraParameterSnapshot(
+        zoomSupported,
+        configManager.getCameraCurZoom(parameters),
+        configManager.getCameraMaxZoom(parameters),
+        CameraConfigurationManager.isTorchOn(parameters),
+        parameters.getFocusMode(),
+        previewFpsRange,
+        supported == null ? Collections.<int[]>emptyList() :
+            Collections.unmodifiableList(new ArrayList<>(supported)),
+        zoomRatios == null || zoomRatios.isEmpty() ? null :
+            Collections.unmodifiableList(new ArrayList<>(zoomRatios)));
+  }
+
+  public boolean isZoomSupported() {
+    return zoomSupported;
+  }
+
+  /**
+   * @return current zoom times 10
+   */
+  public int getTenZoom() {
+    return tenZoom;
+  }
+
+  /**
+   * @return maximum zoom times 10
+   */
+  public int getTenMaxZoom() {
+    return tenMaxZoom;
+  }
+
+  /**
+   * Magnification at a zoom value as used by the zoom bar. Those values are the driver's zoom index
+   * times 10; without a list of zoom ratios from the driver the index is taken as the magnification.
+   *
+   * @param tenZoom zoom times 10
+   * @return magnification, 1 for none
+   */
+  public float getMagnification(int tenZoom) {
+    int index = tenZoom / 10;
+    if (zoomRatios == null) {
+      return Math.max(1.0f, tenZoom / 10.0f);
+    }
+    index = Math.max(0, Math.min(index, zoomRatios.size() - 1));
+    return zoomRatios.get(index) / 100.0f;
+  }
+
+  /**
+   * @param magnification wanted magnification
+   * @return the smallest zoom value (times 10) giving at least that magnification, or the maximum zoom
+   */
+  public int findTenZoom(float magnification) {
+    if (zoomRatios == null) {
+      return Math.min(tenMaxZoom, (int) Math.ceil(magnification * 10.0f));
+    }
+    int ratio = (int) Math.ceil(magnification * 100.0f);
+    int index = 0;
+    while (index < zoomRatios.size() - 1 && zoomRatios.get(index) < ratio) {
+      index++;
+    }
+    return Math.min(tenMaxZoom, index * 10);
+  }
+
+  public boolean isTorchOn() {
+    return torchOn;
+  }
+
+  public String getFocusMode() {
+    return focusMode;
+  }
+
+  /**
+   * @return current preview FPS range (fps * 1000, min then max); a copy
+   */
+  public int[] getPreviewFpsRange() {
+    return previewFpsRange.clone();
+  }
+
+  public List<int[]> getSupportedPreviewFpsRanges() {
+    return supportedPreviewFpsRanges;
+  }
+
+  @Override
+  public String toString() {
+    return "CameraParameterSnapshot[zoom=" + tenZoom + '/' + tenMaxZoom + ", torch=" + torchOn + ", focus=" +
+        focusMode + ", fps=" + previewFpsRange[0] + '-' + previewFpsRange[1] + ']';
+  }
+
+}
@@ -0,0 +1,105 @@
+package com.google.zxing.client.android.camera;
+
+import com.google.zxing.client.android.Intents;
+
+/**
+ * Bounds and hysteresis for the {@link PreviewFpsGovernor}. Different scan modes decode at very
+ * different speeds, so each gets its own preset; see {@link #forScanMode(String)}.
+ * 预览帧率调节器的配置：帧率上下限以及防止频繁切换的滞后参数
+ */
+public final class FpsGovernorConfig {
+
+  /**
+   * 1D rows decode in a few ms, so keep frames coming fast.
+   */
+  public static final FpsGovernorConfig ONE_D = new FpsGovernorConfig(15, 30, 1.5f, 10, 3, 0.5f);
+  /**
+   * 2D codes (QR, Data Matrix, Aztec) take longer per frame; there is no point in capturing at 30fps.
+   */
+  public static final FpsGovernorConfig TWO_D = new FpsGovernorConfig(10, 30, 1.5f, 10, 3, 0.5f);
+  /**
+   * PDF417 decodes are the slowest of all.
+   */
+  public static final FpsGovernorConfig PDF417 = new FpsGovernorConfig(7, 24, 1.25f, 8, 3, 0.5f);
+  public static final FpsGovernorConfig DEFAULT = TWO_D;
+
+  private final int minFps;
+  private final int maxFps;
+  private final float headroom;
+  private final int evaluationFrames;
+  private final int hysteresisWindows;
+  private final float dropRatioForImmediateStepDown;
+
+  /**
+   * @param minFps lowest frame rate the governor may ask for
+   * @param maxFps highest frame rate the governor may ask for
+   * @param headroom how much faster than the decoder can keep up the camera should capture, so a
+   *                 fresh frame is always waiting when a decode finishes
+   * @param evaluationFrames number of decoded frames per evaluation window
+   * @param hysteresisWindows consecutive windows which must agree before the range is changed
+   * @param dropRatioForImmediateStepDown fraction of dropped frames in a window above which a lower
+   *                                      range is applied without waiting for hysteresis
+   */
+  public FpsGovernorConfig(int minFps,
+                           int maxFps,
+                           float headroom,
+                           int evaluationFrames,
+                           int hysteresisWindows,
+                           float dropRatioForImmediateStepDown) {
+    if (minFps <= 0 || maxFps < minFps || headroom < 1.0f || evaluationFrames <= 0 || hysteresisWindows <= 0) {
+      throw new IllegalArgumentException("Bad FPS governor config: " + minFps + '-' + maxFps + ", headroom " +
+          headroom + ", " + evaluationFrames + " frames x " + hysteresisWindows);
+    }
+    this.minFps = minFps;
+    this.maxFps = maxFps;
+    this.headroom = headroom;
+    this.evaluationFrames = evaluationFrames;
+    this.hysteresisWindows = hysteresisWindows;
+    this.dropRatioForImmediateStepDown = dropRatioForImmediateStepDown;
+  }
+
+  /**
+   * @param scanMode one of the {@code Intents.Scan.*_MODE} values, or null
+   * @return preset for that scan mode, {@link #DEFAULT} for unknown or mixed modes
+   */
+  public static FpsGovernorConfig forScanMode(String scanMode) {
+    if (Intents.Scan.ONE_D_MODE.equals(scanMode) || Intents.Scan.PRODUCT_MODE.equals(scanMode)) {
+      return ONE_D;
+    }
+    if (Intents.Scan.PDF417_MODE.equals(scanMode)) {
+      return PDF417;
+    }
+    return DEFAULT;
+  }
+
+  public int getMinFps() {
+    return minFps;
+  }
+
+  public int getMaxFps() {
+    return maxFps;
+  }
+
+  public float getHeadroom() {
+    return headroom;
+  }
+
+  public int getEvaluationFrames() {
+    return evaluationFrames;
+  }
+
+  public int getHysteresisWindows() {
+    return hysteresisWindows;
+  }
+
+  public float getDropRatioForImmediateStepDown() {
+    return dropRatioForImmediateStepDown;
+  }
+
+  @Override
+  public String toString() {
+    return "FpsGovernorConfig[" + minFps + '-' + maxFps + "fps, headroom=" + headroom + ", window=" +
+        evaluationFrames + "x" + hysteresisWindows + ']';
+  }
+
+}
@@ -0,0 +1,43 @@
+package com.google.zxing.client.android.camera;
+
+/**
+ * Cheap focus metric over the Y plane: the mean absolute difference between neighbouring pixels,
+ * sampled on a sparse grid. Defocus blur flattens those differences, so the value drops as soon as
+ * the image goes soft, while a sharp barcode keeps it high.
+ * 计算取景框内图像清晰度(相邻像素亮度差的均值)
+ */
+final class FrameSharpness {
+
+  private FrameSharpness() {
+  }
+
+  /**
+   * @param yuvData preview frame, only the leading Y plane is read
+   * @param dataWidth width of the frame in pixels
+   * @param left left of the region to measure
+   * @param top top of the region to measure
+   * @param width width of the region to measure
+   * @param height height of the region to measure
+   * @param step sampling step in both directions; 4 reads 1 / 16th of the region
+   * @return mean absolute gradient, 0 for flat or empty regions
+   */
+  static float measure(byte[] yuvData, int dataWidth, int left, int top, int width, int height, int step) {
+    long sum = 0L;
+    int count = 0;
+    int bottom = top + height - 1;
+    int right = left + width - 1;
+    for (int y = top; y < bottom; y += step) {
+      int offset = y * dataWidth;
+      for (int x = left; x < right; x += step) {
+        int index = offset + x;
+        int center = yuvData[index] & 0xff;
+        int dx = center - (yuvData[index + 1] & 0xff);
+        int dy = center - (yuvData[index + dataWidth] & 0xff);
+        sum += (dx < 0 ? -dx : dx) + (dy < 0 ? -dy : dy);
+        count++;
+      }
+    }
+    return count == 0 ? 0.0f : sum / (float) count;
+  }
+
+}
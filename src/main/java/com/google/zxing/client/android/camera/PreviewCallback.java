@@ -22,6 +22,8 @@ import android.os.Handler;
 import android.os.Message;
 import android.util.Log;
 
+import com.google.zxing.client.android.ScanTrace;
+
 final class PreviewCallback implements Camera.PreviewCallback {
 
   private static final String TAG = PreviewCallback.class.getSimpleName();
@@ -29,27 +31,43 @@ final class PreviewCallback implements Camera.PreviewCallback {
   private final CameraConfigurationManager configManager;
   private Handler previewHandler;
   private int previewMessage;
+  private int droppedFrames;
 
   PreviewCallback(CameraConfigurationManager configManager) {
     this.configManager = configManager;
   }
 
-  void setHandler(Handler previewHandler, int previewMessage) {
+  synchronized void setHandler(Handler previewHandler, int previewMessage) {
     this.previewHandler = previewHandler;
     this.previewMessage = previewMessage;
   }
 
+  /**
+   * @return number of frames delivered while no handler wanted them, since the last call
+   */
+  synchronized int takeDroppedFrames() {
+    int dropped = droppedFrames;
+    droppedFrames = 0;
+    return dropped;
+  }
+
   @Override
-  public void onPreviewFrame(byte[] data, Camera camera) {
-    Point cameraResolution = configManager.getCameraResolution();
-    Handler thePreviewHandler = previewHandler;
-    if (cameraResolution != null && thePreviewHandler != null) {
-      Message message = thePreviewHandler.obtainMessage(previewMessage, cameraResolution.x,
-          cameraResolution.y, data);
-      message.sendToTarget();
-      previewHandler = null;
-    } else {
-      Log.d(TAG, "Got preview callback, but no handler or resolution available");
+  public synchronized void onPreviewFrame(byte[] data, Camera camera) {
+    ScanTrace.begin("PreviewCallback.onPreviewFrame");
+    try {
+      Point cameraResolution = configManager.getCameraResolution();
+      Handler thePreviewHandler = previewHandler;
+      if (cameraResolution != null && thePreviewHandler != null) {
+        Message message = thePreviewHandler.obtainMessage(previewMessage, cameraResolution.x,
+            cameraResolution.y, data);
+        message.sendToTarget();
+        previewHandler = null;
+      } else {
+        droppedFrames++;
+        Log.d(TAG, "Got preview callback, but no handler or resolution available");
+      }
+    } finally {
+      ScanTrace.end();
     }
   }
 
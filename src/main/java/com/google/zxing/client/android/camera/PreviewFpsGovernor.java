@@ -0,0 +1,228 @@
+package com.google.zxing.client.android.camera;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Adjusts the preview FPS range at runtime to what the decoder can actually consume. Capturing at
+ * 30fps while each decode takes 80ms only burns sensor power and memory bandwidth on frames that are
+ * thrown away. Decode latency is smoothed, and a new range is only proposed once per evaluation
+ * window and only applied once several windows agree, so the camera is not reconfigured constantly.
+ * 依据解码耗时动态调节摄像头的预览帧率
+ */
+final class PreviewFpsGovernor {
+
+  private static final String TAG = PreviewFpsGovernor.class.getSimpleName();
+
+  private static final int MIN_INDEX = 0; // = Camera.Parameters.PREVIEW_FPS_MIN_INDEX
+  private static final int MAX_INDEX = 1; // = Camera.Parameters.PREVIEW_FPS_MAX_INDEX
+  private static final float LATENCY_SMOOTHING = 0.25f;
+
+  private final FpsGovernorConfig config;
+  /**
+   * Supported ranges within the configured bounds, by ascending max then min FPS.
+   */
+  private final List<int[]> candidateRanges;
+  private int[] currentRange;
+  private float smoothedLatencyMs = -1.0f;
+  private int windowFrames;
+  private float windowDrops;
+  private int[] pendingRange;
+  private int pendingWindows;
+  private int fpsCap = Integer.MAX_VALUE;
+
+  /**
+   * @param config bounds and hysteresis to apply
+   * @param supportedRanges ranges from {@code Camera.Parameters.getSupportedPreviewFpsRange()}, in fps * 1000
+   * @param currentRange range the camera currently runs at, may be null
+   */
+  PreviewFpsGovernor(FpsGovernorConfig config, List<int[]> supportedRanges, int[] currentRange) {
+    this.config = config;
+    this.currentRange = currentRange;
+    candidateRanges = new ArrayList<>();
+    if (supportedRanges != null) {
+      for (int[] range : supportedRanges) {
+        int max = range[MAX_INDEX];
+        if (max >= config.getMinFps() * 1000 && max <= config.getMaxFps() * 1000) {
+          candidateRanges.add(range);
+        }
+      }
+    }
+    Collections.sort(candidateRanges, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        if (a[MAX_INDEX] != b[MAX_INDEX]) {
+          return a[MAX_INDEX] < b[MAX_INDEX] ? -1 : 1;
+        }
+        return a[MIN_INDEX] < b[MIN_INDEX] ? -1 : (a[MIN_INDEX] == b[MIN_INDEX] ? 0 : 1);
+      }
+    });
+    Log.i(TAG, config + ", candidate ranges " + candidateRanges.size() + ", current " + Arrays.toString(currentRange));
+  }
+
+  /**
+   * @return true if there is anything to choose between
+   */
+  boolean isUsable() {
+    return candidateRanges.size() > 1 || (candidateRanges.size() == 1 && !Arrays.equals(candidateRanges.get(0), currentRange));
+  }
+
+  /**
+   * Keeps the range at or below the given frame rate from the next evaluation window on, e.g. while the
+   * device is hot. A current range above the cap is left without waiting for hysteresis.
+   *
+   * @param maxFps highest frame rate allowed, or 0 for no cap
+   */
+  synchronized void setFpsCap(int maxFps) {
+    fpsCap = maxFps > 0 ? maxFps * 1000 : Integer.MAX_VALUE;
+  }
+
+  /**
+   * Reports that the camera refused a range this governor chose. The range isn't chosen again, and the
+   * next evaluation starts from the one the camera kept.
+   *
+   * @param rejected the range returned by {@link #onFrameDecoded(long)} which didn't take
+   * @param actualRange the range the camera runs at, may be null
+   */
+  synchronized void onRangeRejected(int[] rejected, int[] actualRange) {
+    Log.w(TAG, "FPS range " + Arrays.toString(rejected) + " rejected, staying at " + Arrays.toString(actualRange));
+    for (int i = candidateRanges.size() - 1; i >= 0; i--) {
+      if (Arrays.equals(candidateRanges.get(i), rejected)) {
+        candidateRanges.remove(i);
+      }
+    }
+    currentRange = actualRange;
+    pendingRange = null;
+    pendingWindows = 0;
+  }
+
+  /**
+   * Reports a range applied from outside, e.g. when the scanner goes idle; evaluation carries on from it.
+   *
+   * @param range the range now requested from the camera
+   */
+  synchronized void onRangeApplied(int[] range) {
+    currentRange = range;
+    pendingRange = null;
+    pendingWindows = 0;
+  }
+
+  /**
+   * Reports preview frames which arrived while nobody wanted them.
+   */
+  synchronized void onFramesDropped(int count) {
+    windowDrops += count;
+  }
+
+  /**
+   * Reports one finished decode attempt, successful or not.
+   *
+   * @param decodeTimeMs time the attempt took
+   * @return FPS range (fps * 1000, min then max) to apply now, or null to keep the current one
+   */
+  synchronized int[] onFrameDecoded(long decodeTimeMs) {
+    if (smoothedLatencyMs < 0.0f) {
+      smoothedLatencyMs = decodeTimeMs;
+    } else {
+      smoothedLatencyMs += LATENCY_SMOOTHING * (decodeTimeMs - smoothedLatencyMs);
+    }
+    if (currentRange != null) {
+      // With one-shot preview callbacks every frame captured while we were decoding is wasted as well
+      float capturedWhileDecoding = decodeTimeMs * currentRange[MAX_INDEX] / 1000000.0f;
+      windowDrops += Math.max(0.0f, capturedWhileDecoding - 1.0f);
+    }
+    windowFrames++;
+    if (windowFrames < config.getEvaluationFrames()) {
+      return null;
+    }
+
+    float dropRatio = windowDrops / (windowFrames + windowDrops);
+    windowFrames = 0;
+    windowDrops = 0.0f;
+
+    float sustainableFps = 1000.0f / Math.max(1.0f, smoothedLatencyMs);
+    float targetFps = Math.min(config.getMaxFps(), Math.max(config.getMinFps(), sustainableFps * config.getHeadroom()));
+    targetFps = Math.min(targetFps, fpsCap / 1000.0f);
+    int[] target = chooseRange(targetFps);
+    if (target == null || Arrays.equals(target, currentRange)) {
+      pendingRange = null;
+      pendingWindows = 0;
+      return null;
+    }
+
+    if (Arrays.equals(target, pendingRange)) {
+      pendingWindows++;
+    } else {
+      pendingRange = target;
+      pendingWindows = 1;
+    }
+    boolean stepDown = currentRange != null && target[MAX_INDEX] < currentRange[MAX_INDEX];
+    boolean overCap = currentRange != null && currentRange[MAX_INDEX] > fpsCap;
+    if (pendingWindows >= config.getHysteresisWindows() ||
+        (stepDown && (overCap || dropRatio >= config.getDropRatioForImmediateStepDown()))) {
+      Log.i(TAG, "Decode latency " + smoothedLatencyMs + "ms, drop ratio " + dropRatio + ": FPS range " +
+          Arrays.toString(currentRange) + " -> " + Arrays.toString(target));
+      currentRange = target;
+      pendingRange = null;
+      pendingWindows = 0;
+      return target;
+    }
+    return null;
+  }
+
+  /**
+   * Fastest range that stays at or below a frame rate, or the slowest one if none does. Needs no
+   * governor, so it also serves devices where there is nothing to govern.
+   *
+   * @param supportedRanges ranges from {@code Camera.Parameters.getSupportedPreviewFpsRange()}, may be null
+   * @param maxFps highest frame rate wanted
+   * @return the range to apply, or null if there are none
+   */
+  static int[] fastestRangeUnder(List<int[]> supportedRanges, int maxFps) {
+    if (supportedRanges == null) {
+      return null;
+    }
+    int cap = maxFps * 1000;
+    int[] best = null;
+    int[] slowest = null;
+    for (int[] range : supportedRanges) {
+      if (slowest == null || range[MAX_INDEX] < slowest[MAX_INDEX] ||
+          (range[MAX_INDEX] == slowest[MAX_INDEX] && range[MIN_INDEX] < slowest[MIN_INDEX])) {
+        slowest = range;
+      }
+      // Among equally fast ranges the wider one lets the camera lengthen exposure in the dark
+      if (range[MAX_INDEX] <= cap && (best == null || range[MAX_INDEX] > best[MAX_INDEX] ||
+          (range[MAX_INDEX] == best[MAX_INDEX] && range[MIN_INDEX] < best[MIN_INDEX]))) {
+        best = range;
+      }
+    }
+    return best != null ? best : slowest;
+  }
+
+  /**
+   * Lowest range whose max still reaches the target, or the fastest one allowed if none does. Ranges
+   * above the cap are only used if nothing else is left.
+   */
+  private int[] chooseRange(float targetFps) {
+    if (candidateRanges.isEmpty()) {
+      return null;
+    }
+    int[] fastestUnderCap = null;
+    for (int[] range : candidateRanges) {
+      if (range[MAX_INDEX] > fpsCap) {
+        break;
+      }
+      if (range[MAX_INDEX] >= targetFps * 1000.0f) {
+        return range;
+      }
+      fastestUnderCap = range;
+    }
+    return fastestUnderCap != null ? fastestUnderCap : candidateRanges.get(0);
+  }
+
+}
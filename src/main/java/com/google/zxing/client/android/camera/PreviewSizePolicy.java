@@ -0,0 +1,72 @@
+package com.google.zxing.client.android.camera;
+
+/**
+ * Cost model used to pick the camera preview size. Larger previews cost more to copy, rotate and
+ * binarize on every frame, so instead of taking the largest supported size we take the smallest one
+ * which still resolves the target barcode with enough pixels per module inside the framing rect.
+ * 预览尺寸的选择策略：在保证取景框内目标条码每个模块有足够像素的前提下，选择最小的预览尺寸
+ */
+public final class PreviewSizePolicy {
+
+  /**
+   * Roughly the limit below which the binarizer stops separating adjacent modules reliably.
+   */
+  private static final float DEFAULT_MIN_PIXELS_PER_MODULE = 2.5f;
+  /**
+   * Module count across a version 10 QR code, which covers typical URL / text payloads.
+   */
+  private static final int DEFAULT_TARGET_MODULES = 57;
+  /**
+   * Users seldom fill the whole framing rect with the code.
+   */
+  private static final float DEFAULT_CODE_FILL_RATIO = 0.75f;
+
+  public static final PreviewSizePolicy DEFAULT =
+      new PreviewSizePolicy(DEFAULT_MIN_PIXELS_PER_MODULE, DEFAULT_TARGET_MODULES, DEFAULT_CODE_FILL_RATIO);
+
+  private final float minPixelsPerModule;
+  private final int targetModules;
+  private final float codeFillRatio;
+
+  /**
+   * @param minPixelsPerModule minimum preview pixels each module of the target code must cover
+   * @param targetModules number of modules across the largest code we expect to scan
+   * @param codeFillRatio fraction of the framing rect's shorter side the code is expected to span
+   */
+  public PreviewSizePolicy(float minPixelsPerModule, int targetModules, float codeFillRatio) {
+    if (minPixelsPerModule <= 0.0f || targetModules <= 0 || codeFillRatio <= 0.0f || codeFillRatio > 1.0f) {
+      throw new IllegalArgumentException("Bad preview size policy: " + minPixelsPerModule + ", " +
+          targetModules + ", " + codeFillRatio);
+    }
+    this.minPixelsPerModule = minPixelsPerModule;
+    this.targetModules = targetModules;
+    this.codeFillRatio = codeFillRatio;
+  }
+
+  public float getMinPixelsPerModule() {
+    return minPixelsPerModule;
+  }
+
+  public int getTargetModules() {
+    return targetModules;
+  }
+
+  public float getCodeFillRatio() {
+    return codeFillRatio;
+  }
+
+  /**
+   * @param framingShortSideInPreview length in preview pixels of the framing rect's shorter side
+   * @return pixels per module the target code would get at that size
+   */
+  float pixelsPerModule(double framingShortSideInPreview) {
+    return (float) (framingShortSideInPreview * codeFillRatio / targetModules);
+  }
+
+  @Override
+  public String toString() {
+    return "PreviewSizePolicy[minPixelsPerModule=" + minPixelsPerModule + ", targetModules=" + targetModules +
+        ", codeFillRatio=" + codeFillRatio + ']';
+  }
+
+}
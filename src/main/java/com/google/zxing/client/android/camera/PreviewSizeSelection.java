@@ -0,0 +1,54 @@
+package com.google.zxing.client.android.camera;
+
+import android.graphics.Point;
+
+/**
+ * The preview size picked by {@link CameraConfigurationUtils#findBestPreviewSizeValue(android.hardware.Camera.Parameters,
+ * Point, android.graphics.Rect, PreviewSizePolicy)} together with why it was picked, kept for diagnostics.
+ * 预览尺寸的选择结果以及选择的原因，用于诊断
+ */
+public final class PreviewSizeSelection {
+
+  private final Point size;
+  private final float pixelsPerModule;
+  private final int candidateCount;
+  private final String reason;
+
+  PreviewSizeSelection(Point size, float pixelsPerModule, int candidateCount, String reason) {
+    this.size = size;
+    this.pixelsPerModule = pixelsPerModule;
+    this.candidateCount = candidateCount;
+    this.reason = reason;
+  }
+
+  /**
+   * @return chosen preview size, in camera (not screen) orientation
+   */
+  public Point getSize() {
+    return size;
+  }
+
+  /**
+   * @return estimated pixels per module of the target code at this size, or 0 if not estimated
+   */
+  public float getPixelsPerModule() {
+    return pixelsPerModule;
+  }
+
+  /**
+   * @return number of supported sizes which passed the minimum size and aspect ratio filters
+   */
+  public int getCandidateCount() {
+    return candidateCount;
+  }
+
+  public String getReason() {
+    return reason;
+  }
+
+  @Override
+  public String toString() {
+    return size.x + "x" + size.y + " (" + reason + ')';
+  }
+
+}
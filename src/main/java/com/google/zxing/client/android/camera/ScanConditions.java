@@ -0,0 +1,30 @@
+package com.google.zxing.client.android.camera;
+
+/**
+ * Device state the {@link ScanGovernor} reacts to. Kept free of Android types so the policy can be
+ * driven by fixed values in a plain JVM test.
+ * 扫描调节器所需的设备状态(温度、电量)
+ */
+public interface ScanConditions {
+
+  /**
+   * Returned when a value can't be read on this device.
+   */
+  int UNKNOWN = -1;
+
+  /**
+   * @return one of the {@code PowerManager.THERMAL_STATUS_*} values (0 = none .. 6 = shutdown), or {@link #UNKNOWN}
+   */
+  int getThermalStatus();
+
+  /**
+   * @return battery level in percent, or {@link #UNKNOWN}
+   */
+  int getBatteryPercent();
+
+  /**
+   * @return true if the device is plugged in
+   */
+  boolean isCharging();
+
+}
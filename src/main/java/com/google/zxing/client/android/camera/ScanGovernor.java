@@ -0,0 +1,148 @@
+package com.google.zxing.client.android.camera;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Steps the scan pipeline down a ladder of {@link ScanOperatingPoint}s when the device heats up, the
+ * battery runs low or decodes get slower (the usual first sign of CPU throttling), and back up once
+ * things have calmed down. Stepping down is immediate, stepping up goes one step at a time and only
+ * after a quiet period, so the pipeline doesn't oscillate around a thermal threshold.
+ * <p>
+ * Device state comes from a {@link ScanConditions} and time from the caller, so the policy runs on a
+ * plain JVM with made up inputs.
+ * 依据设备温度、电量和解码耗时逐级调整扫描流水线的工作档位
+ */
+public final class ScanGovernor {
+
+  public static final List<ScanOperatingPoint> DEFAULT_LADDER = Collections.unmodifiableList(Arrays.asList(
+      ScanOperatingPoint.FULL, ScanOperatingPoint.REDUCED, ScanOperatingPoint.LOW_POWER, ScanOperatingPoint.MINIMAL));
+
+  public static final long DEFAULT_EVALUATION_INTERVAL_MS = 5000L;
+  public static final long DEFAULT_STEP_UP_DELAY_MS = 30000L;
+  public static final long DEFAULT_LATENCY_BUDGET_MS = 150L;
+
+  // = PowerManager.THERMAL_STATUS_*
+  private static final int THERMAL_STATUS_MODERATE = 2;
+  private static final int THERMAL_STATUS_SEVERE = 3;
+  private static final int THERMAL_STATUS_CRITICAL = 4;
+  private static final float LATENCY_SMOOTHING = 0.1f;
+
+  private final ScanConditions conditions;
+  private final List<ScanOperatingPoint> ladder;
+  private final long evaluationIntervalMs;
+  private final long stepUpDelayMs;
+  private final long latencyBudgetMs;
+  private int level;
+  private float smoothedLatencyMs = -1.0f;
+  private boolean evaluated;
+  private long lastEvaluationTime;
+  private long lastChangeTime;
+
+  public ScanGovernor(ScanConditions conditions) {
+    this(conditions, DEFAULT_LADDER, DEFAULT_EVALUATION_INTERVAL_MS, DEFAULT_STEP_UP_DELAY_MS,
+        DEFAULT_LATENCY_BUDGET_MS);
+  }
+
+  /**
+   * @param conditions source of thermal and battery state
+   * @param ladder operating points from most to least demanding
+   * @param evaluationIntervalMs minimum time between two reads of the conditions
+   * @param stepUpDelayMs time since the last change before a more demanding point may be tried again
+   * @param latencyBudgetMs smoothed decode time above which the pipeline steps down
+   */
+  public ScanGovernor(ScanConditions conditions,
+                      List<ScanOperatingPoint> ladder,
+                      long evaluationIntervalMs,
+                      long stepUpDelayMs,
+                      long latencyBudgetMs) {
+    if (conditions == null || ladder == null || ladder.isEmpty() || latencyBudgetMs <= 0L) {
+      throw new IllegalArgumentException("Bad scan governor: " + conditions + ", " + ladder + ", budget " +
+          latencyBudgetMs);
+    }
+    this.conditions = conditions;
+    this.ladder = ladder;
+    this.evaluationIntervalMs = evaluationIntervalMs;
+    this.stepUpDelayMs = stepUpDelayMs;
+    this.latencyBudgetMs = latencyBudgetMs;
+  }
+
+  public synchronized ScanOperatingPoint getOperatingPoint() {
+    return ladder.get(level);
+  }
+
+  /**
+   * Reports how long one decode attempt took.
+   */
+  public synchronized void onDecodeLatency(long decodeTimeMs) {
+    if (smoothedLatencyMs < 0.0f) {
+      smoothedLatencyMs = decodeTimeMs;
+    } else {
+      smoothedLatencyMs += LATENCY_SMOOTHING * (decodeTimeMs - smoothedLatencyMs);
+    }
+  }
+
+  /**
+   * Re-reads the conditions if the evaluation interval has passed and decides on the operating point.
+   * Cheap to call for every frame.
+   *
+   * @param nowMs current time on any monotonic millisecond clock
+   * @return the new operating point, or null if it stays the same
+   */
+  public synchronized ScanOperatingPoint evaluate(long nowMs) {
+    if (evaluated && nowMs - lastEvaluationTime < evaluationIntervalMs) {
+      return null;
+    }
+    if (!evaluated) {
+      lastChangeTime = nowMs;
+    }
+    evaluated = true;
+    lastEvaluationTime = nowMs;
+
+    int lowest = ladder.size() - 1;
+    int required = Math.min(lowest, Math.max(thermalLevel(conditions.getThermalStatus()),
+        batteryLevel(conditions.getBatteryPercent(), conditions.isCharging())));
+    int target = level;
+    if (required > level) {
+      target = required;
+    } else if (smoothedLatencyMs > latencyBudgetMs) {
+      target = Math.min(lowest, level + 1);
+    } else if (level > required && smoothedLatencyMs < latencyBudgetMs / 2.0f &&
+        nowMs - lastChangeTime >= stepUpDelayMs) {
+      target = level - 1;
+    }
+    if (target == level) {
+      return null;
+    }
+    level = target;
+    lastChangeTime = nowMs;
+    // Latency measured at the old point says nothing about the new one
+    smoothedLatencyMs = -1.0f;
+    return ladder.get(level);
+  }
+
+  private static int thermalLevel(int thermalStatus) {
+    if (thermalStatus >= THERMAL_STATUS_CRITICAL) {
+      return 3;
+    }
+    if (thermalStatus == THERMAL_STATUS_SEVERE) {
+      return 2;
+    }
+    return thermalStatus == THERMAL_STATUS_MODERATE ? 1 : 0;
+  }
+
+  private static int batteryLevel(int batteryPercent, boolean charging) {
+    if (charging || batteryPercent == ScanConditions.UNKNOWN) {
+      return 0;
+    }
+    if (batteryPercent <= 5) {
+      return 3;
+    }
+    if (batteryPercent <= 15) {
+      return 2;
+    }
+    return batteryPercent <= 30 ? 1 : 0;
+  }
+
+}
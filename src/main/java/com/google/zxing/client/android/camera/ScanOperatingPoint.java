@@ -0,0 +1,80 @@
+package com.google.zxing.client.android.camera;
+
+/**
+ * One step on the {@link ScanGovernor}'s ladder: how much work the scan pipeline may do per second.
+ * Lower steps trade scan speed and reach for heat and battery.
+ * 扫描流水线的一个工作档位：解码线程数、最高帧率、预览尺寸策略以及二值化方式
+ */
+public final class ScanOperatingPoint {
+
+  public static final ScanOperatingPoint FULL =
+      new ScanOperatingPoint("full", 2, 30, PreviewSizePolicy.DEFAULT, false);
+  public static final ScanOperatingPoint REDUCED =
+      new ScanOperatingPoint("reduced", 1, 24, PreviewSizePolicy.DEFAULT, false);
+  /**
+   * Accepts fewer pixels per module, so a smaller preview size qualifies.
+   */
+  public static final ScanOperatingPoint LOW_POWER =
+      new ScanOperatingPoint("low-power", 1, 15, new PreviewSizePolicy(2.0f, 57, 0.75f), false);
+  /**
+   * Only aims at codes up to version 6 and binarizes with one global threshold instead of per block.
+   */
+  public static final ScanOperatingPoint MINIMAL =
+      new ScanOperatingPoint("minimal", 1, 10, new PreviewSizePolicy(2.0f, 41, 0.75f), true);
+
+  private final String name;
+  private final int decodeWorkers;
+  private final int maxFps;
+  private final PreviewSizePolicy previewSizePolicy;
+  private final boolean cheapBinarizer;
+
+  /**
+   * @param name used in logs
+   * @param decodeWorkers number of threads which may decode at once
+   * @param maxFps highest preview frame rate to capture at
+   * @param previewSizePolicy policy for the preview size, applied when the camera is next opened
+   * @param cheapBinarizer true to use {@code GlobalHistogramBinarizer} instead of {@code HybridBinarizer}
+   */
+  public ScanOperatingPoint(String name,
+                            int decodeWorkers,
+                            int maxFps,
+                            PreviewSizePolicy previewSizePolicy,
+                            boolean cheapBinarizer) {
+    if (decodeWorkers <= 0 || maxFps <= 0 || previewSizePolicy == null) {
+      throw new IllegalArgumentException("Bad operating point " + name + ": " + decodeWorkers + " workers, " +
+          maxFps + "fps, " + previewSizePolicy);
+    }
+    this.name = name;
+    this.decodeWorkers = decodeWorkers;
+    this.maxFps = maxFps;
+    this.previewSizePolicy = previewSizePolicy;
+    this.cheapBinarizer = cheapBinarizer;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getDecodeWorkers() {
+    return decodeWorkers;
+  }
+
+  public int getMaxFps() {
+    return maxFps;
+  }
+
+  public PreviewSizePolicy getPreviewSizePolicy() {
+    return previewSizePolicy;
+  }
+
+  public boolean isCheapBinarizer() {
+    return cheapBinarizer;
+  }
+
+  @Override
+  public String toString() {
+    return "ScanOperatingPoint[" + name + ", workers=" + decodeWorkers + ", maxFps=" + maxFps +
+        ", cheapBinarizer=" + cheapBinarizer + ']';
+  }
+
+}
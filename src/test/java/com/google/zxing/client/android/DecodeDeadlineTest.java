@@ -0,0 +1,96 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that cancels reach {@link DecodeDeadline} frames whether they come before or after the start,
+ * and that running out of time alone doesn't give a frame up.
+ */
+public class DecodeDeadlineTest {
+
+    @Test
+    public void frameQueuedBeforeCancelStartsCancelled() {
+        DecodeDeadline deadline = new DecodeDeadline();
+        int token = deadline.token();
+        deadline.cancel();
+        deadline.start(Long.MAX_VALUE, token);
+        assertTrue(deadline.isCancelled());
+    }
+
+    @Test
+    public void cancelDuringDecodeIsSeen() {
+        DecodeDeadline deadline = new DecodeDeadline();
+        deadline.start(Long.MAX_VALUE, deadline.token());
+        assertFalse(deadline.isCancelled());
+        deadline.cancel();
+        assertTrue(deadline.isCancelled());
+    }
+
+    @Test
+    public void frameQueuedAfterCancelIsNotCancelled() {
+        DecodeDeadline deadline = new DecodeDeadline();
+        deadline.cancel();
+        deadline.start(Long.MAX_VALUE, deadline.token());
+        assertFalse(deadline.isCancelled());
+    }
+
+    @Test
+    public void laterFrameSupersedes() {
+        DecodeDeadline deadline = new DecodeDeadline();
+        deadline.start(Long.MAX_VALUE, deadline.token());
+        assertFalse(deadline.isSuperseded());
+        deadline.token();
+        assertTrue(deadline.isSuperseded());
+    }
+
+    @Test
+    public void decodePastBudgetFinishesWithNothingQueued() throws Exception {
+        DecodeDeadline deadline = new DecodeDeadline();
+        // Long out of time before the decode starts
+        deadline.start(Long.MIN_VALUE + 1L, deadline.token());
+        assertFalse(deadline.isExpired());
+        Result result = new QRCodeReader().decode(bitmap(deadline));
+        assertEquals("deadline", result.getText());
+    }
+
+    @Test
+    public void cancelledDecodeFindsNothing() throws Exception {
+        DecodeDeadline deadline = new DecodeDeadline();
+        deadline.start(Long.MAX_VALUE, deadline.token());
+        deadline.cancel();
+        try {
+            new QRCodeReader().decode(bitmap(deadline));
+            fail("Decoded a cancelled frame");
+        } catch (ReaderException re) {
+            // expected
+        }
+    }
+
+    private static BinaryBitmap bitmap(DecodeDeadline deadline) throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode("deadline", BarcodeFormat.QR_CODE, 200, 200);
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        byte[] luminance = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                luminance[y * width + x] = (byte) (matrix.get(x, y) ? 0 : 255);
+            }
+        }
+        PlanarYUVLuminanceSource source =
+            new PlanarYUVLuminanceSource(luminance, width, height, 0, 0, width, height, false);
+        return new BinaryBitmap(new DeadlineBinarizer(new HybridBinarizer(source), deadline));
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds {@link FrameFusion} synthetic dim frames: a low contrast pattern with strong sensor noise.
+ */
+public class FrameFusionTest {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 240;
+    private static final int MODULE = 8;
+    private static final int DARK = 20;
+    private static final int LIGHT = 60;
+    /**
+     * Standard deviation of the noise, well above the old per-pixel threshold of 8.
+     */
+    private static final double NOISE = 14.0;
+
+    private final Random random = new Random(42L);
+
+    @Test
+    public void fusesNoisyFramesOfAStillScene() {
+        FrameFusion fusion = new FrameFusion();
+        byte[] clean = pattern(0);
+        byte[] first = noisy(clean);
+        fusion.add(source(first));
+        assertFalse(fusion.isReady());
+        fusion.add(source(noisy(clean)));
+        fusion.add(source(noisy(clean)));
+        assertTrue("noise alone must not count as motion", fusion.isReady());
+        for (int i = 0; i < 5; i++) {
+            fusion.add(source(noisy(clean)));
+            assertTrue(fusion.isReady());
+        }
+
+        LuminanceSource fused = fusion.fuse();
+        double singleError = rmsError(first, clean);
+        double fusedError = rmsError(fused.getMatrix(), clean);
+        // Four frames halve the noise
+        assertTrue("fused " + fusedError + " vs single " + singleError, fusedError < singleError * 0.6);
+    }
+
+    @Test
+    public void dropsFramesWhenTheSceneMoves() {
+        FrameFusion fusion = new FrameFusion();
+        fusion.add(source(noisy(pattern(0))));
+        fusion.add(source(noisy(pattern(0))));
+        // Half a module to the side
+        fusion.add(source(noisy(pattern(MODULE / 2))));
+        assertFalse(fusion.isReady());
+        fusion.add(source(noisy(pattern(MODULE / 2))));
+        fusion.add(source(noisy(pattern(MODULE / 2))));
+        assertTrue(fusion.isReady());
+    }
+
+    @Test
+    public void dropsFramesWhenTheLightChanges() {
+        FrameFusion fusion = new FrameFusion();
+        byte[] clean = pattern(0);
+        fusion.add(source(noisy(clean)));
+        fusion.add(source(noisy(clean)));
+        byte[] brighter = clean.clone();
+        for (int i = 0; i < brighter.length; i++) {
+            brighter[i] = (byte) ((brighter[i] & 0xFF) + 30);
+        }
+        fusion.add(source(noisy(brighter)));
+        assertFalse(fusion.isReady());
+    }
+
+    /**
+     * A checkerboard of modules, shifted right by {@code shift} pixels.
+     */
+    private static byte[] pattern(int shift) {
+        byte[] data = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean dark = (((x + shift) / MODULE) + (y / MODULE)) % 2 == 0;
+                data[y * WIDTH + x] = (byte) (dark ? DARK : LIGHT);
+            }
+        }
+        return data;
+    }
+
+    private byte[] noisy(byte[] clean) {
+        byte[] data = new byte[clean.length];
+        for (int i = 0; i < clean.length; i++) {
+            long value = Math.round((clean[i] & 0xFF) + random.nextGaussian() * NOISE);
+            data[i] = (byte) Math.max(0L, Math.min(255L, value));
+        }
+        return data;
+    }
+
+    private static LuminanceSource source(byte[] data) {
+        return new PlanarYUVLuminanceSource(data, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false);
+    }
+
+    private static double rmsError(byte[] data, byte[] clean) {
+        double sum = 0.0;
+        for (int i = 0; i < clean.length; i++) {
+            double d = (data[i] & 0xFF) - (clean[i] & 0xFF);
+            sum += d * d;
+        }
+        return Math.sqrt(sum / clean.length);
+    }
+}
@@ -0,0 +1,210 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares {@link FrameRotator} and {@link OrientedLuminanceSource} with turning the frame pixel by
+ * pixel, as the portrait decode path used to.
+ */
+public class FrameRotatorTest {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    /**
+     * Odd, thin and block edge straddling sizes; the last one is above the 1 MP where copies go parallel.
+     */
+    private static final int[][] SIZES = {
+        {1, 1}, {7, 5}, {13, 1}, {1, 9}, {64, 64}, {65, 63}, {129, 67}, {1281, 833},
+    };
+
+    private final Random random = new Random(3L);
+
+    @Test
+    public void rotateMatchesTheOldLoop() {
+        for (int[] size : SIZES) {
+            byte[] data = frame(size[0], size[1]);
+            assertArrayEquals(size[0] + "x" + size[1], oldRotate90(data, size[0], size[1]),
+                rotate(data, size[0], size[1], 90, null));
+        }
+    }
+
+    @Test
+    public void rotateTurnsEveryWay() {
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            byte[] data = frame(width, height);
+            for (int rotation : ROTATIONS) {
+                assertArrayEquals(width + "x" + height + " by " + rotation, turn(data, width, height, rotation),
+                    rotate(data, width, height, rotation, null));
+            }
+        }
+    }
+
+    @Test
+    public void rotateReusesALargeEnoughBuffer() {
+        byte[] data = frame(31, 17);
+        byte[] out = new byte[31 * 17 + 5];
+        assertSame(out, rotate(data, 31, 17, 270, out));
+        byte[] small = new byte[10];
+        assertNotSame(small, rotate(data, 31, 17, 270, small));
+    }
+
+    @Test
+    public void matrixGoesIntoTheBufferSet() {
+        byte[] data = frame(31, 17);
+        OrientedLuminanceSource source = new OrientedLuminanceSource(data, 31, 17, 90, false);
+        byte[] buffer = new byte[31 * 17 + 5];
+        source.setMatrixBuffer(buffer);
+        assertSame(buffer, source.getMatrix());
+        assertArrayEquals(turn(data, 31, 17, 90), trim(buffer, 31 * 17));
+    }
+
+    @Test
+    public void rowsAndMatrixMatchTheTurnedFrame() {
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            byte[] data = frame(width, height);
+            for (int rotation : ROTATIONS) {
+                for (boolean mirror : new boolean[] {false, true}) {
+                    byte[] expected = turn(data, width, height, rotation);
+                    int turnedWidth = rotation % 180 == 0 ? width : height;
+                    if (mirror) {
+                        expected = mirror(expected, turnedWidth, expected.length / turnedWidth);
+                    }
+                    OrientedLuminanceSource source = new OrientedLuminanceSource(data, width, height, rotation, mirror);
+                    assertView(width + "x" + height + " by " + rotation + (mirror ? " mirrored" : ""),
+                        expected, turnedWidth, source);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cropsOfTurnedViewsMatch() {
+        int width = 203;
+        int height = 131;
+        byte[] data = frame(width, height);
+        for (int rotation : ROTATIONS) {
+            for (boolean mirror : new boolean[] {false, true}) {
+                byte[] turned = turn(data, width, height, rotation);
+                int turnedWidth = rotation % 180 == 0 ? width : height;
+                int turnedHeight = turned.length / turnedWidth;
+                if (mirror) {
+                    turned = mirror(turned, turnedWidth, turnedHeight);
+                }
+                OrientedLuminanceSource source = new OrientedLuminanceSource(data, width, height, rotation, mirror);
+                int[][] crops = {
+                    {0, 0, turnedWidth, turnedHeight}, {1, 2, 67, 45}, {turnedWidth - 9, turnedHeight - 7, 9, 7},
+                    {13, 0, 1, turnedHeight},
+                };
+                for (int[] crop : crops) {
+                    String what = rotation + (mirror ? " mirrored" : "") + " crop " + crop[0] + "," + crop[1];
+                    byte[] expected = crop(turned, turnedWidth, crop[0], crop[1], crop[2], crop[3]);
+                    assertView(what, expected, crop[2], source.cropView(crop[0], crop[1], crop[2], crop[3]));
+                    // Turning a crop once more must agree with turning the cropped pixels
+                    LuminanceSource turnedCrop = source.crop(crop[0], crop[1], crop[2], crop[3]).rotateCounterClockwise();
+                    assertArrayEquals(what + " turned back", turn(expected, crop[2], crop[3], 270), turnedCrop.getMatrix());
+                }
+            }
+        }
+    }
+
+    private static byte[] rotate(byte[] data, int width, int height, int cwRotation, byte[] out) {
+        return new OrientedLuminanceSource(data, width, height, cwRotation, false).getMatrix(out);
+    }
+
+    private static void assertView(String what, byte[] expected, int width, OrientedLuminanceSource source) {
+        int height = expected.length / width;
+        assertEquals(what + " width", width, source.getWidth());
+        assertEquals(what + " height", height, source.getHeight());
+        byte[] row = null;
+        for (int y = 0; y < height; y++) {
+            row = source.getRow(y, row);
+            for (int x = 0; x < width; x++) {
+                if (row[x] != expected[y * width + x]) {
+                    fail(what + " row " + y + " differs at " + x);
+                }
+            }
+        }
+        assertArrayEquals(what + " matrix", expected, source.getMatrix());
+        assertArrayEquals(what + " matrix into a buffer", expected, trim(source.getMatrix(new byte[expected.length + 3]),
+            expected.length));
+    }
+
+    /**
+     * The portrait rotation the decode path used before the views.
+     */
+    private static byte[] oldRotate90(byte[] data, int width, int height) {
+        byte[] rotatedData = new byte[data.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rotatedData[x * height + height - y - 1] = data[x + y * width];
+            }
+        }
+        return rotatedData;
+    }
+
+    /**
+     * Turns clockwise pixel by pixel.
+     */
+    private static byte[] turn(byte[] data, int width, int height, int rotation) {
+        byte[] out = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte value = data[y * width + x];
+                switch (rotation) {
+                    case 0:
+                        out[y * width + x] = value;
+                        break;
+                    case 90:
+                        out[x * height + height - 1 - y] = value;
+                        break;
+                    case 180:
+                        out[(height - 1 - y) * width + width - 1 - x] = value;
+                        break;
+                    default:
+                        out[(width - 1 - x) * height + y] = value;
+                        break;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static byte[] mirror(byte[] data, int width, int height) {
+        byte[] out = new byte[data.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                out[y * width + width - 1 - x] = data[y * width + x];
+            }
+        }
+        return out;
+    }
+
+    private static byte[] crop(byte[] data, int width, int left, int top, int cropWidth, int cropHeight) {
+        byte[] out = new byte[cropWidth * cropHeight];
+        for (int y = 0; y < cropHeight; y++) {
+            System.arraycopy(data, (top + y) * width + left, out, y * cropWidth, cropWidth);
+        }
+        return out;
+    }
+
+    private static byte[] trim(byte[] data, int length) {
+        byte[] out = new byte[length];
+        System.arraycopy(data, 0, out, 0, length);
+        return out;
+    }
+
+    private byte[] frame(int width, int height) {
+        byte[] data = new byte[width * height];
+        random.nextBytes(data);
+        return data;
+    }
+}
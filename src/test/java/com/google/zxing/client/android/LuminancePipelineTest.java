@@ -0,0 +1,183 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the lookup tables {@link LuminancePipeline#buildLut} folds from its stages, and that
+ * {@link LuminancePreprocessor#process} gives what applying the stages one pass after another would,
+ * only faster.
+ */
+public class LuminancePipelineTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    /**
+     * As in {@link LuminancePreprocessor}.
+     */
+    private static final int SAMPLE_STEP = 4;
+
+    @Test
+    public void stretchSpreadsPercentilesOverTheWholeRange() {
+        int[] histogram = new int[256];
+        // 1% outliers at either end, the rest evenly over 50 to 147
+        histogram[0] = 10;
+        histogram[255] = 10;
+        for (int i = 50; i < 148; i++) {
+            histogram[i] = 10;
+        }
+        int[] lut = build(LuminancePipeline.of(LuminancePipeline.contrastStretch(0.01f, 0.99f)), histogram);
+        assertEquals(0, lut[0]);
+        assertEquals(0, lut[50]);
+        assertEquals(255, lut[147]);
+        assertEquals(255, lut[255]);
+        assertEquals((98 - 50) * 255 / 97, lut[98]);
+        assertMonotonic(lut);
+    }
+
+    @Test
+    public void stretchLeavesNarrowRangesAlone() {
+        int[] histogram = new int[256];
+        for (int i = 120; i < 130; i++) {
+            histogram[i] = 100;
+        }
+        int[] lut = build(LuminancePipeline.of(LuminancePipeline.contrastStretch(0.0f, 1.0f)), histogram);
+        assertArrayEquals(identity(), lut);
+    }
+
+    @Test
+    public void stretchOfAnEmptyHistogramIsIdentity() {
+        int[] lut = build(LuminancePipeline.of(LuminancePipeline.contrastStretch(0.01f, 0.99f)), new int[256]);
+        assertArrayEquals(identity(), lut);
+    }
+
+    @Test
+    public void gammaKeepsEndsAndBrightensShadows() {
+        int[] lut = build(LuminancePipeline.of(LuminancePipeline.gamma(2.0f)), flat());
+        assertEquals(0, lut[0]);
+        assertEquals(255, lut[255]);
+        assertEquals(Math.round(255.0 * Math.sqrt(64 / 255.0)), lut[64]);
+        assertTrue(lut[64] > 64);
+        assertMonotonic(lut);
+
+        int[] darker = build(LuminancePipeline.of(LuminancePipeline.gamma(0.5f)), flat());
+        assertTrue(darker[192] < 192);
+    }
+
+    @Test
+    public void clipClampsToTheRange() {
+        int[] lut = build(LuminancePipeline.of(LuminancePipeline.clip(30, 200)), flat());
+        assertEquals(30, lut[0]);
+        assertEquals(30, lut[30]);
+        assertEquals(100, lut[100]);
+        assertEquals(200, lut[200]);
+        assertEquals(200, lut[255]);
+    }
+
+    @Test
+    public void laterStagesSeeTheHistogramAfterEarlierOnes() {
+        // Clipping the glare first leaves 0 to 127 for the stretch to spread out
+        int[] lut = build(LuminancePipeline.of(LuminancePipeline.clip(0, 127),
+            LuminancePipeline.contrastStretch(0.0f, 1.0f)), flat());
+        assertEquals(0, lut[0]);
+        assertEquals(63 * 255 / 127, lut[63]);
+        assertEquals(255, lut[127]);
+        assertEquals(255, lut[255]);
+
+        // The other way round the stretch finds nothing to do, and the clip halves the range
+        int[] reversed = build(LuminancePipeline.of(LuminancePipeline.contrastStretch(0.0f, 1.0f),
+            LuminancePipeline.clip(0, 127)), flat());
+        assertEquals(127, reversed[255]);
+        assertEquals(63, reversed[63]);
+    }
+
+    @Test
+    public void foldedChainMatchesStagesAppliedOneAfterAnother() {
+        LuminanceStage[] stages = {
+            LuminancePipeline.clip(10, 220),
+            LuminancePipeline.contrastStretch(0.02f, 0.98f),
+            LuminancePipeline.gamma(1.6f),
+        };
+        byte[] frame = dimFrame(new Random(7L));
+        LuminanceSource source = new PlanarYUVLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false);
+        byte[] folded = new LuminancePreprocessor(LuminancePipeline.of(stages)).process(source).getMatrix();
+        assertArrayEquals(perPixelChain(stages, frame), folded);
+    }
+
+    /**
+     * What the pipeline replaces: each stage samples the frame as the previous one left it, then
+     * maps every pixel.
+     */
+    private static byte[] perPixelChain(LuminanceStage[] stages, byte[] frame) {
+        byte[] current = frame.clone();
+        int[] histogram = new int[256];
+        int[] lut = new int[256];
+        for (LuminanceStage stage : stages) {
+            Arrays.fill(histogram, 0);
+            for (int y = 0; y < HEIGHT; y += SAMPLE_STEP) {
+                for (int x = 0; x < WIDTH; x += SAMPLE_STEP) {
+                    histogram[current[y * WIDTH + x] & 0xFF]++;
+                }
+            }
+            for (int i = 0; i < 256; i++) {
+                lut[i] = i;
+            }
+            stage.adjust(lut, histogram);
+            for (int i = 0; i < current.length; i++) {
+                current[i] = (byte) lut[current[i] & 0xFF];
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Dark, low contrast modules with some noise and a patch of glare.
+     */
+    private static byte[] dimFrame(Random random) {
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int value = ((x / 12) + (y / 12)) % 2 == 0 ? 30 : 80;
+                if (x > WIDTH - 80 && y < 80) {
+                    value = 250;
+                }
+                value += (int) Math.round(random.nextGaussian() * 6.0);
+                frame[y * WIDTH + x] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+        return frame;
+    }
+
+    private static int[] build(LuminancePipeline pipeline, int[] histogram) {
+        int[] lut = new int[256];
+        pipeline.buildLut(histogram, lut, new int[256]);
+        return lut;
+    }
+
+    private static int[] flat() {
+        int[] histogram = new int[256];
+        Arrays.fill(histogram, 1);
+        return histogram;
+    }
+
+    private static int[] identity() {
+        int[] lut = new int[256];
+        for (int i = 0; i < 256; i++) {
+            lut[i] = i;
+        }
+        return lut;
+    }
+
+    private static void assertMonotonic(int[] lut) {
+        for (int i = 1; i < 256; i++) {
+            assertTrue("lut falls at " + i, lut[i] >= lut[i - 1]);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.oned.MultiFormatOneDReader;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads rows of a Code 128 symbol through {@link OneDConsensus#addRow}, both ways up.
+ */
+public class OneDConsensusTest {
+
+    private static final String TEXT = "CONSENSUS-40";
+
+    private final Map<DecodeHintType,?> hints =
+        Collections.singletonMap(DecodeHintType.POSSIBLE_FORMATS, Collections.singletonList(BarcodeFormat.CODE_128));
+
+    @Test
+    public void uprightRowGetsAVote() throws Exception {
+        BitArray row = row(false);
+        int start = firstBar(row);
+        Result read = new OneDConsensus(3, 0.75f, 1000L).addRow(new MultiFormatOneDReader(hints), 0, row, hints, 0L);
+        assertNotNull(read);
+        assertEquals(TEXT, read.getText());
+        assertTrue(read.getResultMetadata() == null ||
+            !read.getResultMetadata().containsKey(ResultMetadataType.ORIENTATION));
+        assertTrue(read.getResultPoints()[0].getX() >= start);
+    }
+
+    @Test
+    public void upsideDownRowGetsAVote() throws Exception {
+        OneDConsensus consensus = new OneDConsensus(3, 0.75f, 1000L);
+        MultiFormatOneDReader reader = new MultiFormatOneDReader(hints);
+        for (int i = 0; i < 3; i++) {
+            BitArray row = row(true);
+            int width = row.getSize();
+            Result read = consensus.addRow(reader, i, row, hints, 0L);
+            reader.reset();
+            assertNotNull(read);
+            assertEquals(TEXT, read.getText());
+            assertEquals(180, read.getResultMetadata().get(ResultMetadataType.ORIENTATION));
+            // The points are where the symbol lies in the row as given, its start on the right
+            float left = read.getResultPoints()[0].getX();
+            float right = read.getResultPoints()[1].getX();
+            assertTrue(left > right);
+            assertTrue(left < width);
+        }
+    }
+
+    @Test
+    public void blankRowAddsNothing() {
+        BitArray row = new BitArray(400);
+        assertNull(new OneDConsensus(3, 0.75f, 1000L).addRow(new MultiFormatOneDReader(hints), 0, row, hints, 0L));
+    }
+
+    private static BitArray row(boolean upsideDown) throws WriterException {
+        BitMatrix matrix = new Code128Writer().encode(TEXT, BarcodeFormat.CODE_128, 400, 1);
+        BitArray row = matrix.getRow(0, null);
+        if (upsideDown) {
+            row.reverse();
+        }
+        return row;
+    }
+
+    private static int firstBar(BitArray row) {
+        return row.getNextSet(0);
+    }
+
+}
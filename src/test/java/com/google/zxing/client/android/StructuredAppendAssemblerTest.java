@@ -0,0 +1,114 @@
+package com.google.zxing.client.android;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.StringUtils;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Joins Structured Append parts built the way the QR decoder reports them.
+ */
+public class StructuredAppendAssemblerTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int PARITY = 0x5A;
+
+    private final Map<DecodeHintType,Object> hints = new EnumMap<>(DecodeHintType.class);
+
+    @Test
+    public void joinsMultiByteCharacterSplitBetweenSymbols() {
+        String text = "扫描二维码测试";
+        byte[] data = text.getBytes(UTF_8);
+        // Split inside the second character
+        byte[] first = Arrays.copyOfRange(data, 0, 4);
+        byte[] second = Arrays.copyOfRange(data, 4, data.length);
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(hints);
+        Result firstPart = bytePart(first, 0, 2);
+        assertFalse("the decoder garbles a part on its own", text.startsWith(firstPart.getText()));
+        assertEquals(StructuredAppendAssembler.ADDED, assembler.offer(firstPart, 0L));
+        assertEquals(StructuredAppendAssembler.COMPLETE, assembler.offer(bytePart(second, 1, 2), 10L));
+
+        Result joined = assembler.assemble();
+        assertEquals(text, joined.getText());
+        assertArrayEquals(data, joined.getRawBytes());
+        assertEquals(PARITY, joined.getResultMetadata().get(ResultMetadataType.STRUCTURED_APPEND_PARITY));
+    }
+
+    @Test
+    public void joinsPartsScannedOutOfOrder() {
+        byte[] data = "Grüße aus Zürich, Ελλάδα".getBytes(UTF_8);
+        byte[] first = Arrays.copyOfRange(data, 0, 3);
+        byte[] second = Arrays.copyOfRange(data, 3, 19);
+        byte[] third = Arrays.copyOfRange(data, 19, data.length);
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(hints);
+        assembler.offer(bytePart(third, 2, 3), 0L);
+        assertEquals(StructuredAppendAssembler.DUPLICATE, assembler.offer(bytePart(third, 2, 3), 1L));
+        assembler.offer(bytePart(first, 0, 3), 2L);
+        assertEquals(StructuredAppendAssembler.COMPLETE, assembler.offer(bytePart(second, 1, 3), 3L));
+        assertEquals("Grüße aus Zürich, Ελλάδα", assembler.assemble().getText());
+    }
+
+    @Test
+    public void decodesInTheHintedCharset() {
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        byte[] data = "日本語のテキスト".getBytes(UTF_8);
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(hints);
+        assembler.offer(bytePart(Arrays.copyOfRange(data, 0, 5), 0, 2), 0L);
+        assembler.offer(bytePart(Arrays.copyOfRange(data, 5, data.length), 1, 2), 1L);
+        assertEquals("日本語のテキスト", assembler.assemble().getText());
+    }
+
+    @Test
+    public void fallsBackToTextsWithoutByteSegments() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(hints);
+        // Numeric and alphanumeric segments report no bytes
+        assembler.offer(part("12345", null, 0, 2), 0L);
+        assembler.offer(bytePart("ABC".getBytes(UTF_8), 1, 2), 1L);
+        Result joined = assembler.assemble();
+        assertEquals("12345ABC", joined.getText());
+        assertNull(joined.getRawBytes());
+    }
+
+    @Test
+    public void fallsBackToTextsWhenBytesDontMakeTheText() {
+        StructuredAppendAssembler assembler = new StructuredAppendAssembler(hints);
+        // A byte segment followed by a numeric one: the bytes are only part of the text
+        assembler.offer(part("AB123", "AB".getBytes(UTF_8), 0, 2), 0L);
+        assembler.offer(bytePart("CD".getBytes(UTF_8), 1, 2), 1L);
+        assertEquals("AB123CD", assembler.assemble().getText());
+    }
+
+    /**
+     * A part holding one byte segment, with the text the decoder would make of it.
+     */
+    private Result bytePart(byte[] segment, int index, int total) {
+        try {
+            return part(new String(segment, StringUtils.guessEncoding(segment, hints)), segment, index, total);
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    private static Result part(String text, byte[] segment, int index, int total) {
+        Result result = new Result(text, null, new ResultPoint[0], BarcodeFormat.QR_CODE, 0L);
+        result.putMetadata(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE, index << 4 | (total - 1));
+        result.putMetadata(ResultMetadataType.STRUCTURED_APPEND_PARITY, PARITY);
+        if (segment != null) {
+            result.putMetadata(ResultMetadataType.BYTE_SEGMENTS, Collections.singletonList(segment));
+        }
+        return result;
+    }
+}
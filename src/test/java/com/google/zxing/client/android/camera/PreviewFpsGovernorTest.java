@@ -0,0 +1,35 @@
+package com.google.zxing.client.android.camera;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link PreviewFpsGovernor#fastestRangeUnder} picks the idle preview range.
+ */
+public class PreviewFpsGovernorTest {
+
+    private static final List<int[]> RANGES = Arrays.asList(
+        new int[] {15000, 15000}, new int[] {7000, 30000}, new int[] {30000, 30000},
+        new int[] {10000, 10000}, new int[] {5000, 10000}, new int[] {24000, 24000});
+
+    @Test
+    public void fastestRangeAtOrBelowTheCap() {
+        assertArrayEquals(new int[] {5000, 10000}, PreviewFpsGovernor.fastestRangeUnder(RANGES, 10));
+        assertArrayEquals(new int[] {15000, 15000}, PreviewFpsGovernor.fastestRangeUnder(RANGES, 20));
+        assertArrayEquals(new int[] {7000, 30000}, PreviewFpsGovernor.fastestRangeUnder(RANGES, 30));
+    }
+
+    @Test
+    public void slowestRangeWhenNoneFits() {
+        assertArrayEquals(new int[] {5000, 10000}, PreviewFpsGovernor.fastestRangeUnder(RANGES, 5));
+    }
+
+    @Test
+    public void nothingWithoutRanges() {
+        assertNull(PreviewFpsGovernor.fastestRangeUnder(null, 10));
+    }
+}
@@ -0,0 +1,154 @@
+package com.google.zxing.client.android.camera;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the {@link ScanGovernor} with made up device state and a made up clock.
+ */
+public class ScanGovernorTest {
+
+    private static final long INTERVAL = 1000L;
+    private static final long STEP_UP_DELAY = 10000L;
+    private static final long BUDGET = 100L;
+
+    private FakeConditions conditions;
+    private ScanGovernor governor;
+
+    @Before
+    public void setUp() {
+        conditions = new FakeConditions();
+        governor = new ScanGovernor(conditions, ScanGovernor.DEFAULT_LADDER, INTERVAL, STEP_UP_DELAY, BUDGET);
+    }
+
+    @Test
+    public void staysAtFullWhenAllIsWell() {
+        governor.onDecodeLatency(20L);
+        assertNull(governor.evaluate(0L));
+        assertNull(governor.evaluate(INTERVAL));
+        assertSame(ScanOperatingPoint.FULL, governor.getOperatingPoint());
+    }
+
+    @Test
+    public void stepsDownRightAwayWhenHot() {
+        assertNull(governor.evaluate(0L));
+        conditions.thermalStatus = 3; // THERMAL_STATUS_SEVERE
+        assertSame(ScanOperatingPoint.LOW_POWER, governor.evaluate(INTERVAL));
+        conditions.thermalStatus = 4; // THERMAL_STATUS_CRITICAL
+        assertSame(ScanOperatingPoint.MINIMAL, governor.evaluate(2 * INTERVAL));
+    }
+
+    @Test
+    public void stepsDownOnLowBatteryUnlessCharging() {
+        conditions.batteryPercent = 12;
+        conditions.charging = true;
+        assertNull(governor.evaluate(0L));
+        conditions.charging = false;
+        assertSame(ScanOperatingPoint.LOW_POWER, governor.evaluate(INTERVAL));
+    }
+
+    @Test
+    public void readsConditionsOncePerInterval() {
+        governor.evaluate(0L);
+        conditions.thermalStatus = 2; // THERMAL_STATUS_MODERATE
+        assertNull(governor.evaluate(INTERVAL - 1L));
+        assertEquals(1, conditions.reads);
+        assertSame(ScanOperatingPoint.REDUCED, governor.evaluate(INTERVAL));
+        assertEquals(2, conditions.reads);
+    }
+
+    @Test
+    public void stepsUpOneStepAtATimeAfterTheDelay() {
+        conditions.thermalStatus = 3;
+        assertSame(ScanOperatingPoint.LOW_POWER, governor.evaluate(0L));
+        conditions.thermalStatus = 0;
+        governor.onDecodeLatency(20L);
+        // Cooled down, but not for long enough
+        assertNull(governor.evaluate(INTERVAL));
+        assertNull(governor.evaluate(STEP_UP_DELAY - INTERVAL));
+        assertSame(ScanOperatingPoint.REDUCED, governor.evaluate(STEP_UP_DELAY));
+        // The next step waits for a full delay from the last change
+        governor.onDecodeLatency(20L);
+        assertNull(governor.evaluate(STEP_UP_DELAY + INTERVAL));
+        assertSame(ScanOperatingPoint.FULL, governor.evaluate(2 * STEP_UP_DELAY));
+    }
+
+    @Test
+    public void doesNotStepUpWhileLatencyIsNearBudget() {
+        conditions.thermalStatus = 2;
+        assertSame(ScanOperatingPoint.REDUCED, governor.evaluate(0L));
+        conditions.thermalStatus = 0;
+        // Under the budget, so no further step down, but not under half of it either
+        governor.onDecodeLatency(70L);
+        assertNull(governor.evaluate(STEP_UP_DELAY));
+        assertNull(governor.evaluate(3 * STEP_UP_DELAY));
+        assertSame(ScanOperatingPoint.REDUCED, governor.getOperatingPoint());
+    }
+
+    @Test
+    public void doesNotStepUpPastWhatConditionsAllow() {
+        conditions.thermalStatus = 3;
+        assertSame(ScanOperatingPoint.LOW_POWER, governor.evaluate(0L));
+        conditions.thermalStatus = 2;
+        governor.onDecodeLatency(10L);
+        assertSame(ScanOperatingPoint.REDUCED, governor.evaluate(STEP_UP_DELAY));
+        governor.onDecodeLatency(10L);
+        assertNull(governor.evaluate(3 * STEP_UP_DELAY));
+    }
+
+    @Test
+    public void stepsDownWhenDecodesGetSlow() {
+        governor.evaluate(0L);
+        governor.onDecodeLatency(BUDGET + 50L);
+        assertSame(ScanOperatingPoint.REDUCED, governor.evaluate(INTERVAL));
+        // Latency from the old point was dropped, so one slow frame at the new one is enough again
+        assertNull(governor.evaluate(2 * INTERVAL));
+        governor.onDecodeLatency(BUDGET + 50L);
+        assertSame(ScanOperatingPoint.LOW_POWER, governor.evaluate(3 * INTERVAL));
+    }
+
+    @Test
+    public void smoothsOutASingleSlowDecode() {
+        governor.evaluate(0L);
+        for (int i = 0; i < 20; i++) {
+            governor.onDecodeLatency(30L);
+        }
+        governor.onDecodeLatency(500L);
+        assertNull(governor.evaluate(INTERVAL));
+        assertSame(ScanOperatingPoint.FULL, governor.getOperatingPoint());
+    }
+
+    @Test
+    public void neverStepsBelowTheLadder() {
+        conditions.thermalStatus = 6; // THERMAL_STATUS_SHUTDOWN
+        assertSame(ScanOperatingPoint.MINIMAL, governor.evaluate(0L));
+        governor.onDecodeLatency(BUDGET * 10L);
+        assertNull(governor.evaluate(INTERVAL));
+    }
+
+    private static final class FakeConditions implements ScanConditions {
+
+        int thermalStatus;
+        int batteryPercent = 80;
+        boolean charging;
+        int reads;
+
+        @Override
+        public int getThermalStatus() {
+            reads++;
+            return thermalStatus;
+        }
+
+        @Override
+        public int getBatteryPercent() {
+            return batteryPercent;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return charging;
+        }
+    }
+}